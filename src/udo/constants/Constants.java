@@ -8,6 +8,9 @@ import java.text.SimpleDateFormat;
 
 import javax.swing.KeyStroke;
 
+import udo.enums.DataKey;
+import udo.enums.StorageFormat;
+
 /**
  * 
  * This class holds all constants that the program uses. (the magic numbers) The
@@ -23,27 +26,30 @@ public class Constants {
 	 * This class holds all the keys used for the data storage objects. Please
 	 * reference these values rather than typing your own key. This is to
 	 * standardise across components so that one component can retrieve the data
-	 * that another puts in.
+	 * that another puts in. The keys are enum values, so the data storage
+	 * objects can keep their data in an EnumMap.
 	 * 
 	 */
 	public static final class Keys {
-		public static final String UID = "uid";
-		public static final String TITLE = "title";
-		public static final String DUE = "due"; 			// for task
-		public static final String DONE = "done"; 			// for task
-		public static final String START = "start"; 		// events
-		public static final String END = "end"; 			// event
-		public static final String HASHTAG = "hashtag"; 	// for list
-		public static final String HASHTAGS = "hashtags"; 	// for parser add
-		public static final String ITEM = "item";
-		public static final String ITEMS = "items";
-		public static final String QUERY_TYPE = "query type";
-		public static final String QUERY_VALUE = "query value";
-		public static final String FIELD = "field";
-		public static final String VALUE = "value";
-		public static final String DATE = "date";
-		public static final String OLD_VALUE = "Old value";
-		public static final String SEARCH_QUERY = "search query";
+		public static final DataKey UID = DataKey.UID;
+		public static final DataKey TITLE = DataKey.TITLE;
+		public static final DataKey DUE = DataKey.DUE; 			// for task
+		public static final DataKey DONE = DataKey.DONE; 			// for task
+		public static final DataKey START = DataKey.START; 		// events
+		public static final DataKey END = DataKey.END; 			// event
+		public static final DataKey HASHTAG = DataKey.HASHTAG; 	// for list
+		public static final DataKey HASHTAGS = DataKey.HASHTAGS; 	// for parser add
+		public static final DataKey ITEM = DataKey.ITEM;
+		public static final DataKey ITEMS = DataKey.ITEMS;
+		public static final DataKey QUERY_TYPE = DataKey.QUERY_TYPE;
+		public static final DataKey QUERY_VALUE = DataKey.QUERY_VALUE;
+		public static final DataKey QUERY_END_VALUE = DataKey.QUERY_END_VALUE;	// for date range
+		public static final DataKey FIELD = DataKey.FIELD;
+		public static final DataKey VALUE = DataKey.VALUE;
+		public static final DataKey DATE = DataKey.DATE;
+		public static final DataKey OLD_VALUE = DataKey.OLD_VALUE;
+		public static final DataKey SEARCH_QUERY = DataKey.SEARCH_QUERY;
+		public static final DataKey SEARCH_LIMIT = DataKey.SEARCH_LIMIT;	// for ranked search
 	}
 
 	//@author A0108358B
@@ -81,14 +87,28 @@ public class Constants {
 	/**
 	 * 
 	 * This class holds the magic strings for the storage and retrieving of data
-	 * from the storage file. This includes the toString method of the ItemData
-	 * class
+	 * from the storage file. This includes the lines of the items, see
+	 * RecordEncoder
 	 * 
 	 */
 	public static final class StorageStrings {
 		public static final String FILEPATH = "data/";
 		public static final String FILENAME = "data/uDo_data.txt";
+		public static final String JOURNAL_FILENAME = "data/uDo_journal.txt";
+		public static final String JOURNAL_OLD_FILENAME = "data/uDo_journal.old.txt";
+		public static final String TEMP_SUFFIX = ".tmp";
+		public static final String PREVIOUS_SUFFIX = ".prev";
+		public static final String DAMAGED_SUFFIX = ".damaged";
+		public static final String WINDOW_SUFFIX = ".window";
+		public static final String PAGE_LOG_SUFFIX = ".pagelog";
+		public static final String SEGMENT_SUFFIX = ".seg.";
+		public static final String SEGMENT_UNDATED = "undated";
+		public static final String SEGMENT_HEADER = "SEGMENT";
+		public static final String WINDOW_HEADER = "WINDOW";
+		public static final String FOOTER = "END";
 		public static final String FIELD_DELIMITER = "\\|\\|\\|";
+		public static final String FIELD_SEPARATOR = "|||";
+		public static final String RECORD_END = ";";
 		public static final String DATE_DELIMITER = "/";
 		public static final String TIME_DELIMITER = ":";
 		public static final String TAG_DELIMITER = ",";
@@ -100,6 +120,34 @@ public class Constants {
 		public static final String UNFORMATTED_STRING_PLAN = "%1$d|||%2$s|||%3$s|||%4$b|||%5$s|||;";
 	}
 	
+	//@author A0108358B
+	/**
+	 * 
+	 * This class holds the settings of the storage file.
+	 * FORMAT is the format the file is saved in. A file in the other format
+	 * is still read, so changing it converts the file on the next save.
+	 * Text files of at least PARALLEL_LOAD_BYTES are read on all the cores.
+	 * Each save also keeps the items of the next STARTUP_WINDOW_DAYS days
+	 * in a window file, so the next start only waits for those and reads
+	 * the rest in the background. 0 turns this off.
+	 * With LAZY_FIELDS, the titles and hashtags of a binary file are only
+	 * read when they are needed, and the last DECODED_RECORDS of them are kept.
+	 * Paged files are made of pages of PAGE_SIZE bytes, at most 65536.
+	 * Segmented files have a segment for every SEGMENT_MONTHS months.
+	 * 
+	 */
+	public static final class StorageVars {
+		public static final StorageFormat FORMAT = StorageFormat.TEXT;
+		public static final byte BINARY_VERSION = 1;
+		public static final long PARALLEL_LOAD_BYTES = 8 * 1024 * 1024;
+		public static final int STARTUP_WINDOW_DAYS = 14;
+		public static final boolean LAZY_FIELDS = false;
+		public static final int DECODED_RECORDS = 4096;
+		public static final byte PAGE_VERSION = 1;
+		public static final int PAGE_SIZE = 4096;
+		public static final int SEGMENT_MONTHS = 1;
+	}
+	
 	//@author A0108358B
 	/**
 	 * 
@@ -128,6 +176,62 @@ public class Constants {
 		public static final int DAYS_IN_ADVANCE = 3;
 	}
 
+	//@author A0108358B
+	/**
+	 * 
+	 * This class holds the magic numbers for ranking search results.
+	 * K1 and B are the usual BM25 parameters. The weights decide how much a
+	 * word in the title counts compared to a word in the hashtags.
+	 * 
+	 */
+	public static final class SearchVars {
+		public static final double BM25_K1 = 1.2;
+		public static final double BM25_B = 0.75;
+		public static final double TITLE_WEIGHT = 2.0;
+		public static final double HASHTAG_WEIGHT = 1.0;
+		public static final int DEFAULT_LIMIT = 10;
+	}
+
+	//@author A0108358B
+	/**
+	 * 
+	 * This class holds the magic numbers for the journal.
+	 * SYNC_INTERVAL is how many records are written between each fsync,
+	 * 1 syncs every record and 0 leaves it to the operating system.
+	 * 
+	 */
+	public static final class JournalVars {
+		public static final int SYNC_INTERVAL = 1;
+	}
+
+	//@author A0108358B
+	/**
+	 * 
+	 * This class holds the magic numbers for saving in the background.
+	 * The items are saved once there have been SAVE_AFTER_CHANGES changes,
+	 * or once there has been no change for QUIET_MILLIS after the last one.
+	 * The save command waits at most SAVE_WAIT_MILLIS for the save to end.
+	 * 
+	 */
+	public static final class AutoSaveVars {
+		public static final int SAVE_AFTER_CHANGES = 500;
+		public static final long QUIET_MILLIS = 30 * 1000;
+		public static final long SAVE_WAIT_MILLIS = 10 * 1000;
+	}
+
+	//@author A0108358B
+	/**
+	 *
+	 * This class holds the magic numbers for loading the items in the background.
+	 * Reading the rest of the file is tried LOAD_ATTEMPTS times,
+	 * RETRY_MILLIS apart, before the load is given up on.
+	 *
+	 */
+	public static final class LoadVars {
+		public static final int LOAD_ATTEMPTS = 3;
+		public static final long RETRY_MILLIS = 1000;
+	}
+
 	//@author A0114088H
 	/**
 	 * 
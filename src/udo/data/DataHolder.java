@@ -1,15 +1,22 @@
 //@author A0108358B
 package udo.data;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Set;
 
+import udo.enums.DataKey;
+
+/**
+ * This class holds data by the keys in Constants.Keys. The data is kept in an
+ * EnumMap, which is an array indexed by the key, so putting and getting does
+ * not hash anything.
+ */
 public class DataHolder {
 	
-	protected final HashMap<String, Object> mData;
+	protected final EnumMap<DataKey, Object> mData;
 	
 	public DataHolder() {
-		mData = new HashMap<String, Object>();
+		mData = new EnumMap<DataKey, Object>(DataKey.class);
 	}
 	
 	/**
@@ -23,7 +30,7 @@ public class DataHolder {
 	 * @return {@code true} when the operation is successful, or {@code false}
 	 *         when the inserted item is null
 	 */
-	public boolean put(String key, Object item) {
+	public boolean put(DataKey key, Object item) {
 		if (item != null) {
 			mData.put(key, item);
 			return true;
@@ -39,7 +46,7 @@ public class DataHolder {
 	 *            The key of the item to retrieve
 	 * @return The item, or {@code null} if the key is not mapped.
 	 */
-	public Object get(String key) {
+	public Object get(DataKey key) {
 		if (mData.containsKey(key)) {
 			return mData.get(key);
 		} else {
@@ -54,7 +61,7 @@ public class DataHolder {
 	 *            The key of the item to check.
 	 * @return {@code true} if the item exists, or {@code false} otherwise.
 	 */
-	public boolean contains(String key) {
+	public boolean contains(DataKey key) {
 		return mData.containsKey(key);
 	}
 
@@ -63,16 +70,16 @@ public class DataHolder {
 	 * 
 	 * @return the keyset
 	 */
-	public Set<String> getKeys() {
+	public Set<DataKey> getKeys() {
 		return mData.keySet();
 	}
 
 	/**
-	 * Returns the hashmap that holds the data.
+	 * Returns the map that holds the data.
 	 * 
-	 * @return the hashmap
+	 * @return the map
 	 */
-	public HashMap<String, Object> getData() {
+	public EnumMap<DataKey, Object> getData() {
 		return mData;
 	}
 }
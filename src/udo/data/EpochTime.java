@@ -0,0 +1,146 @@
+//@author A0108358B
+package udo.data;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * This class works with times kept as milliseconds since the epoch, the way
+ * ItemData keeps its dates.<br>
+ * Days and times of day are worked out with plain arithmetic and the rules
+ * of the local time zone, which are looked up once, so no Calendar has to
+ * be made to read or compare a date.
+ */
+public class EpochTime {
+
+	public static final long MILLIS_PER_MINUTE = 60L * 1000L;
+	public static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+	public static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+
+	// indices of the array filled by getFields()
+	public static final int YEAR = 0;
+	public static final int MONTH = 1;
+	public static final int DAY = 2;
+	public static final int HOUR = 3;
+	public static final int MINUTE = 4;
+	public static final int FIELD_COUNT = 5;
+
+	private static final TimeZone ZONE = TimeZone.getDefault();
+
+	private EpochTime() {
+	}
+
+	/**
+	 * returns the time of a local date and time
+	 *
+	 * @param year the year
+	 * @param month the month, from 1 to 12
+	 * @param day the day of the month
+	 * @param hour the hour of the day, from 0 to 23
+	 * @param minute the minute
+	 * @return the time in milliseconds since the epoch
+	 */
+	public static long toMillis(int year, int month, int day, int hour, int minute) {
+		long localMillis = getDayFromDate(year, month, day) * MILLIS_PER_DAY
+				+ hour * MILLIS_PER_HOUR
+				+ minute * MILLIS_PER_MINUTE;
+		return toUniversal(localMillis);
+	}
+
+	/**
+	 * returns the local day of a time, counted in days since the epoch.
+	 *
+	 * @param millis the time in milliseconds since the epoch
+	 * @return the number of days since the epoch
+	 */
+	public static long getDay(long millis) {
+		return floorDiv(toLocal(millis), MILLIS_PER_DAY);
+	}
+
+	/**
+	 * returns a time with the local date of one time
+	 * and the local time of day of another.
+	 *
+	 * @param dateMillis the time to take the date from
+	 * @param timeMillis the time to take the time of day from
+	 * @return the time in milliseconds since the epoch
+	 */
+	public static long combine(long dateMillis, long timeMillis) {
+		long day = getDay(dateMillis);
+		long timeOfDay = toLocal(timeMillis) - getDay(timeMillis) * MILLIS_PER_DAY;
+		return toUniversal(day * MILLIS_PER_DAY + timeOfDay);
+	}
+
+	/**
+	 * works out the local date and time of a time, without making a Calendar.
+	 * the fields are put in an array so that the array can be reused.
+	 *
+	 * @param millis the time in milliseconds since the epoch
+	 * @param fields the array to put the fields in, of at least FIELD_COUNT,
+	 *            indexed by YEAR, MONTH (from 1 to 12), DAY, HOUR and MINUTE
+	 */
+	public static void getFields(long millis, int[] fields) {
+		long localMillis = toLocal(millis);
+		long day = floorDiv(localMillis, MILLIS_PER_DAY);
+		int minuteOfDay = (int) ((localMillis - day * MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+		fields[HOUR] = minuteOfDay / 60;
+		fields[MINUTE] = minuteOfDay % 60;
+
+		// the civil date of the day, with march as the first month of the year
+		long shiftedDay = day + 719468;
+		long era = floorDiv(shiftedDay, 146097);
+		long dayOfEra = shiftedDay - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 
+				- dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+		fields[DAY] = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+		fields[MONTH] = month;
+		fields[YEAR] = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+	}
+
+	/**
+	 * makes a calendar set to a time, for code that needs one
+	 *
+	 * @param millis the time in milliseconds since the epoch
+	 * @return the calendar
+	 */
+	public static Calendar toCalendar(long millis) {
+		Calendar cal = Calendar.getInstance(ZONE);
+		cal.setTimeInMillis(millis);
+		return cal;
+	}
+
+	private static long toLocal(long millis) {
+		return millis + ZONE.getOffset(millis);
+	}
+
+	private static long toUniversal(long localMillis) {
+		long millis = localMillis - ZONE.getOffset(localMillis - ZONE.getRawOffset());
+		// the guess can be off by the daylight saving shift, check it again
+		return localMillis - ZONE.getOffset(millis);
+	}
+
+	private static long getDayFromDate(long year, int month, int day) {
+		// days from the civil date, with march as the first month of the year
+		if (month <= 2) {
+			year--;
+		}
+		long era = floorDiv(year, 400);
+		long yearOfEra = year - era * 400;
+		long shiftedMonth = month > 2 ? month - 3 : month + 9;
+		long dayOfYear = (153 * shiftedMonth + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		// 719468 is the number of days from 0000-03-01 to 1970-01-01
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	private static long floorDiv(long x, long y) {
+		long result = x / y;
+		if ((x % y != 0) && ((x < 0) != (y < 0))) {
+			result--;
+		}
+		return result;
+	}
+}
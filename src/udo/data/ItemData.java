@@ -2,31 +2,68 @@
 package udo.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import udo.constants.Constants.Keys;
-import udo.constants.Constants.StorageStrings;
+import udo.enums.DataKey;
 import udo.enums.ItemType;
 
 /**
  * This class holds the all the data that an item should have, like title, date,
- * hashtag, so on. The keys for the put() and get() function must be one of the
- * keys from the Constants.Keys class.
- * 
+ * hashtag, so on.<br>
+ * The fields of an item are kept in typed fields: the uid as an int, the
+ * dates as milliseconds since the epoch and done as a boolean, so an item
+ * takes little memory and the engine can read the fields without casting.
+ * The typed getters and setters should be used where speed matters.<br>
+ * The put() and get() functions are still there for code that works with
+ * the keys from the Constants.Keys class. Dates are put and got as
+ * Calendars, and get() makes a new Calendar each time, so changing a
+ * Calendar from get() does not change the item; put it back instead.
+ * Hashtags are kept as ids from the TagDictionary.
+ * Keys without a typed field are kept in a map that is only made when used.<br>
+ * An item read lazily from a binary file has no title and hashtags of its
+ * own until they are set. Until then, they are read from its record in the
+ * file each time they are got, see LazyFieldSource.<br>
+ * The uid of an item should be set once, before the item is put in any hash
+ * based collection, because it is what identifies the item.
  */
-public class ItemData extends DataHolder implements Comparable<ItemData> {
+public class ItemData implements Comparable<ItemData> {
+
+	/** the value of a date field that is not set */
+	public static final long NO_TIME = Long.MIN_VALUE;
 
 	private ItemType mType;
-	
+	private int mUID;
+	private boolean mHasUID;
+	private String mTitle;
+	private int[] mTagIds;
+	private long mStart;
+	private long mEnd;
+	private long mDue;
+	private boolean mDone;
+	private boolean mHasDone;
+	private EnumMap<DataKey, Object> mOthers;
+	private LazyFieldSource mSource;
+	private int mOffset;
+
 	public ItemData() {
-		mType = ItemType.PLAN; // a default value
+		this(ItemType.PLAN); // a default value
 	}
 
 	public ItemData(ItemType type) {
-		super();
 		mType = type;
+		mStart = NO_TIME;
+		mEnd = NO_TIME;
+		mDue = NO_TIME;
 	}
-	
+
 	public void setItemType(ItemType type) {
 		mType = type;
 	}
@@ -35,15 +72,381 @@ public class ItemData extends DataHolder implements Comparable<ItemData> {
 		return mType;
 	}
 
+	public boolean hasUID() {
+		return mHasUID;
+	}
+
+	public int getUID() {
+		return mUID;
+	}
+
+	public void setUID(int uid) {
+		mUID = uid;
+		mHasUID = true;
+	}
+
+	public String getTitle() {
+		if (mSource != null) {
+			return mSource.getTitle(mOffset);
+		}
+		return mTitle;
+	}
+
+	public void setTitle(String title) {
+		loadFields();
+		mTitle = title;
+	}
+
+	/**
+	 * Returns the list of hashtags of this item. The list is made from the
+	 * tag ids each time, so changing it does not change the item.
+	 *
+	 * @return a new list of the hashtags, or {@code null} if the item has 
+	 *         none set
+	 */
+	public ArrayList<String> getTags() {
+		int[] tagIds = getTagIds();
+		if (tagIds == null) {
+			return null;
+		}
+		return TagDictionary.getInstance().getTags(tagIds);
+	}
+
+	public void setTags(ArrayList<String> tags) {
+		loadFields();
+		if (tags == null) {
+			mTagIds = null;
+		} else {
+			mTagIds = TagDictionary.getInstance().getIds(tags);
+		}
+	}
+	
+	/**
+	 * Returns the ids of the hashtags of this item, from the TagDictionary.
+	 * The array belongs to the item and should not be changed.
+	 *
+	 * @return the tag ids, or {@code null} if the item has no hashtags set
+	 */
+	public int[] getTagIds() {
+		if (mSource != null) {
+			return mSource.getTagIds(mOffset);
+		}
+		return mTagIds;
+	}
+	
+	/**
+	 * Sets the hashtags of this item by their ids in the TagDictionary.
+	 * The array then belongs to the item and should not be changed.
+	 *
+	 * @param tagIds the tag ids, or {@code null} for no hashtags set
+	 */
+	public void setTagIds(int[] tagIds) {
+		loadFields();
+		mTagIds = tagIds;
+	}
+	
+	/**
+	 * Makes the title and hashtags of this item be read from a record
+	 * when they are needed, instead of being kept in the item.
+	 *
+	 * @param source the records of the file the item was read from
+	 * @param offset the start of the record of the item
+	 */
+	public void setLazyFields(LazyFieldSource source, int offset) {
+		mSource = source;
+		mOffset = offset;
+		mTitle = null;
+		mTagIds = null;
+	}
+	
+	/**
+	 * @return true if the title and hashtags are read from a record
+	 */
+	public boolean hasLazyFields() {
+		return mSource != null;
+	}
+	
+	/**
+	 * Returns true if the item has any of the hashtags in a set of tag ids
+	 *
+	 * @param tagIds the set of tag ids
+	 * @return true if one of the hashtags of the item is in the set
+	 */
+	public boolean hasAnyTag(BitSet tagIds) {
+		int[] ownTagIds = getTagIds();
+		if (ownTagIds == null) {
+			return false;
+		}
+		for (int id : ownTagIds) {
+			if (tagIds.get(id)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the start in milliseconds since the epoch, or NO_TIME
+	 */
+	public long getStart() {
+		return mStart;
+	}
+
+	public void setStart(long start) {
+		mStart = start;
+	}
+
+	/**
+	 * @return the end in milliseconds since the epoch, or NO_TIME
+	 */
+	public long getEnd() {
+		return mEnd;
+	}
+
+	public void setEnd(long end) {
+		mEnd = end;
+	}
+
+	/**
+	 * @return the due time in milliseconds since the epoch, or NO_TIME
+	 */
+	public long getDue() {
+		return mDue;
+	}
+
+	public void setDue(long due) {
+		mDue = due;
+	}
+
+	/**
+	 * Returns the time this item is sorted by: the start of an event, the due
+	 * time of a task, or NO_TIME if the item has neither.
+	 *
+	 * @return the time in milliseconds since the epoch, or NO_TIME
+	 */
+	public long getSortTime() {
+		if (mStart != NO_TIME) {
+			return mStart;
+		}
+		return mDue;
+	}
+
+	public boolean hasDone() {
+		return mHasDone;
+	}
+
+	public boolean isDone() {
+		return mDone;
+	}
+
+	public void setDone(boolean done) {
+		mDone = done;
+		mHasDone = true;
+	}
+
+	/**
+	 * Associates the specified value with the specified key. An existing value
+	 * of the same key will be replaced. The value cannot be {@code null}.
+	 * Dates can be given as a Calendar or as milliseconds since the epoch.
+	 *
+	 * @param key
+	 *            The key of the value, one of Constants.Keys.
+	 * @param item
+	 *            The value to be put inside
+	 * @return {@code true} when the operation is successful, or {@code false}
+	 *         when the inserted value is null
+	 */
+	public boolean put(DataKey key, Object item) {
+		if (item == null) {
+			return false;
+		}
+
+		switch (key) {
+			case UID :
+				setUID((Integer) item);
+				break;
+
+			case TITLE :
+				setTitle((String) item);
+				break;
+
+			case HASHTAGS :
+				@SuppressWarnings("unchecked")
+				ArrayList<String> tags = (ArrayList<String>) item;
+				setTags(tags);
+				break;
+
+			case START :
+				setStart(toMillis(item));
+				break;
+
+			case END :
+				setEnd(toMillis(item));
+				break;
+
+			case DUE :
+				setDue(toMillis(item));
+				break;
+
+			case DONE :
+				setDone((Boolean) item);
+				break;
+
+			default :
+				if (mOthers == null) {
+					mOthers = new EnumMap<DataKey, Object>(DataKey.class);
+				}
+				mOthers.put(key, item);
+				break;
+		}
+		return true;
+	}
+
+	/**
+	 * Retrieves the value that is associated with the key.
+	 * Dates are returned as a new Calendar.
+	 *
+	 * @param key
+	 *            The key of the value to retrieve
+	 * @return The value, or {@code null} if the key is not mapped.
+	 */
+	public Object get(DataKey key) {
+		switch (key) {
+			case UID :
+				return mHasUID ? (Object) mUID : null;
+
+			case TITLE :
+				return getTitle();
+
+			case HASHTAGS :
+				return getTags();
+
+			case START :
+				return toCalendar(mStart);
+
+			case END :
+				return toCalendar(mEnd);
+
+			case DUE :
+				return toCalendar(mDue);
+
+			case DONE :
+				return mHasDone ? (Object) mDone : null;
+
+			default :
+				if (mOthers == null) {
+					return null;
+				}
+				return mOthers.get(key);
+		}
+	}
+
+	/**
+	 * Returns a boolean value describing if the named value exists inside.
+	 *
+	 * @param key
+	 *            The key of the value to check.
+	 * @return {@code true} if the value exists, or {@code false} otherwise.
+	 */
+	public boolean contains(DataKey key) {
+		switch (key) {
+			case UID :
+				return mHasUID;
+
+			case TITLE :
+				return getTitle() != null;
+
+			case HASHTAGS :
+				return getTagIds() != null;
+
+			case START :
+				return mStart != NO_TIME;
+
+			case END :
+				return mEnd != NO_TIME;
+
+			case DUE :
+				return mDue != NO_TIME;
+
+			case DONE :
+				return mHasDone;
+
+			default :
+				return mOthers != null && mOthers.containsKey(key);
+		}
+	}
+
+	/**
+	 * Returns the keys of the values contained in this item.
+	 *
+	 * @return the keyset
+	 */
+	public Set<DataKey> getKeys() {
+		Set<DataKey> keys = EnumSet.noneOf(DataKey.class);
+		DataKey[] typedKeys = { Keys.UID, Keys.TITLE, Keys.HASHTAGS,
+				Keys.START, Keys.END, Keys.DUE, Keys.DONE };
+		for (DataKey key : typedKeys) {
+			if (contains(key)) {
+				keys.add(key);
+			}
+		}
+		if (mOthers != null) {
+			keys.addAll(mOthers.keySet());
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns a copy of this item. Changing the copy does not change 
+	 * this item.
+	 *
+	 * @return the copy
+	 */
+	public ItemData copy() {
+		ItemData copy = new ItemData(mType);
+		copy.mUID = mUID;
+		copy.mHasUID = mHasUID;
+		copy.mTitle = mTitle;
+		// the tag id array is never changed, so it can be shared
+		copy.mTagIds = mTagIds;
+		copy.mSource = mSource;
+		copy.mOffset = mOffset;
+		copy.mStart = mStart;
+		copy.mEnd = mEnd;
+		copy.mDue = mDue;
+		copy.mDone = mDone;
+		copy.mHasDone = mHasDone;
+		if (mOthers != null) {
+			for (Entry<DataKey, Object> entry : mOthers.entrySet()) {
+				Object value = entry.getValue();
+				if (value instanceof Calendar) {
+					value = ((Calendar) value).clone();
+				} else if (value instanceof ArrayList) {
+					value = ((ArrayList<?>) value).clone();
+				}
+				copy.put(entry.getKey(), value);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Items are identified by their uid, which does not change when the other
+	 * fields are edited, so an item keeps the same hash code in hash based
+	 * collections. An item without a uid is only equal to itself.
+	 */
 	@Override
 	public int hashCode() {
-		int hash = 0;
-		for (Object value : mData.values()) {
-			hash = hash | value.hashCode();
+		if (!mHasUID) {
+			return System.identityHashCode(this);
 		}
-		return hash;
+		return mUID;
 	}
 
+	/**
+	 * Two items are equal if they have the same uid, even if their other
+	 * fields are different. Use contentEquals() to compare all the fields.
+	 */
 	@Override
 	public boolean equals(Object other) {
 		if (other == this) {
@@ -56,148 +459,119 @@ public class ItemData extends DataHolder implements Comparable<ItemData> {
 			return false;
 		} else {
 			ItemData otherItem = (ItemData) other;
-			if (!this.getItemType().equals(otherItem.getItemType())) {
-				return false;
-			}
-			if (!this.getData().equals(otherItem.getData())) {
+			if (!mHasUID || !otherItem.mHasUID) {
 				return false;
 			}
+			return mUID == otherItem.mUID;
+		}
+	}
+
+	/**
+	 * Returns true if the other item has the same type and the same data in
+	 * every field, uid included.
+	 *
+	 * @param other the item to compare with
+	 * @return true if all the fields are the same
+	 */
+	public boolean contentEquals(ItemData other) {
+		if (other == this) {
 			return true;
 		}
+		if (other == null) {
+			return false;
+		}
+		return mType == other.mType
+				&& mHasUID == other.mHasUID
+				&& mUID == other.mUID
+				&& isSame(getTitle(), other.getTitle())
+				&& Arrays.equals(getTagIds(), other.getTagIds())
+				&& mStart == other.mStart
+				&& mEnd == other.mEnd
+				&& mDue == other.mDue
+				&& mHasDone == other.mHasDone
+				&& mDone == other.mDone
+				&& isSame(mOthers, other.mOthers);
 	}
 
+	/**
+	 * Returns a short description of this item, for logs and debugging.
+	 * It is not the line of the item in the storage file.
+	 */
 	@Override
 	public String toString() {
-		switch (mType) {
-		case EVENT :
-			return makeEventString();
-		case TASK : 
-			return makeTaskString();
-		case PLAN : 
-			return makePlanString();
-		default:
-			return null;
+		StringBuilder builder = new StringBuilder();
+		builder.append(mType);
+		if (mHasUID) {
+			builder.append(' ').append(mUID);
+		}
+		builder.append(" \"").append(getTitle()).append('"');
+		appendTime(builder, "start", mStart);
+		appendTime(builder, "end", mEnd);
+		appendTime(builder, "due", mDue);
+		if (mHasDone) {
+			builder.append(mDone ? " done" : " not done");
 		}
+		int[] tagIds = getTagIds();
+		if (tagIds != null) {
+			builder.append(' ').append(TagDictionary.getInstance().getTags(tagIds));
+		}
+		return builder.toString();
 	}
 
 	@Override
 	public int compareTo(ItemData other) {
-		Calendar thisCal;
-		Calendar otherCal;
-
-		if (this.contains(Keys.START)) {
-			thisCal = (Calendar) this.get(Keys.START);
-		} else if (this.contains(Keys.DUE)) {
-			thisCal = (Calendar) this.get(Keys.DUE);
-		} else {
-			thisCal = null;
-		}
+		long thisTime = this.getSortTime();
+		long otherTime = other.getSortTime();
 
-		if (other.contains(Keys.START)) {
-			otherCal = (Calendar) other.get(Keys.START);
-		} else if (other.contains(Keys.DUE)) {
-			otherCal = (Calendar) other.get(Keys.DUE);
-		} else {
-			otherCal = null;
-		}
-
-		if (thisCal == null && otherCal == null) {
+		if (thisTime == NO_TIME && otherTime == NO_TIME) {
 			// they are equal if nothing to compare
 			return 0;
-		} else if (thisCal == null && otherCal != null) {
+		} else if (thisTime == NO_TIME) {
 			// this is placed behind the other
 			// if the other has a date and this doesnt.
 			return 1;
-		} else if (thisCal != null && otherCal == null) {
-			// this is placed in front of the other 
+		} else if (otherTime == NO_TIME) {
+			// this is placed in front of the other
 			// if this has a date and the other doesnt.
 			return -1;
-		} else if (thisCal != null && otherCal != null) {
-			// if both are not null, then just 
-			// return the comparision to the other
-			return thisCal.compareTo(otherCal);
 		} else {
-			// this should not happen
-			return 0;
+			return Long.compare(thisTime, otherTime);
 		}
 	}
 
-	private String getTagString(ArrayList<String> list) {
-		String result = new String();
-		for (int i = 0; i < list.size(); i++) {
-			result = result.concat(list.get(i));
-			if (i != list.size() - 1) { //not last element 
-				result = result.concat(StorageStrings.TAG_DELIMITER);
-			}
+	private void loadFields() {
+		// the item gets its own title and hashtags before one of them is set
+		if (mSource != null) {
+			mTitle = mSource.getTitle(mOffset);
+			mTagIds = mSource.getTagIds(mOffset);
+			mSource = null;
 		}
-		result.concat(";");
-		// postcondition
-		assert (result != null);
-		return result;
-	}
-
-	private String makeEventString() {
-		// uid | type | title | sdate | stime | edate | etime | tags
-		Calendar startCal = (Calendar) mData.get(Keys.START);
-		Calendar endCal = (Calendar) mData.get(Keys.END);
-		@SuppressWarnings("unchecked")
-		ArrayList<String> taglist = (ArrayList<String>) mData.get(Keys.HASHTAGS);
-		assert (taglist != null);
-		String tagsString = getTagString(taglist);
-		
-		String result = String.format(StorageStrings.UNFORMATTED_STRING_EVENT,
-				mData.get(Keys.UID),
-				mType.toString(),
-				mData.get(Keys.TITLE),
-				startCal.get(Calendar.DAY_OF_MONTH),
-				startCal.get(Calendar.MONTH) + 1, // add 1 to offset 0-basing in cal object
-				startCal.get(Calendar.YEAR),
-				startCal.get(Calendar.HOUR_OF_DAY),
-				startCal.get(Calendar.MINUTE),
-				endCal.get(Calendar.DAY_OF_MONTH),
-				endCal.get(Calendar.MONTH) + 1, // add 1 to offset 0-basing in cal object
-				endCal.get(Calendar.YEAR), 
-				endCal.get(Calendar.HOUR_OF_DAY),
-				endCal.get(Calendar.MINUTE), 
-				tagsString);
-		return result;
-	}
-
-	private String makeTaskString() {
-		// uid | type | title | ddate | dtime | done | tags
-		@SuppressWarnings("unchecked")
-		ArrayList<String> taglist = (ArrayList<String>) mData.get(Keys.HASHTAGS);
-		assert (taglist != null);
-		String tagsString = getTagString(taglist);
-		Calendar dueCal = (Calendar) mData.get(Keys.DUE);
-		
-		String result = String.format(StorageStrings.UNFORMATTED_STRING_TASK,
-				mData.get(Keys.UID),
-				mType.toString(),
-				mData.get(Keys.TITLE),
-				dueCal.get(Calendar.DAY_OF_MONTH),
-				dueCal.get(Calendar.MONTH) + 1, // add 1 to offset 0-basing in cal object
-				dueCal.get(Calendar.YEAR),
-				dueCal.get(Calendar.HOUR_OF_DAY),
-				dueCal.get(Calendar.MINUTE), 
-				mData.get(Keys.DONE),
-				tagsString);
-		return result;
 	}
-	
-	private String makePlanString() {
-		// uid | type | title | done | tags
-		@SuppressWarnings("unchecked")
-		ArrayList<String> taglist = (ArrayList<String>) mData.get(Keys.HASHTAGS);
-		assert (taglist != null);
-		String tagsString = getTagString(taglist);
-		
-		String result = String.format(StorageStrings.UNFORMATTED_STRING_PLAN,
-				mData.get(Keys.UID),
-				mType.toString(),
-				mData.get(Keys.TITLE),
-				mData.get(Keys.DONE),
-				tagsString);
-		return result;
+
+	private static void appendTime(StringBuilder builder, String name, long time) {
+		if (time != NO_TIME) {
+			builder.append(' ').append(name).append(' ').append(new Date(time));
+		}
+	}
+
+	private static long toMillis(Object date) {
+		if (date instanceof Calendar) {
+			return ((Calendar) date).getTimeInMillis();
+		}
+		return ((Number) date).longValue();
+	}
+
+	private static Calendar toCalendar(long millis) {
+		if (millis == NO_TIME) {
+			return null;
+		}
+		return EpochTime.toCalendar(millis);
+	}
+
+	private static boolean isSame(Object a, Object b) {
+		if (a == null) {
+			return b == null;
+		}
+		return a.equals(b);
 	}
 }
@@ -0,0 +1,23 @@
+//@author A0108358B
+package udo.data;
+
+/**
+ * This interface is for the place the title and hashtags of an item read
+ * lazily come from (see ItemData.setLazyFields()). The item only keeps the
+ * offset of its record, and gets the fields from the source each time
+ * they are needed, until they are set.
+ */
+public interface LazyFieldSource {
+
+	/**
+	 * @param offset the offset of the record of the item
+	 * @return the title of the item
+	 */
+	public String getTitle(int offset);
+
+	/**
+	 * @param offset the offset of the record of the item
+	 * @return the hashtag ids of the item, from the TagDictionary, or null
+	 */
+	public int[] getTagIds(int offset);
+}
@@ -0,0 +1,132 @@
+//@author A0108358B
+package udo.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * This class gives every hashtag a small number (its id), so that items can
+ * keep their hashtags as arrays of ids instead of lists of strings.<br>
+ * Each hashtag string is kept only once, however many items have it.
+ * Ids are never taken back, so an id always means the same hashtag.<br>
+ * There is one dictionary for the whole program, got with getInstance().
+ */
+public class TagDictionary {
+
+	/** the id findId() gives for a hashtag that has no id */
+	public static final int NO_ID = -1;
+
+	private static final TagDictionary INSTANCE = new TagDictionary();
+
+	private HashMap<String, Integer> mIds;
+	private ArrayList<String> mTags;
+
+	private TagDictionary() {
+		mIds = new HashMap<String, Integer>();
+		mTags = new ArrayList<String>();
+	}
+
+	public static TagDictionary getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * returns the id of a hashtag, giving it a new id if it has none yet
+	 *
+	 * @param tag the hashtag
+	 * @return the id of the hashtag
+	 */
+	public synchronized int getId(String tag) {
+		Integer id = mIds.get(tag);
+		if (id == null) {
+			id = mTags.size();
+			mTags.add(tag);
+			mIds.put(tag, id);
+		}
+		return id;
+	}
+
+	/**
+	 * returns the id of a hashtag, without giving it one if it has none
+	 *
+	 * @param tag the hashtag
+	 * @return the id of the hashtag, or NO_ID
+	 */
+	public synchronized int findId(String tag) {
+		Integer id = mIds.get(tag);
+		if (id == null) {
+			return NO_ID;
+		}
+		return id;
+	}
+
+	/**
+	 * returns the ids of a list of hashtags, in the same order,
+	 * without giving ids to the ones that have none
+	 *
+	 * @param tags the hashtags
+	 * @return the ids of the hashtags, NO_ID for the ones that have none
+	 */
+	public synchronized int[] findIds(ArrayList<String> tags) {
+		int[] ids = new int[tags.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = findId(tags.get(i));
+		}
+		return ids;
+	}
+
+	/**
+	 * returns the hashtag of an id
+	 *
+	 * @param id the id, from getId()
+	 * @return the hashtag
+	 */
+	public synchronized String getTag(int id) {
+		return mTags.get(id);
+	}
+
+	/**
+	 * returns the ids of a list of hashtags, in the same order
+	 *
+	 * @param tags the hashtags
+	 * @return the ids of the hashtags
+	 */
+	public synchronized int[] getIds(ArrayList<String> tags) {
+		int[] ids = new int[tags.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = getId(tags.get(i));
+		}
+		return ids;
+	}
+
+	/**
+	 * returns the hashtags of a list of ids, in the same order
+	 *
+	 * @param ids the ids
+	 * @return a new list of the hashtags
+	 */
+	public synchronized ArrayList<String> getTags(int[] ids) {
+		ArrayList<String> tags = new ArrayList<String>(ids.length);
+		for (int id : ids) {
+			tags.add(mTags.get(id));
+		}
+		return tags;
+	}
+
+	/**
+	 * returns the ids of all the hashtags that contain a string
+	 *
+	 * @param query the string to look for
+	 * @return the set of ids of the hashtags containing the string
+	 */
+	public synchronized BitSet getIdsContaining(String query) {
+		BitSet ids = new BitSet(mTags.size());
+		for (int id = 0; id < mTags.size(); id++) {
+			if (mTags.get(id).contains(query)) {
+				ids.set(id);
+			}
+		}
+		return ids;
+	}
+}
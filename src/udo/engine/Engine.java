@@ -9,12 +9,19 @@ import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import udo.constants.Constants.Keys;
 import udo.constants.Constants.LoggingStrings;
+import udo.constants.Constants.MainVars;
+import udo.data.EpochTime;
 import udo.data.InputData;
 import udo.data.ItemData;
 import udo.data.OutputData;
+import udo.engine.util.AutoSaver;
 import udo.engine.util.Cache;
 import udo.engine.util.FileManager;
+import udo.engine.util.ItemLoader;
+import udo.engine.util.Journal;
+import udo.engine.util.StartupWindow;
 import udo.engine.util.UndoBin;
 import udo.engine.util.runners.Runner;
 import udo.engine.util.runners.RunnerAdd;
@@ -32,19 +39,31 @@ import udo.exceptions.ReadingFromStorageException;
 
 /**
  * This is a facade class for the engine component.<br>
- * It shields and controls the cache, undobin and filemanager.<br>
+ * It shields and controls the cache, undobin, filemanager, journal and autosaver.<br>
  * It also creates command runners that execute the commands (command pattern).<br>
- * Only one instance of the Engine can exist (singleton).
+ * Only one instance of the Engine can exist (singleton).<br>
+ * Every change to the items is written to the journal as soon as it is made.
+ * The items are saved in the background by the autosaver, 
+ * which starts the journal again.
+ * At startup, the items of the coming days are read first from the window
+ * file written by the last save, and the rest in the background.
+ * If the rest cannot be read, it is read again before each command, and
+ * the commands that need every item fail until it is. A damaged file is
+ * not read again until the next start, which reads it the usual way.
  * 
  * Engine logs into logs/engineLog.log
  */
 public class Engine {
 	
 	private static Engine ENGINE_INSTANCE = null;
+	private static final String LOADER_THREAD_NAME = "uDo-loader";
 	
 	private FileManager mFileManager;
 	private Cache mCache;
 	private UndoBin mUndoBin;
+	private Journal mJournal;
+	private AutoSaver mAutoSaver;
+	private ItemLoader mLoader;
 	
 	private Logger mLogger;
 
@@ -56,6 +75,9 @@ public class Engine {
 		mFileManager = new FileManager();
 		mCache = new Cache();
 		mUndoBin = new UndoBin();
+		mJournal = new Journal();
+		mAutoSaver = new AutoSaver(mFileManager, mCache, mJournal);
+		mLoader = new ItemLoader(mFileManager, mCache, mAutoSaver);
 		
 		// set up logger
 		mLogger = Logger.getLogger(Engine.class.getSimpleName());
@@ -162,6 +184,10 @@ public class Engine {
 			return output;
 		}
 		
+		if (mCache.hasLoadFailed()) {
+			retryLoad();
+		}
+		
 		OutputData output = null;
 		Runner commandRunner = null;
 		
@@ -205,7 +231,7 @@ public class Engine {
 				
 			case SAVE :
 				logInfo("saving data...");
-				commandRunner = new RunnerSave(mFileManager, mCache);
+				commandRunner = new RunnerSave(mAutoSaver);
 				break;
 				
 			case EXIT :
@@ -229,6 +255,11 @@ public class Engine {
 		
 		// postcondition
 		assert (output != null);
+		
+		if (isChange(cmd) 
+				&& output.getExecutionStatus() == ExecutionStatus.SUCCESS) {
+			writeToJournal(cmd, (ItemData) output.get(Keys.ITEM));
+		}
 		return output;
 	}
 	
@@ -255,15 +286,20 @@ public class Engine {
 
 	/**
 	 * will save before sending the exit output.
+	 * like save, exit waits for the save to finish, but without a time limit.
 	 * @return the output stating whether it saved or nots
 	 */
 	private OutputData runExit() {
 		logInfo("saving data...");
-		OutputData saveOutput = new RunnerSave(mFileManager, mCache).run();
+		boolean isSaved = mAutoSaver.saveNow();
 		OutputData output = new OutputData(Command.EXIT,
 				ParsingStatus.SUCCESS, 
 				ExecutionStatus.FAIL);
-		output.setExecutionStatus(saveOutput.getExecutionStatus());
+		if (isSaved) {
+			output.setExecutionStatus(ExecutionStatus.SUCCESS);
+		} else {
+			logWarning("cannot save on exit", output.getCommand());
+		}
 		return output;
 	}
 	
@@ -275,9 +311,99 @@ public class Engine {
 	private void loadFile() throws ReadingFromStorageException, 
 								IOException, 
 								CacheAccessException {
-		mCache.clear();
-		ArrayList<ItemData> itemsFromFile = mFileManager.getFromFile();
-		mCache.addAll(itemsFromFile);
+		// the autosaver may be using the file manager
+		synchronized (mFileManager) {
+			mJournal.close();
+			mCache.clear();
+			StartupWindow window = mFileManager.getWindowFromFile();
+			if (isWindowEnough(window)) {
+				// the screens of the coming days are shown from the window,
+				// the rest of the items are read in the background
+				mCache.beginLoading(window);
+			} else {
+				ArrayList<ItemData> itemsFromFile = mFileManager.getFromFile();
+				mCache.addAll(itemsFromFile);
+			}
+			mAutoSaver.markSaved();
+			
+			// the changes made after the last save
+			int replayed = mJournal.replay(mCache);
+			if (replayed > 0) {
+				logInfo("replayed " + replayed + " journal records");
+				mAutoSaver.notifyChange();
+			}
+			if (mJournal.getSkippedCount() > 0) {
+				logInfo("skipped " + mJournal.getSkippedCount()
+						+ " journal records not written fully");
+			}
+			mJournal.open();
+			if (mCache.isLoading()) {
+				startLoader();
+			}
+		}
+	}
+	
+	private boolean isWindowEnough(StartupWindow window) {
+		if (window == null) {
+			return false;
+		}
+		long today = EpochTime.getDay(System.currentTimeMillis());
+		return window.covers(today, today + MainVars.DAYS_IN_ADVANCE);
+	}
+	
+	private void startLoader() {
+		Thread loader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				mLoader.run();
+				if (mCache.hasLoadFailed()) {
+					logSevere("cannot load the rest of the items", mLoader.getError());
+				} else {
+					logInfo("loaded the rest of the items");
+				}
+			}
+		}, LOADER_THREAD_NAME);
+		loader.setDaemon(true);
+		loader.start();
+	}
+	
+	private void retryLoad() {
+		if (mLoader.retry()) {
+			logInfo("loaded the rest of the items");
+		} else {
+			logSevere("still cannot load the rest of the items", mLoader.getError());
+		}
+	}
+	
+	private boolean isChange(Command cmd) {
+		switch (cmd) {
+			case ADD_EVENT :
+			case ADD_TASK :
+			case ADD_PLAN :
+			case EDIT :
+			case DELETE :
+			case MARK_DONE :
+			case TOGGLE_DONE :
+				return true;
+				
+			default:
+				return false;
+		}
+	}
+	
+	private void writeToJournal(Command cmd, ItemData item) {
+		assert (item != null);
+		try {
+			if (cmd == Command.DELETE) {
+				mJournal.logDelete(item.getUID());
+			} else {
+				mJournal.logPut(item);
+			}
+		} catch (IOException e) {
+			// the change is still in the cache and will be saved on exit
+			logSevere("cannot write to journal", e);
+		}
+		mAutoSaver.notifyChange();
 	}
 	
 	private void logInfo(String message) {
@@ -0,0 +1,234 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import udo.constants.Constants.AutoSaveVars;
+import udo.exceptions.CacheAccessException;
+import udo.exceptions.WritingToStorageException;
+
+/**
+ * This class saves the items on a thread of its own, so that commands never
+ * wait for the disk.<br>
+ * The cache version tells how many changes there have been since the last
+ * save. The items are saved once there have been enough changes, or once
+ * there has been no change for a while. Asking for a save while one is
+ * waiting to start gives back the same save, so saves never pile up.<br>
+ * A save rotates the journal, takes a snapshot of the cache, writes it
+ * and then deletes the rotated journal. The file manager is not thread
+ * safe, so anything else using it must hold its lock.<br>
+ * Nothing is saved while the cache could not load all the items, so the
+ * file is never written with only some of them.
+ */
+public class AutoSaver {
+
+	private static final String THREAD_NAME = "uDo-autosave";
+
+	private FileManager mFileManager;
+	private Cache mCache;
+	private Journal mJournal;
+	private int mSaveAfterChanges;
+	private long mQuietMillis;
+
+	private ScheduledExecutorService mExecutor;
+	private final Object mLock = new Object();
+	private Future<Boolean> mPendingSave;
+	private Future<?> mQuietSave;
+	private volatile long mSavedVersion;
+
+	public AutoSaver(FileManager fileManager, Cache cache, Journal journal) {
+		this(fileManager, cache, journal,
+				AutoSaveVars.SAVE_AFTER_CHANGES,
+				AutoSaveVars.QUIET_MILLIS);
+	}
+
+	/**
+	 * lets you specify when to save.
+	 *
+	 * @param fileManager the file manager to save with
+	 * @param cache the cache to save
+	 * @param journal the journal to start again after each save
+	 * @param saveAfterChanges the number of changes to save after
+	 * @param quietMillis the time with no changes to save after
+	 */
+	public AutoSaver(FileManager fileManager, Cache cache, Journal journal,
+			int saveAfterChanges, long quietMillis) {
+		mFileManager = fileManager;
+		mCache = cache;
+		mJournal = journal;
+		mSaveAfterChanges = saveAfterChanges;
+		mQuietMillis = quietMillis;
+		mSavedVersion = cache.getVersion();
+
+		mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				// a save that is cut off by the program ending is safe
+				Thread thread = new Thread(runnable, THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * marks the cache as it is now as saved, after it is loaded from the file
+	 */
+	public void markSaved() {
+		mSavedVersion = mCache.getVersion();
+	}
+
+	/**
+	 * tells the saver the file has the items of the cache as they were at a version
+	 *
+	 * @param version the version of the cache
+	 */
+	public void markSaved(long version) {
+		mSavedVersion = version;
+	}
+
+	/**
+	 * checks if the cache has changed since the last save
+	 *
+	 * @return true if there are changes to save
+	 */
+	public boolean isDirty() {
+		return mCache.getVersion() != mSavedVersion;
+	}
+
+	/**
+	 * tells the saver the cache was changed.
+	 * saves soon if there are many changes, or else once it is quiet.
+	 */
+	public void notifyChange() {
+		if (mCache.getVersion() - mSavedVersion >= mSaveAfterChanges) {
+			requestSave();
+			return;
+		}
+		synchronized (mLock) {
+			// start the quiet period again
+			if (mQuietSave != null) {
+				mQuietSave.cancel(false);
+			}
+			mQuietSave = mExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					requestSave();
+				}
+			}, mQuietMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * asks for a save on the saver thread without waiting for it.
+	 *
+	 * @return the save, which gives true if the items were saved
+	 */
+	public Future<Boolean> requestSave() {
+		synchronized (mLock) {
+			if (mQuietSave != null) {
+				mQuietSave.cancel(false);
+				mQuietSave = null;
+			}
+			if (mPendingSave == null) {
+				mPendingSave = mExecutor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						synchronized (mLock) {
+							// asking again from now on needs a new save
+							mPendingSave = null;
+						}
+						return save();
+					}
+				});
+			}
+			return mPendingSave;
+		}
+	}
+
+	/**
+	 * saves on the saver thread and waits for it to finish.
+	 *
+	 * @return true if the items were saved
+	 */
+	public boolean saveNow() {
+		try {
+			return requestSave().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * saves on the saver thread and waits a while for it to finish.
+	 *
+	 * @param timeoutMillis the longest time to wait
+	 * @return true if the items were saved within that time
+	 */
+	public boolean saveNow(long timeoutMillis) {
+		try {
+			return requestSave().get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		} catch (TimeoutException e) {
+			// still saving, so not known to be saved
+			return false;
+		}
+	}
+
+	private boolean save() {
+		if (!isDirty()) {
+			return true;
+		}
+		try {
+			// the items still being loaded must not be saved over,
+			// and the items of the window alone must never be saved
+			mCache.awaitLoaded();
+		} catch (CacheAccessException e) {
+			return false;
+		}
+		synchronized (mFileManager) {
+			boolean isRotated = true;
+			try {
+				// rotated before the snapshot is taken, so every
+				// change in the rotated journal is in the snapshot
+				mJournal.rotate();
+			} catch (IOException e) {
+				// still save, the journal is just kept a while longer
+				isRotated = false;
+			}
+
+			CacheSnapshot snapshot;
+			try {
+				snapshot = mCache.snapshot();
+				mFileManager.writeToFile(snapshot.getAllItems());
+			} catch (CacheAccessException e) {
+				return false;
+			} catch (IOException e) {
+				return false;
+			} catch (WritingToStorageException e) {
+				return false;
+			}
+
+			mSavedVersion = snapshot.getVersion();
+			if (isRotated) {
+				mJournal.discardRotated();
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import udo.constants.Constants.StorageVars;
+import udo.data.ItemData;
+import udo.data.TagDictionary;
+import udo.enums.ItemType;
+import udo.exceptions.ReadingFromStorageException;
+
+/**
+ * This class reads the items of a file in the binary storage format. It is
+ * the reverse of BinaryEncoder, see there for the format.<br>
+ * The whole file is read from one ByteBuffer. The tags of the file are
+ * looked up in the TagDictionary once, before the items, and items with
+ * the same title share one title string.<br>
+ * A file can also be read lazily: the titles and tags are skipped, and
+ * each item keeps the offset of its record in a RecordSource to read them
+ * from when they are needed. The buffer must then not change any more.
+ */
+public class BinaryDecoder {
+
+	private static final ItemType[] TYPES = ItemType.values();
+
+	private ByteBuffer mBuffer;
+	private byte[] mBytes;
+	private int[] mTagIds;
+	private HashMap<String, String> mTitles;
+	private RecordSource mSource;
+
+	/**
+	 * checks if the start of a file is the start of a binary file
+	 *
+	 * @param header the first bytes of the file
+	 * @param length the number of bytes in header that were read
+	 * @return true if the file is a binary file
+	 */
+	public static boolean isBinary(byte[] header, int length) {
+		if (length < BinaryEncoder.MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < BinaryEncoder.MAGIC.length; i++) {
+			if (header[i] != BinaryEncoder.MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * reads all the items of a binary file
+	 *
+	 * @param buffer the contents of the file, from its position to its limit
+	 * @return the items
+	 * @throws ReadingFromStorageException if the file is damaged or not whole
+	 */
+	public ArrayList<ItemData> decode(ByteBuffer buffer) throws ReadingFromStorageException {
+		return decode(buffer, false);
+	}
+
+	/**
+	 * reads all the items of a binary file, maybe lazily
+	 *
+	 * @param buffer the contents of the file, from its position to its limit
+	 * @param isLazy true to leave the titles and tags in the buffer until needed
+	 * @return the items
+	 * @throws ReadingFromStorageException if the file is damaged or not whole
+	 */
+	public ArrayList<ItemData> decode(ByteBuffer buffer, boolean isLazy)
+			throws ReadingFromStorageException {
+		mBuffer = buffer;
+		mBytes = new byte[64];
+		mTitles = new HashMap<String, String>();
+		try {
+			checkCrc();
+			checkHeader();
+			readTags();
+			if (isLazy) {
+				mSource = new RecordSource(buffer.duplicate(), mTagIds,
+						StorageVars.DECODED_RECORDS);
+			}
+
+			int count = readVarint();
+			ArrayList<ItemData> items = new ArrayList<ItemData>(count);
+			for (int i = 0; i < count; i++) {
+				items.add(readItem());
+			}
+			return items;
+
+		} catch (BufferUnderflowException e) {
+			throw new ReadingFromStorageException("binary file is cut short", e);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new ReadingFromStorageException("damaged binary file", e);
+		} finally {
+			mBuffer = null;
+			mTitles = null;
+			mSource = null;
+		}
+	}
+
+	/**
+	 * reads the item whose record starts at an offset of a checked file
+	 *
+	 * @param buffer the contents of the file
+	 * @param offset the start of the record
+	 * @param tagIds the dictionary ids of the tags of the file, by their number
+	 * @return the item, with its title and tags
+	 * @throws ReadingFromStorageException if the record is damaged
+	 */
+	ItemData decodeAt(ByteBuffer buffer, int offset, int[] tagIds)
+			throws ReadingFromStorageException {
+		mBuffer = buffer.duplicate();
+		mBuffer.position(offset);
+		mTagIds = tagIds;
+		if (mBytes == null) {
+			mBytes = new byte[64];
+		}
+		try {
+			return readItem();
+		} catch (BufferUnderflowException e) {
+			throw new ReadingFromStorageException("binary record is cut short", e);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new ReadingFromStorageException("damaged binary record", e);
+		} finally {
+			mBuffer = null;
+		}
+	}
+
+	private void checkCrc() throws ReadingFromStorageException {
+		int start = mBuffer.position();
+		int end = mBuffer.limit() - 4;
+		if (end < start) {
+			throw new BufferUnderflowException();
+		}
+		CRC32 crc = new CRC32();
+		if (mBuffer.hasArray()) {
+			crc.update(mBuffer.array(), mBuffer.arrayOffset() + start, end - start);
+		} else {
+			byte[] chunk = new byte[8192];
+			ByteBuffer view = mBuffer.duplicate();
+			view.limit(end);
+			while (view.hasRemaining()) {
+				int length = Math.min(chunk.length, view.remaining());
+				view.get(chunk, 0, length);
+				crc.update(chunk, 0, length);
+			}
+		}
+		if ((int) crc.getValue() != mBuffer.getInt(end)) {
+			throw new ReadingFromStorageException("binary file checksum is wrong");
+		}
+		// the crc is not part of the items
+		mBuffer.limit(end);
+	}
+
+	private void checkHeader() throws ReadingFromStorageException {
+		for (byte expected : BinaryEncoder.MAGIC) {
+			if (mBuffer.get() != expected) {
+				throw new ReadingFromStorageException("not a binary file");
+			}
+		}
+		int version = mBuffer.get();
+		if (version != StorageVars.BINARY_VERSION) {
+			throw new ReadingFromStorageException("unknown binary version " + version);
+		}
+	}
+
+	private void readTags() {
+		TagDictionary dictionary = TagDictionary.getInstance();
+		int count = readVarint();
+		mTagIds = new int[count];
+		for (int i = 0; i < count; i++) {
+			mTagIds[i] = dictionary.getId(readString(readVarint()));
+		}
+	}
+
+	private ItemData readItem() throws ReadingFromStorageException {
+		int offset = mBuffer.position();
+		int flags = mBuffer.get() & 0xFF;
+		int type = flags & BinaryEncoder.TYPE_MASK;
+		if (type >= TYPES.length) {
+			throw new ReadingFromStorageException("unknown item type " + type);
+		}
+		ItemData item = new ItemData(TYPES[type]);
+
+		if ((flags & BinaryEncoder.FLAG_HAS_UID) != 0) {
+			item.setUID(readVarint());
+		}
+		int titleLength = readVarint();
+		if (mSource != null) {
+			skip(titleLength - 1);
+		} else if (titleLength != BinaryEncoder.NO_TITLE) {
+			item.setTitle(getTitle(readString(titleLength - 1)));
+		}
+		if ((flags & BinaryEncoder.FLAG_HAS_START) != 0) {
+			item.setStart(readTime());
+		}
+		if ((flags & BinaryEncoder.FLAG_HAS_END) != 0) {
+			item.setEnd(readTime());
+		}
+		if ((flags & BinaryEncoder.FLAG_HAS_DUE) != 0) {
+			item.setDue(readTime());
+		}
+		if ((flags & BinaryEncoder.FLAG_HAS_DONE) != 0) {
+			item.setDone((flags & BinaryEncoder.FLAG_DONE) != 0);
+		}
+
+		int tagCount = readVarint();
+		if (mSource != null) {
+			for (int i = 0; i < tagCount; i++) {
+				readVarint();
+			}
+			item.setLazyFields(mSource, offset);
+			return item;
+		}
+		int[] tagIds = new int[tagCount];
+		for (int i = 0; i < tagCount; i++) {
+			tagIds[i] = mTagIds[readVarint()];
+		}
+		item.setTagIds(tagIds);
+		return item;
+	}
+
+	private long readTime() {
+		long zigzag = readVarlong();
+		long minutes = (zigzag >>> 1) ^ -(zigzag & 1);
+		return minutes * BinaryEncoder.MILLIS_PER_MINUTE;
+	}
+
+	private String readString(int length) {
+		if (length < 0 || length > mBuffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		if (mBuffer.hasArray()) {
+			int offset = mBuffer.arrayOffset() + mBuffer.position();
+			mBuffer.position(mBuffer.position() + length);
+			return new String(mBuffer.array(), offset, length, BinaryEncoder.UTF_8);
+		}
+		if (mBytes.length < length) {
+			mBytes = new byte[Math.max(length, mBytes.length * 2)];
+		}
+		mBuffer.get(mBytes, 0, length);
+		return new String(mBytes, 0, length, BinaryEncoder.UTF_8);
+	}
+
+	private void skip(int length) {
+		if (length < 0) {
+			return;
+		}
+		if (length > mBuffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		mBuffer.position(mBuffer.position() + length);
+	}
+
+	private int readVarint() {
+		return (int) readVarlong();
+	}
+
+	private long readVarlong() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = mBuffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0 && shift < 64);
+		return value;
+	}
+
+	private String getTitle(String title) {
+		if (mTitles == null) {
+			return title;
+		}
+		String sameTitle = mTitles.get(title);
+		if (sameTitle == null) {
+			mTitles.put(title, title);
+			return title;
+		}
+		return sameTitle;
+	}
+}
@@ -0,0 +1,219 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import udo.constants.Constants.StorageVars;
+import udo.data.ItemData;
+import udo.data.TagDictionary;
+
+/**
+ * This class writes items in the binary storage format. BinaryDecoder reads
+ * them back.<br>
+ * file: magic | version | tag count | tags | item count | items | crc32<br>
+ * item: flags | uid | title | times | tag count | tag numbers<br>
+ * Numbers are varints, so small numbers take one byte. Strings are the
+ * length in bytes followed by UTF-8. Times are minutes since the epoch, the
+ * same precision as the text format. The tags of the file are written once
+ * at the start and items refer to them by their number in that list.<br>
+ * The whole file is built in one byte array that is reused for every save
+ * and written out in one go. The crc32 at the end covers everything before
+ * it, so a file that was not written fully is found when it is read.
+ */
+public class BinaryEncoder {
+
+	/** the first bytes of a binary file, a text file never starts with 0 */
+	public static final byte[] MAGIC = { 0, 'u', 'D', 'o' };
+
+	// the flags byte of an item
+	public static final int TYPE_MASK = 0x03;
+	public static final int FLAG_DONE = 0x04;
+	public static final int FLAG_HAS_DONE = 0x08;
+	public static final int FLAG_HAS_UID = 0x10;
+	public static final int FLAG_HAS_START = 0x20;
+	public static final int FLAG_HAS_END = 0x40;
+	public static final int FLAG_HAS_DUE = 0x80;
+
+	// the length written for a title that is not set
+	public static final int NO_TITLE = 0;
+
+	public static final long MILLIS_PER_MINUTE = 60L * 1000L;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] mBuffer;
+	private int mLength;
+	private int[] mTagNumbers;
+
+	public BinaryEncoder() {
+		mBuffer = new byte[8192];
+		mTagNumbers = new int[0];
+	}
+
+	/**
+	 * writes a list of items in the binary format
+	 *
+	 * @param items the items to write
+	 * @param out the stream to write to
+	 * @throws IOException if writing error
+	 */
+	public void write(ArrayList<ItemData> items, OutputStream out) throws IOException {
+		mLength = 0;
+		putBytes(MAGIC, 0, MAGIC.length);
+		putByte(StorageVars.BINARY_VERSION);
+
+		ArrayList<String> tags = numberTags(items);
+		putVarint(tags.size());
+		for (String tag : tags) {
+			putString(tag);
+		}
+
+		putVarint(items.size());
+		for (ItemData item : items) {
+			putItem(item);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(mBuffer, 0, mLength);
+		putInt((int) crc.getValue());
+		out.write(mBuffer, 0, mLength);
+	}
+
+	private ArrayList<String> numberTags(ArrayList<ItemData> items) {
+		// gives the tags used in the file the numbers 0, 1, 2... in the
+		// order they are first used, indexed by their dictionary id
+		Arrays.fill(mTagNumbers, -1);
+		ArrayList<String> tags = new ArrayList<String>();
+		TagDictionary dictionary = TagDictionary.getInstance();
+		for (ItemData item : items) {
+			int[] tagIds = item.getTagIds();
+			if (tagIds == null) {
+				continue;
+			}
+			for (int id : tagIds) {
+				if (id >= mTagNumbers.length) {
+					int oldLength = mTagNumbers.length;
+					mTagNumbers = Arrays.copyOf(mTagNumbers, Math.max(id + 1, oldLength * 2));
+					Arrays.fill(mTagNumbers, oldLength, mTagNumbers.length, -1);
+				}
+				if (mTagNumbers[id] == -1) {
+					mTagNumbers[id] = tags.size();
+					tags.add(dictionary.getTag(id));
+				}
+			}
+		}
+		return tags;
+	}
+
+	private void putItem(ItemData item) {
+		int flags = item.getItemType().ordinal() & TYPE_MASK;
+		if (item.isDone()) {
+			flags |= FLAG_DONE;
+		}
+		if (item.hasDone()) {
+			flags |= FLAG_HAS_DONE;
+		}
+		if (item.hasUID()) {
+			flags |= FLAG_HAS_UID;
+		}
+		if (item.getStart() != ItemData.NO_TIME) {
+			flags |= FLAG_HAS_START;
+		}
+		if (item.getEnd() != ItemData.NO_TIME) {
+			flags |= FLAG_HAS_END;
+		}
+		if (item.getDue() != ItemData.NO_TIME) {
+			flags |= FLAG_HAS_DUE;
+		}
+		putByte(flags);
+
+		if (item.hasUID()) {
+			putVarint(item.getUID());
+		}
+		if (item.getTitle() == null) {
+			putVarint(NO_TITLE);
+		} else {
+			// the length is one more, so 0 can mean no title
+			byte[] bytes = item.getTitle().getBytes(UTF_8);
+			putVarint(bytes.length + 1);
+			putBytes(bytes, 0, bytes.length);
+		}
+		if ((flags & FLAG_HAS_START) != 0) {
+			putTime(item.getStart());
+		}
+		if ((flags & FLAG_HAS_END) != 0) {
+			putTime(item.getEnd());
+		}
+		if ((flags & FLAG_HAS_DUE) != 0) {
+			putTime(item.getDue());
+		}
+
+		int[] tagIds = item.getTagIds();
+		if (tagIds == null) {
+			putVarint(0);
+		} else {
+			putVarint(tagIds.length);
+			for (int id : tagIds) {
+				putVarint(mTagNumbers[id]);
+			}
+		}
+	}
+
+	private void putTime(long millis) {
+		long minutes = millis / MILLIS_PER_MINUTE;
+		if (millis % MILLIS_PER_MINUTE < 0) {
+			minutes--;
+		}
+		// zigzag, so times before 1970 are small too
+		putVarlong((minutes << 1) ^ (minutes >> 63));
+	}
+
+	private void putString(String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		putVarint(bytes.length);
+		putBytes(bytes, 0, bytes.length);
+	}
+
+	private void putVarint(int value) {
+		putVarlong(value & 0xFFFFFFFFL);
+	}
+
+	private void putVarlong(long value) {
+		ensureSpace(10);
+		while ((value & ~0x7FL) != 0) {
+			mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		mBuffer[mLength++] = (byte) value;
+	}
+
+	private void putInt(int value) {
+		ensureSpace(4);
+		mBuffer[mLength++] = (byte) (value >>> 24);
+		mBuffer[mLength++] = (byte) (value >>> 16);
+		mBuffer[mLength++] = (byte) (value >>> 8);
+		mBuffer[mLength++] = (byte) value;
+	}
+
+	private void putByte(int value) {
+		ensureSpace(1);
+		mBuffer[mLength++] = (byte) value;
+	}
+
+	private void putBytes(byte[] bytes, int offset, int length) {
+		ensureSpace(length);
+		System.arraycopy(bytes, offset, mBuffer, mLength, length);
+		mLength += length;
+	}
+
+	private void ensureSpace(int needed) {
+		if (mLength + needed > mBuffer.length) {
+			mBuffer = Arrays.copyOf(mBuffer, Math.max(mLength + needed, mBuffer.length * 2));
+		}
+	}
+}
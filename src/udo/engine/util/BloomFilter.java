@@ -0,0 +1,105 @@
+//@author A0108358B
+package udo.engine.util;
+
+/**
+ * This class is a bloom filter over strings: a set of bits that can tell
+ * for sure that a string was never added, but only that it might have been.<br>
+ * Each string sets HASH_COUNT bits, picked with two hashes of the string.
+ * The bits are written as hex digits, so a filter fits in a line of a file.
+ */
+public class BloomFilter {
+
+	private static final int BITS_PER_STRING = 10;
+	private static final int HASH_COUNT = 3;
+	private static final int WORD_BITS = 64;
+	private static final int HEX_DIGITS = 16;
+	private static final int HALF_HEX_DIGITS = 8;
+	private static final int HEX_RADIX = 16;
+
+	private long[] mWords;
+
+	/**
+	 * makes an empty filter sized for a number of strings
+	 *
+	 * @param expected the number of strings that will be added
+	 */
+	public BloomFilter(int expected) {
+		int bits = Math.max(WORD_BITS, expected * BITS_PER_STRING);
+		mWords = new long[(bits + WORD_BITS - 1) / WORD_BITS];
+	}
+
+	private BloomFilter(long[] words) {
+		mWords = words;
+	}
+
+	public void add(String value) {
+		int hash = value.hashCode();
+		int step = mix(hash);
+		long bits = (long) mWords.length * WORD_BITS;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = ((hash + (long) i * step) % bits + bits) % bits;
+			mWords[(int) (bit / WORD_BITS)] |= 1L << (bit % WORD_BITS);
+		}
+	}
+
+	/**
+	 * @param value the string
+	 * @return false if the string was never added
+	 */
+	public boolean mightContain(String value) {
+		int hash = value.hashCode();
+		int step = mix(hash);
+		long bits = (long) mWords.length * WORD_BITS;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = ((hash + (long) i * step) % bits + bits) % bits;
+			if ((mWords[(int) (bit / WORD_BITS)] & (1L << (bit % WORD_BITS))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * reads a filter written by toString()
+	 *
+	 * @param hex the hex digits of the filter
+	 * @return the filter
+	 * @throws NumberFormatException if the digits are not a filter
+	 */
+	public static BloomFilter fromString(String hex) {
+		if (hex.isEmpty() || hex.length() % HEX_DIGITS != 0) {
+			throw new NumberFormatException("not a bloom filter: " + hex);
+		}
+		long[] words = new long[hex.length() / HEX_DIGITS];
+		for (int i = 0; i < words.length; i++) {
+			int start = i * HEX_DIGITS;
+			// in two halves, a long cannot be parsed from 16 hex digits
+			long high = Long.parseLong(hex.substring(start, start + HALF_HEX_DIGITS), HEX_RADIX);
+			long low = Long.parseLong(hex.substring(start + HALF_HEX_DIGITS, start + HEX_DIGITS),
+					HEX_RADIX);
+			words[i] = (high << 32) | low;
+		}
+		return new BloomFilter(words);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(mWords.length * HEX_DIGITS);
+		for (long word : mWords) {
+			String digits = Long.toHexString(word);
+			for (int i = digits.length(); i < HEX_DIGITS; i++) {
+				builder.append('0');
+			}
+			builder.append(digits);
+		}
+		return builder.toString();
+	}
+
+	private int mix(int hash) {
+		// a second hash from the first, always odd so the bits are spread
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash | 1;
+	}
+}
@@ -2,39 +2,104 @@
 package udo.engine.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import udo.constants.Constants.Keys;
+import udo.data.EpochTime;
 import udo.data.ItemData;
+import udo.data.TagDictionary;
 import udo.enums.ItemType;
 import udo.exceptions.CacheAccessException;
 import udo.exceptions.InvalidUIDException;
 import udo.exceptions.ItemNotFoundException;
 
+/**
+ * This class holds all the items in memory.<br>
+ * Every item is keyed by its uid. mItems is the primary index and is used for
+ * all point operations (get, delete), while the per-type maps, kept sorted
+ * by SortKey, are used for the list queries. Events and tasks are also indexed by date, and all
+ * items are indexed by hashtag id and by the trigrams of their title and
+ * hashtags (for searching) and by their words (for ranked searching).<br>
+ * Items in the cache should not be changed directly. To change an item,
+ * change a copy of it and pass the copy to updateItem(), so that the
+ * indexes stay correct.<br>
+ * All the maps and indexes are kept in sorted order, so lists are made by
+ * walking or merging them, and are never sorted after the fact.<br>
+ * The cache is guarded by a read/write lock. Any number of threads can read
+ * at the same time (e.g. refreshing the panels, saving in the background),
+ * while a thread that changes the cache waits for the readers to finish and
+ * has it to itself. Every list that is returned is a new list, so it can be
+ * used after the lock is released.<br>
+ * Every change to the cache raises its version. A reader that needs a
+ * consistent view over a longer time (e.g. saving) can take a snapshot(),
+ * which is made at most once per version and then read without any lock.<br>
+ * The cache can be filled in two steps at startup: beginLoading() puts in
+ * the items of a window of days, and finishLoading() the rest, later and
+ * from another thread. In between, lists of days in the window are given
+ * at once, while anything that needs every item waits for finishLoading().
+ * Items changed in between are kept over the ones loaded later, and items
+ * deleted in between are not loaded again. If the rest cannot be loaded,
+ * failLoading() makes anything that needs every item fail instead of
+ * giving only the items of the window, until finishLoading() is called.<br>
+ * Items read lazily (see ItemData.hasLazyFields()) are not put in the
+ * hashtag and search indexes until the first query that needs them, so
+ * their titles and hashtags are not read just to load them.
+ */
 public class Cache {
 
-	private HashSet<ItemData> mEvents;
-	private HashSet<ItemData> mTasks;
-	private HashSet<ItemData> mPlans;
+	private HashMap<Integer, ItemData> mItems;
+	private TreeMap<SortKey, ItemData> mEvents;
+	private TreeMap<SortKey, ItemData> mTasks;
+	private TreeMap<SortKey, ItemData> mPlans;
 	
-	private boolean mIsLocked;
+	private DateIndex mEventDates;
+	private DateIndex mTaskDates;
+	private TagIndex mHashtags;
+	private TrigramIndex mTrigrams;
+	private SearchIndex mWords;
 	
-	private Iterator<ItemData> mEventsIterator;
-	private Iterator<ItemData> mTasksIterator;
-	private Iterator<ItemData> mPlansIterator;
+	private ReentrantReadWriteLock mLock;
+	private Lock mReadLock;
+	private Lock mWriteLock;
+	
+	private volatile long mVersion;
+	private volatile CacheSnapshot mSnapshot;
 
-	private HashSet<Integer> mUIDs;
+	private UIDAllocator mUIDs;
+	
+	// not null while the items outside the loaded window are still coming
+	private volatile CountDownLatch mLoading;
+	private long mLoadedFromDay;
+	private long mLoadedToDay;
+	private HashSet<Integer> mDeletedWhileLoading;
+	private volatile boolean mIsLoadFailed;
+	
+	// false until the titles and tags of lazy items are indexed
+	private volatile boolean mIsLazyTextIndexed;
 
 	public Cache() {
-		mEvents = new HashSet<ItemData>();
-		mTasks = new HashSet<ItemData>();
-		mPlans = new HashSet<ItemData>();
-		mUIDs = new HashSet<Integer>();
-		mIsLocked = false;
+		mItems = new HashMap<Integer, ItemData>();
+		mEvents = new TreeMap<SortKey, ItemData>();
+		mTasks = new TreeMap<SortKey, ItemData>();
+		mPlans = new TreeMap<SortKey, ItemData>();
+		mEventDates = new DateIndex();
+		mTaskDates = new DateIndex();
+		mHashtags = new TagIndex();
+		mTrigrams = new TrigramIndex();
+		mWords = new SearchIndex();
+		mUIDs = new UIDAllocator();
+		mLock = new ReentrantReadWriteLock();
+		mReadLock = mLock.readLock();
+		mWriteLock = mLock.writeLock();
+		mVersion = 0;
+		mSnapshot = null;
 	}
 
 	/**
@@ -44,41 +109,82 @@ public class Cache {
 	 * @throws CacheAccessException if adding one of the items failed
 	 */
 	public void addAll(ArrayList<ItemData> list) throws CacheAccessException {
-		for (ItemData item : list) {
-			addItem(item);
+		mWriteLock.lock();
+		try {
+			for (ItemData item : list) {
+				putItem(item);
+			}
+		} finally {
+			mWriteLock.unlock();
 		}
 	}
 
 	/**
 	 * adds an item. 
+	 * an item without a uid is given a new one.
+	 * an item with the same uid as an existing item replaces that item.
 	 * 
 	 * @param item the item to add
-	 * @throws CacheAccessException if cache is locked when trying to add
+	 * @throws CacheAccessException if cache cannot be accessed
 	 */
 	public void addItem(ItemData item) throws CacheAccessException {
-		if (isLocked()) {
-			throw new CacheAccessException("cache is locked");
+		mWriteLock.lock();
+		try {
+			putItem(item);
+		} finally {
+			mWriteLock.unlock();
+		}
+	}
+	
+	/**
+	 * replaces an existing item with an updated copy of it.
+	 * the existing item is found by the uid of the updated item.
+	 * 
+	 * @param item the updated item
+	 * @throws CacheAccessException if cache cannot be accessed
+	 * @throws ItemNotFoundException if there is no item with the same uid
+	 * @throws InvalidUIDException if uid invalid
+	 */
+	public void updateItem(ItemData item) throws CacheAccessException, ItemNotFoundException, InvalidUIDException {
+		if (!item.hasUID() || item.getUID() < 0) {
+			throw new InvalidUIDException();
+		}
+		int uid = item.getUID();
+		if (isLoading() && findItem(uid) == null) {
+			awaitLoaded();
 		}
 		
-		trackUID(item);
+		mWriteLock.lock();
+		try {
+			if (!mItems.containsKey(uid)) {
+				throw new ItemNotFoundException();
+			}
+			putItem(item);
+		} finally {
+			mWriteLock.unlock();
+		}
+	}
+	
+	/**
+	 * adds or replaces an item. the write lock must be held.
+	 * 
+	 * @param item the item to add
+	 */
+	private void putItem(ItemData item) {
+		if (!item.hasUID()) {
+			item.setUID(generateUID());
+		}
+		int uid = item.getUID();
+		mUIDs.reserve(uid);
 		
-		ItemType type = item.getItemType();
-		switch (type) {
-			case EVENT :
-				mEvents.add(item);
-				break;
-
-			case TASK :
-				mTasks.add(item);
-				break;
-
-			case PLAN :
-				mPlans.add(item);
-				break;
-
-			default:
-
+		ItemData replaced = mItems.put(uid, item);
+		if (replaced != null) {
+			getTypeMap(replaced.getItemType()).remove(new SortKey(replaced));
+			unindexItem(replaced);
 		}
+		getTypeMap(item.getItemType()).put(new SortKey(item), item);
+		indexItem(item);
+		mVersion++;
 	}
 	
 	/**
@@ -95,14 +201,11 @@ public class Cache {
 			throw new InvalidUIDException();
 		}
 		
-		ArrayList<ItemData> items = getAllItems();
-		ItemData result = null;
-		for (ItemData item : items) {
-			int itemUid = (int) item.get(Keys.UID);
-			if (itemUid == uid) {
-				result = item;
-				break;
-			}
+		ItemData result = findItem(uid);
+		if (result == null && isLoading()) {
+			// it may not be loaded yet
+			awaitLoaded();
+			result = findItem(uid);
 		}
 		
 		if (result == null) {
@@ -126,39 +229,37 @@ public class Cache {
 			throw new InvalidUIDException("negative number");
 		}
 		
-		ArrayList<ItemData> items = getAllItems();
-		ItemData toDelete = null;
-		for (ItemData item : items) {
-			int itemUid = (int) item.get(Keys.UID);
-			if (itemUid == uid) {
-				toDelete = item;
-				break;
-			}
+		if (isLoading() && findItem(uid) == null) {
+			awaitLoaded();
 		}
 		
-		if (toDelete == null) {
-			throw new ItemNotFoundException();
-		}
-
-		ItemType type = toDelete.getItemType();
-		switch (type) {
-			case EVENT:
-				mEvents.remove(toDelete);
-				break;
-				
-			case TASK:
-				mTasks.remove(toDelete);
-				break;
-				
-			case PLAN:
-				mPlans.remove(toDelete);
-				break;
-				
-			default:
+		mWriteLock.lock();
+		try {
+			ItemData toDelete = removeItem(uid);
+			if (toDelete == null) {
 				throw new ItemNotFoundException();
+			}
+			
+			return toDelete;
+		} finally {
+			mWriteLock.unlock();
+		}
+	}
+	
+	/**
+	 * deletes an item if it is in the cache, without waiting for it to be loaded.
+	 * an item that is not loaded yet is left out when it is.
+	 * 
+	 * @param uid the uid of the item
+	 * @return true if the item was in the cache
+	 */
+	public boolean forgetItem(int uid) {
+		mWriteLock.lock();
+		try {
+			return removeItem(uid) != null;
+		} finally {
+			mWriteLock.unlock();
 		}
-
-		return toDelete;
 	}
 
 	/**
@@ -167,169 +268,379 @@ public class Cache {
 	 * @return the size
 	 */
 	public int size() {
-		int eventSize = mEvents.size();
-		int taskSize = mTasks.size();
-		int planSize = mPlans.size();
-		int totalSize = eventSize + taskSize + planSize;
-		return totalSize;
+		try {
+			awaitLoaded();
+		} catch (CacheAccessException e) {
+			// only the items that could be loaded are counted
+		}
+		mReadLock.lock();
+		try {
+			return mItems.size();
+		} finally {
+			mReadLock.unlock();
+		}
+	}
+
+	/**
+	 * returns the version of the cache.
+	 * the version goes up every time the cache is changed.
+	 * 
+	 * @return the version
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+	
+	/**
+	 * returns a read-only view of the cache as it is now.
+	 * the view does not change when the cache is changed afterwards.
+	 * 
+	 * @return the snapshot of the current version of the cache
+	 * @throws CacheAccessException if not all the items could be loaded
+	 */
+	public CacheSnapshot snapshot() throws CacheAccessException {
+		awaitLoaded();
+		CacheSnapshot snapshot = mSnapshot;
+		if (snapshot != null && snapshot.getVersion() == mVersion) {
+			return snapshot;
+		}
+		
+		mReadLock.lock();
+		try {
+			// the version cannot change while the read lock is held
+			snapshot = new CacheSnapshot(mVersion, collateItems());
+			mSnapshot = snapshot;
+			return snapshot;
+		} finally {
+			mReadLock.unlock();
+		}
+	}
+
+	/**
+	 * starts loading the cache in two steps with the items of a window.
+	 * until finishLoading(), the days of the window can be listed,
+	 * and the cache can be changed.
+	 * 
+	 * @param window the window with its items
+	 */
+	public void beginLoading(StartupWindow window) {
+		mWriteLock.lock();
+		try {
+			mLoadedFromDay = window.getFromDay();
+			mLoadedToDay = window.getToDay();
+			mDeletedWhileLoading = new HashSet<Integer>();
+			// uids of the items not loaded yet must not be given out
+			mUIDs.reserve(window.getMaxUID());
+			for (ItemData item : window.getItems()) {
+				putItem(item);
+			}
+			mLoading = new CountDownLatch(1);
+		} finally {
+			mWriteLock.unlock();
+		}
+	}
+	
+	/**
+	 * adds the rest of the items after beginLoading(), 
+	 * and lets the threads waiting for them go on.
+	 * items that were added, changed or deleted since then are left as they are.
+	 * 
+	 * @param items all the items, including the ones already loaded
+	 * @return the version of the cache right after the items were added
+	 */
+	public long finishLoading(ArrayList<ItemData> items) {
+		CountDownLatch loading;
+		long version;
+		mWriteLock.lock();
+		try {
+			for (ItemData item : items) {
+				if (!mItems.containsKey(item.getUID()) 
+						&& !mDeletedWhileLoading.contains(item.getUID())) {
+					putItem(item);
+				}
+			}
+			mDeletedWhileLoading = null;
+			version = mVersion;
+			loading = mLoading;
+			mIsLoadFailed = false;
+			mLoading = null;
+		} finally {
+			mWriteLock.unlock();
+		}
+		if (loading != null) {
+			loading.countDown();
+		}
+		return version;
+	}
+	
+	/**
+	 * checks if the items outside the window are still being loaded
+	 * 
+	 * @return true if some items may not be in the cache yet
+	 */
+	public boolean isLoading() {
+		return mLoading != null;
+	}
+	
+	/**
+	 * tells the threads waiting for the rest of the items that it could not
+	 * be loaded. the cache is still loading, so the days of the window can
+	 * be listed, and finishLoading() can be called if the load is tried again.
+	 */
+	public void failLoading() {
+		CountDownLatch loading = mLoading;
+		if (loading == null) {
+			return;
+		}
+		mIsLoadFailed = true;
+		loading.countDown();
+	}
+	
+	/**
+	 * checks if the items outside the window could not be loaded
+	 * 
+	 * @return true if failLoading() was called and not finishLoading() since
+	 */
+	public boolean hasLoadFailed() {
+		return mIsLoadFailed;
+	}
+	
+	/**
+	 * waits until all the items are loaded. 
+	 * must not be called by the thread that loads them.
+	 * 
+	 * @throws CacheAccessException if the rest of the items could not be loaded
+	 */
+	public void awaitLoaded() throws CacheAccessException {
+		CountDownLatch loading = mLoading;
+		if (loading == null) {
+			return;
+		}
+		boolean isInterrupted = false;
+		while (true) {
+			try {
+				loading.await();
+				break;
+			} catch (InterruptedException e) {
+				isInterrupted = true;
+			}
+		}
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (mIsLoadFailed && mLoading != null) {
+			throw new CacheAccessException("not all the items could be loaded");
+		}
 	}
 
 	/**
 	 * clears all items in the cache.
 	 * does NOT invoke the delete command. it's a simple clear.
 	 * 
-	 * @throws CacheAccessException if cache is locked when trying to clear
+	 * @throws CacheAccessException if cache cannot be accessed
 	 */
 	public void clear() throws CacheAccessException {
-		if (isLocked()) {
-			throw new CacheAccessException();
+		mWriteLock.lock();
+		try {
+			mItems.clear();
+			mEvents.clear();
+			mTasks.clear();
+			mPlans.clear();
+			mEventDates.clear();
+			mTaskDates.clear();
+			mHashtags.clear();
+			mTrigrams.clear();
+			mWords.clear();
+			mIsLazyTextIndexed = false;
+			mVersion++;
+		} finally {
+			mWriteLock.unlock();
 		}
-		mEvents.clear();
-		mTasks.clear();
-		mPlans.clear();
 	}
 
 	/**
-	 * generates a random uid between 10000 and 99999
-	 * @return a random uid between 10000 and 99999
+	 * gives a new uid that no item in the cache has or had.
+	 * uids of deleted items are not given out again.
+	 * 
+	 * @return a new uid
 	 */
 	public int generateUID() {
-		Random r = new Random(System.currentTimeMillis());
-		int uid = 10 + r.nextInt(90);
-		if (mUIDs.contains(uid)) {
-			return generateUID();
-		} else {
-			return uid;
-		}
+		return mUIDs.allocate();
 	}
 
+	/**
+	 * returns a list of the events and tasks on a date
+	 * 
+	 * @param date the date
+	 * @return a list of the events and tasks on the date
+	 * @throws CacheAccessException if cache cannot be accessed
+	 */
 	public ArrayList<ItemData> getAllItemsOn(Calendar date) throws CacheAccessException {
-		ArrayList<ItemData> allEvents = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			if (containsDate(item, date)) {
-				allEvents.add(item);
-			}
+		awaitLoaded(date, date);
+		mReadLock.lock();
+		try {
+			ArrayList<ArrayList<ItemData>> allItems = new ArrayList<ArrayList<ItemData>>();
+			allItems.add(mEventDates.getItemsOn(date));
+			allItems.add(mTaskDates.getItemsOn(date));
+			return SortKey.merge(allItems);
+		} finally {
+			mReadLock.unlock();
+		}
+	}
+	
+	/**
+	 * returns a list of the events and tasks on any day between two dates.
+	 * both days are included.
+	 * 
+	 * @param from the first date
+	 * @param to the last date
+	 * @return a list of the events and tasks between the dates
+	 * @throws CacheAccessException if cache cannot be accessed
+	 */
+	public ArrayList<ItemData> getAllItemsBetween(Calendar from, Calendar to) throws CacheAccessException {
+		awaitLoaded(from, to);
+		mReadLock.lock();
+		try {
+			ArrayList<ArrayList<ItemData>> allItems = new ArrayList<ArrayList<ItemData>>();
+			allItems.add(mEventDates.getItemsBetween(from, to));
+			allItems.add(mTaskDates.getItemsBetween(from, to));
+			return SortKey.merge(allItems);
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(allEvents);
-		return allEvents;
 	}
 	
 	public ArrayList<ItemData> getAllEventsOn(Calendar date) throws CacheAccessException {
-		ArrayList<ItemData> allEvents = new ArrayList<ItemData>();
-		for (ItemData item : getAllEvents()) {
-			if (containsDate(item, date)) {
-				allEvents.add(item);
-			}
+		awaitLoaded(date, date);
+		mReadLock.lock();
+		try {
+			return mEventDates.getItemsOn(date);
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(allEvents);
-		return allEvents;
 	}
 
 	public ArrayList<ItemData> getAllUndoneTasksBetween(Calendar from, Calendar to) throws CacheAccessException {
-		ArrayList<ItemData> allTasks = new ArrayList<ItemData>();
-		for (ItemData item : getAllTasks()) {
-			if (isBetweenDates(item, from, to)) {
-				boolean itemDone = (boolean)item.get(Keys.DONE);
-				if (!itemDone) {
+		awaitLoaded(from, to);
+		mReadLock.lock();
+		try {
+			ArrayList<ItemData> allTasks = new ArrayList<ItemData>();
+			for (ItemData item : mTaskDates.getItemsBetween(from, to)) {
+				if (!item.isDone()) {
 					allTasks.add(item);
 				}
 			}
+			return allTasks;
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(allTasks);
-		return allTasks;
 	}
 	
 	public ArrayList<ItemData> getAllItemsWithHashtag(String tag) throws CacheAccessException {
-		ArrayList<ItemData> result = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			@SuppressWarnings("unchecked")
-			ArrayList<String> tags = (ArrayList<String>) item.get(Keys.HASHTAGS);
-			if (tags.contains(tag)) {
-				result.add(item);
-			}
+		awaitLoaded();
+		indexLazyText();
+		int id = TagDictionary.getInstance().findId(tag);
+		mReadLock.lock();
+		try {
+			return mHashtags.getItemsWith(id);
+		} finally {
+			mReadLock.unlock();
+		}
+	}
+	
+	/**
+	 * returns a list of the items that have every one of the hashtags
+	 * 
+	 * @param tags the hashtags
+	 * @return a list of the items that have all the hashtags
+	 * @throws CacheAccessException if cache cannot be accessed
+	 */
+	public ArrayList<ItemData> getAllItemsWithAllHashtags(ArrayList<String> tags) throws CacheAccessException {
+		awaitLoaded();
+		indexLazyText();
+		int[] ids = TagDictionary.getInstance().findIds(tags);
+		mReadLock.lock();
+		try {
+			return mHashtags.getItemsWithAll(ids);
+		} finally {
+			mReadLock.unlock();
+		}
+	}
+	
+	/**
+	 * returns a list of the items that have at least one of the hashtags
+	 * 
+	 * @param tags the hashtags
+	 * @return a list of the items that have any of the hashtags
+	 * @throws CacheAccessException if cache cannot be accessed
+	 */
+	public ArrayList<ItemData> getAllItemsWithAnyHashtag(ArrayList<String> tags) throws CacheAccessException {
+		awaitLoaded();
+		indexLazyText();
+		int[] ids = TagDictionary.getInstance().findIds(tags);
+		mReadLock.lock();
+		try {
+			return mHashtags.getItemsWithAny(ids);
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(result);
-		return result;
 	}
 
 	public ArrayList<ItemData> getAllEvents() throws CacheAccessException {
-		ArrayList<ItemData> allEvents = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			ItemType itemType = item.getItemType();
-			if (itemType.equals(ItemType.EVENT)) {
-				allEvents.add(item);
-			}
+		awaitLoaded();
+		mReadLock.lock();
+		try {
+			return new ArrayList<ItemData>(mEvents.values());
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(allEvents);
-		return allEvents;
 	}
 	
 	public ArrayList<ItemData> getAllTasks() throws CacheAccessException {
-		ArrayList<ItemData> allTasks = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			ItemType itemType = item.getItemType();
-			if (itemType.equals(ItemType.TASK)) {
-				allTasks.add(item);
-			}
+		awaitLoaded();
+		mReadLock.lock();
+		try {
+			return new ArrayList<ItemData>(mTasks.values());
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(allTasks);
-		return allTasks;
 	}
 	
 	public ArrayList<ItemData> getAllPlans() throws CacheAccessException {
-		ArrayList<ItemData> allPlans = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			ItemType itemType = item.getItemType();
-			if (itemType.equals(ItemType.PLAN)) {
-				allPlans.add(item);
-			}
+		awaitLoaded();
+		mReadLock.lock();
+		try {
+			return new ArrayList<ItemData>(mPlans.values());
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(allPlans);
-		return allPlans;
 	}
 
 	public ArrayList<ItemData> getAllUndoneTasks() throws CacheAccessException {
-		ArrayList<ItemData> allTasks = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			ItemType itemType = item.getItemType();
-			if (itemType.equals(ItemType.TASK)) {
-				boolean taskUndone = !((boolean) item.get(Keys.DONE)); 
-				if (taskUndone) {
-					allTasks.add(item);
-				}
-			}
-		}
-		Collections.sort(allTasks);
-		return allTasks;
+		return getUndone(getAllTasks());
 	}
 
 	public ArrayList<ItemData> getAllUndonePlans() throws CacheAccessException {
-		ArrayList<ItemData> allPlans = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			ItemType itemType = item.getItemType();
-			if (itemType.equals(ItemType.PLAN)) {
-				boolean planDone = ((boolean) item.get(Keys.DONE)); 
-				if (!planDone) {
-					allPlans.add(item);
-				}
-			}
-		}
-		Collections.sort(allPlans);
-		return allPlans;
+		return getUndone(getAllPlans());
 	}
 
 	/**
 	 * returns a list of both tasks and plans
 	 * 
 	 * @return a list of both tasks and plans
-	 * @throws CacheAccessException if cache is locked 
+	 * @throws CacheAccessException if cache cannot be accessed 
 	 */
 	public ArrayList<ItemData> getAllTodo() throws CacheAccessException {
-		ArrayList<ItemData> allTasksAndPlans = new ArrayList<ItemData>();
-		allTasksAndPlans.addAll(getAllTasks());
-		allTasksAndPlans.addAll(getAllPlans());
-		Collections.sort(allTasksAndPlans);
-		return allTasksAndPlans;
+		awaitLoaded();
+		mReadLock.lock();
+		try {
+			ArrayList<Collection<ItemData>> allTasksAndPlans = new ArrayList<Collection<ItemData>>();
+			allTasksAndPlans.add(mTasks.values());
+			allTasksAndPlans.add(mPlans.values());
+			return SortKey.merge(allTasksAndPlans);
+		} finally {
+			mReadLock.unlock();
+		}
 	}
 	
 	/**
@@ -337,16 +648,15 @@ public class Cache {
 	 * items can only be of task or plan type.
 	 * 
 	 * @return the list of done items
-	 * @throws CacheAccessException if cache is locked
+	 * @throws CacheAccessException if cache cannot be accessed
 	 */
 	public ArrayList<ItemData> getAllDone() throws CacheAccessException {
 		ArrayList<ItemData> allDone = new ArrayList<ItemData>();
 		for (ItemData item : getAllTodo()) {
-			if ((boolean) item.get(Keys.DONE)) {
+			if (item.isDone()) {
 				allDone.add(item);
 			}
 		}
-		Collections.sort(allDone);
 		return allDone;
 	}
 
@@ -354,194 +664,214 @@ public class Cache {
 	 * returns a list of all the items
 	 * 
 	 * @return a list of all the items
-	 * @throws CacheAccessException if the cache is locked
+	 * @throws CacheAccessException if cache cannot be accessed
 	 */
 	public ArrayList<ItemData> getAllItems() throws CacheAccessException {
-		if (isLocked()) {
-			throw new CacheAccessException("cache not locked");
+		awaitLoaded();
+		mReadLock.lock();
+		try {
+			return collateItems();
+		} finally {
+			mReadLock.unlock();
 		}
-		
-		return collateItems();
 	}
 	
 	/**
 	 * returns a list of all the items matching a string query in their title or tags
 	 * @param query the string to search for
 	 * @return a list of all the items matching a string query in their title or tags
-	 * @throws CacheAccessException if cache is locked
+	 * @throws CacheAccessException if cache cannot be accessed
 	 */
 	public ArrayList<ItemData> searchAllItems(String query) throws CacheAccessException {
-		ArrayList<ItemData> matchingItems = new ArrayList<ItemData>();
-		for (ItemData item : getAllItems()) {
-			String title = (String) item.get(Keys.TITLE);
-			if (title != null) {
-				title = title.toLowerCase();
-				query = query.trim().toLowerCase();
-				if (title.contains(query)) {
-					matchingItems.add(item);
-				} else if (taglistContains(item, query)) {
-					matchingItems.add(item);
+		awaitLoaded();
+		indexLazyText();
+		mReadLock.lock();
+		try {
+			query = query.trim().toLowerCase();
+		
+			// narrow down to the items that have all the trigrams of the query
+			ArrayList<ItemData> candidates = mTrigrams.getCandidates(query);
+			if (candidates == null) {
+				candidates = collateItems();
+			}
+		
+			// the hashtags containing the query, so each item only checks ids
+			BitSet matchingTags = TagDictionary.getInstance().getIdsContaining(query);
+			
+			ArrayList<ItemData> matchingItems = new ArrayList<ItemData>();
+			for (ItemData item : candidates) {
+				String title = item.getTitle();
+				if (title != null) {
+					title = title.toLowerCase();
+					if (title.contains(query)) {
+						matchingItems.add(item);
+					} else if (item.hasAnyTag(matchingTags)) {
+						matchingItems.add(item);
+					}
 				}
 			}
+			return matchingItems;
+		} finally {
+			mReadLock.unlock();
 		}
-		Collections.sort(matchingItems);
-		return matchingItems;
 	}
 	
-	private boolean taglistContains(ItemData item, String query) {
-		@SuppressWarnings("unchecked")
-		ArrayList<String> taglist = (ArrayList<String>) item.get(Keys.HASHTAGS);
-		for (String tag : taglist) {
-			if (tag.contains(query)) {
-				return true;
-			}
+	/**
+	 * returns the items that best match the words of a query in their title
+	 * or tags, best match first.
+	 * 
+	 * @param query the words to search for
+	 * @param limit the maximum number of items to return
+	 * @return a list of at most limit items, ranked by how well they match
+	 * @throws CacheAccessException if cache cannot be accessed
+	 */
+	public ArrayList<ItemData> rankAllItems(String query, int limit) throws CacheAccessException {
+		awaitLoaded();
+		indexLazyText();
+		mReadLock.lock();
+		try {
+			return mWords.search(query, limit);
+		} finally {
+			mReadLock.unlock();
+		}
+	}
+	
+	
+	/**
+	 * waits until all the items are loaded, 
+	 * unless every day between the dates is in the loaded window.
+	 */
+	private void awaitLoaded(Calendar from, Calendar to) throws CacheAccessException {
+		if (!isLoading()) {
+			return;
+		}
+		long fromDay = EpochTime.getDay(from.getTimeInMillis());
+		long toDay = EpochTime.getDay(to.getTimeInMillis());
+		if (fromDay < mLoadedFromDay || toDay > mLoadedToDay) {
+			awaitLoaded();
+		}
+	}
+	
+	private ItemData removeItem(int uid) {
+		// the write lock must be held
+		if (mDeletedWhileLoading != null) {
+			// so it is not loaded again, even if it is not loaded yet
+			mDeletedWhileLoading.add(uid);
+		}
+		ItemData toDelete = mItems.remove(uid);
+		if (toDelete != null) {
+			getTypeMap(toDelete.getItemType()).remove(new SortKey(toDelete));
+			unindexItem(toDelete);
+			mVersion++;
+		}
+		return toDelete;
+	}
+	
+	private ItemData findItem(int uid) {
+		mReadLock.lock();
+		try {
+			return mItems.get(uid);
+		} finally {
+			mReadLock.unlock();
 		}
-		return false;
 	}
 	
 	/**
-	 * locks cache, makes an arraylist of items, then unlocks cache.
+	 * merges the sorted items of each type. the read lock must be held.
 	 * 
-	 * @return the list of items in the cache at this point.
+	 * @return the sorted list of items in the cache at this point.
 	 */
 	private ArrayList<ItemData> collateItems() {
-		lock();
-		
-		ArrayList<ItemData> allItems = new ArrayList<ItemData>();
-		while (hasNextItem()) {
-			allItems.add(getNextItem());
-		}
-		
-		Collections.sort(allItems);
-		
-		unlock();
-		return allItems;
+		ArrayList<Collection<ItemData>> allItems = new ArrayList<Collection<ItemData>>();
+		allItems.add(mEvents.values());
+		allItems.add(mTasks.values());
+		allItems.add(mPlans.values());
+		return SortKey.merge(allItems);
 	}
-
-	private boolean containsDate(ItemData item, Calendar date) {
-		ItemType itemType = item.getItemType();
-		
-		if (itemType == null || date == null) {
-			return false;
-		} else if (itemType.equals(ItemType.EVENT)) {
-			
-			Calendar startCal = (Calendar) item.get(Keys.START);
-			Calendar endCal = (Calendar) item.get(Keys.END);
-			
-			if (startCal.before(date) && date.before(endCal)) {
-				return true;
-			} else if (isSameDateAs(startCal, date)) {
-				return true;
-			} else if (isSameDateAs(endCal, date)) {
-				return true;
-			} else {
-				return false;
+	
+	private ArrayList<ItemData> getUndone(ArrayList<ItemData> items) {
+		ArrayList<ItemData> undoneItems = new ArrayList<ItemData>();
+		for (ItemData item : items) {
+			if (!item.isDone()) {
+				undoneItems.add(item);
 			}
-		} else if (itemType.equals(ItemType.TASK)) {
-			
-			Calendar itemCal = (Calendar) item.get(Keys.DUE);
-			return isSameDateAs(itemCal, date);
-		} else {
-			return false;
 		}
-		
+		return undoneItems;
 	}
 
-	private boolean isSameDateAs(Calendar c1, Calendar c2) {
-		if (c1 == null || c2 == null) {
-			return false;
+	private void indexItem(ItemData item) {
+		if (isTextIndexed(item)) {
+			indexText(item);
 		}
 		
-		int c1Day = c1.get(Calendar.DAY_OF_MONTH);
-		int c1Month = c1.get(Calendar.MONTH);
-		int c1Year = c1.get(Calendar.YEAR);
-		int c2Day = c2.get(Calendar.DAY_OF_MONTH);
-		int c2Month = c2.get(Calendar.MONTH);
-		int c2Year = c2.get(Calendar.YEAR);
-		
-		if (c1Day != c2Day) {
-			return false;
-		}
-		if (c1Month != c2Month) {
-			return false;
-		}
-		if (c1Year != c2Year) {
-			return false;
+		ItemType type = item.getItemType();
+		if (type == ItemType.EVENT) {
+			mEventDates.add(item, item.getStart(), item.getEnd());
+		} else if (type == ItemType.TASK) {
+			mTaskDates.add(item, item.getDue(), item.getDue());
 		}
-		return true;
-	}
-
-	private boolean isBetweenDates(ItemData item, Calendar from, Calendar to) {
-		Calendar itemCal;
-		ItemType itemType = item.getItemType();
-		if (itemType.equals(ItemType.EVENT)) {
-			itemCal = (Calendar) item.get(Keys.START);
-		} else if (itemType.equals(ItemType.TASK)) {
-			itemCal = (Calendar) item.get(Keys.DUE);
-		} else {
-			return false;
-		}
-		return isBetweenDates(itemCal, from, to);
 	}
-
-	private boolean isBetweenDates(Calendar itemCal, Calendar from, Calendar to) {
-		// compare from 0:00 to 23:59 of the date range
-		from.set(Calendar.HOUR_OF_DAY, 0);
-		from.set(Calendar.MINUTE, 0);
-		from.set(Calendar.SECOND, 0);
-		to.set(Calendar.HOUR_OF_DAY, 23);
-		to.set(Calendar.MINUTE, 59);
-		to.set(Calendar.SECOND, 59);
+	
+	private void unindexItem(ItemData item) {
+		if (isTextIndexed(item)) {
+			mHashtags.remove(item, item.getTagIds());
+			mTrigrams.remove(item);
+			mWords.remove(item);
+		}
 		
-		return itemCal.after(from) && itemCal.before(to);
-	}
-
-	private void lock() {
-		mIsLocked = true;
-		mEventsIterator = mEvents.iterator();
-		mTasksIterator = mTasks.iterator();
-		mPlansIterator = mPlans.iterator();
+		ItemType type = item.getItemType();
+		if (type == ItemType.EVENT) {
+			mEventDates.remove(item, item.getStart(), item.getEnd());
+		} else if (type == ItemType.TASK) {
+			mTaskDates.remove(item, item.getDue(), item.getDue());
+		}
 	}
 
-	private void unlock() {
-		mIsLocked = false;
-		mEventsIterator = null;
-		mTasksIterator = null;
-		mPlansIterator = null;
+	private void indexText(ItemData item) {
+		mHashtags.add(item, item.getTagIds());
+		mTrigrams.add(item);
+		mWords.add(item);
 	}
-
-	private boolean isLocked() {
-		return mIsLocked;
+	
+	private boolean isTextIndexed(ItemData item) {
+		return mIsLazyTextIndexed || !item.hasLazyFields();
 	}
-
-	private boolean hasNextItem() {
-		if (!mIsLocked) {
-			return false;
-		} else {
-			return mEventsIterator.hasNext() 
-					|| mTasksIterator.hasNext()
-					|| mPlansIterator.hasNext();
+	
+	/**
+	 * puts the lazy items in the hashtag and search indexes, 
+	 * the first time a query needs them.
+	 */
+	private void indexLazyText() {
+		if (mIsLazyTextIndexed) {
+			return;
+		}
+		mWriteLock.lock();
+		try {
+			if (mIsLazyTextIndexed) {
+				return;
+			}
+			for (ItemData item : mItems.values()) {
+				if (item.hasLazyFields()) {
+					indexText(item);
+				}
+			}
+			mIsLazyTextIndexed = true;
+		} finally {
+			mWriteLock.unlock();
 		}
 	}
 
-	private ItemData getNextItem() {
-		if (!mIsLocked) {
-			return null;
-		}
-		if (mEventsIterator.hasNext()) {
-			return mEventsIterator.next();
-		} else if (mTasksIterator.hasNext()) {
-			return mTasksIterator.next();
-		} else if (mPlansIterator.hasNext()) {
-			return mPlansIterator.next();
-		} else {
-			return null;
+	private TreeMap<SortKey, ItemData> getTypeMap(ItemType type) {
+		switch (type) {
+			case EVENT :
+				return mEvents;
+				
+			case TASK :
+				return mTasks;
+				
+			default :
+				return mPlans;
 		}
 	}
 
-	private void trackUID(ItemData item) {
-		Integer uid = (Integer) item.get(Keys.UID);
-		mUIDs.add(uid);
-	}
-
 }
@@ -0,0 +1,84 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import udo.constants.Constants.Keys;
+import udo.data.ItemData;
+import udo.exceptions.InvalidUIDException;
+import udo.exceptions.ItemNotFoundException;
+
+/**
+ * This class is a read-only view of the cache at one point in time.<br>
+ * A snapshot never changes after it is made, so it can be read from any
+ * thread, for as long as needed, without taking the cache lock and without
+ * seeing changes made to the cache afterwards.<br>
+ * The items are shared with the cache rather than copied. This is safe
+ * because items in the cache are never changed, only replaced.
+ */
+public class CacheSnapshot {
+
+	private final long mVersion;
+	private final HashMap<Integer, ItemData> mItems;
+	private final List<ItemData> mSortedItems;
+
+	/**
+	 * makes a snapshot of the items
+	 *
+	 * @param version the version of the cache the items are from
+	 * @param sortedItems all the items of the cache, sorted
+	 */
+	CacheSnapshot(long version, ArrayList<ItemData> sortedItems) {
+		mVersion = version;
+		mItems = new HashMap<Integer, ItemData>();
+		for (ItemData item : sortedItems) {
+			mItems.put((Integer) item.get(Keys.UID), item);
+		}
+		mSortedItems = Collections.unmodifiableList(sortedItems);
+	}
+
+	/**
+	 * returns the version of the cache this snapshot was made from.
+	 * the version goes up every time the cache is changed.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+
+	public int size() {
+		return mSortedItems.size();
+	}
+
+	/**
+	 * gets an item by the uid
+	 *
+	 * @param uid the uid of the item to get
+	 * @return the item matching the uid
+	 * @throws ItemNotFoundException if item not found
+	 * @throws InvalidUIDException if uid invalid
+	 */
+	public ItemData getItem(int uid) throws ItemNotFoundException, InvalidUIDException {
+		if (uid < 0) {
+			throw new InvalidUIDException();
+		}
+		ItemData result = mItems.get(uid);
+		if (result == null) {
+			throw new ItemNotFoundException();
+		}
+		return result;
+	}
+
+	/**
+	 * returns a list of all the items, sorted
+	 *
+	 * @return a list of all the items
+	 */
+	public ArrayList<ItemData> getAllItems() {
+		return new ArrayList<ItemData>(mSortedItems);
+	}
+}
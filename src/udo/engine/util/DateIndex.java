@@ -0,0 +1,207 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.TreeMap;
+
+import udo.data.EpochTime;
+import udo.data.ItemData;
+
+/**
+ * This class indexes items by the days that they fall on.<br>
+ * A day is stored as the number of days since the epoch in local time
+ * (see EpochTime),
+ * and maps to a bucket of the items on that day, kept sorted by SortKey.<br>
+ * An item that spans several days (e.g. a multi-day event) is placed
+ * in the bucket of every day it spans, so a day lookup is a single
+ * bucket lookup and a range lookup walks only the buckets in the range.<br>
+ * An item that spans more than MAX_BUCKET_DAYS days is not put in the
+ * buckets, so a far-off end date does not make thousands of them. It is
+ * kept in a list of long spans instead, which every lookup goes through.
+ */
+public class DateIndex {
+
+	/** the most days an item can span and still be put in the day buckets */
+	public static final int MAX_BUCKET_DAYS = 31;
+
+	private TreeMap<Long, TreeMap<SortKey, ItemData>> mBuckets;
+	private TreeMap<SortKey, Span> mLongSpans;
+
+	public DateIndex() {
+		mBuckets = new TreeMap<Long, TreeMap<SortKey, ItemData>>();
+		mLongSpans = new TreeMap<SortKey, Span>();
+	}
+
+	/**
+	 * adds an item to every day from first to last.
+	 * if only one of the dates exists, the item is added to that day.
+	 * if neither exists, the item is not added.
+	 *
+	 * @param item the item to add
+	 * @param first the first time of the item, or ItemData.NO_TIME
+	 * @param last the last time of the item, or ItemData.NO_TIME
+	 */
+	public void add(ItemData item, long first, long last) {
+		if (first == ItemData.NO_TIME && last == ItemData.NO_TIME) {
+			return;
+		}
+		SortKey key = new SortKey(item);
+		Span span = getLongSpan(item, first, last);
+		if (span != null) {
+			mLongSpans.put(key, span);
+			return;
+		}
+		for (long day : getDays(first, last)) {
+			TreeMap<SortKey, ItemData> bucket = mBuckets.get(day);
+			if (bucket == null) {
+				bucket = new TreeMap<SortKey, ItemData>();
+				mBuckets.put(day, bucket);
+			}
+			bucket.put(key, item);
+		}
+	}
+
+	/**
+	 * removes an item from every day from first to last.
+	 * the dates must be the same as the ones the item was added with.
+	 *
+	 * @param item the item to remove
+	 * @param first the first time of the item, or ItemData.NO_TIME
+	 * @param last the last time of the item, or ItemData.NO_TIME
+	 */
+	public void remove(ItemData item, long first, long last) {
+		if (first == ItemData.NO_TIME && last == ItemData.NO_TIME) {
+			return;
+		}
+		SortKey key = new SortKey(item);
+		if (getLongSpan(item, first, last) != null) {
+			mLongSpans.remove(key);
+			return;
+		}
+		for (long day : getDays(first, last)) {
+			TreeMap<SortKey, ItemData> bucket = mBuckets.get(day);
+			if (bucket != null) {
+				bucket.remove(key);
+				if (bucket.isEmpty()) {
+					mBuckets.remove(day);
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns the items on the day of the date, sorted.
+	 *
+	 * @param date the date to look up
+	 * @return the items on that day
+	 */
+	public ArrayList<ItemData> getItemsOn(Calendar date) {
+		long day = EpochTime.getDay(date.getTimeInMillis());
+		TreeMap<SortKey, ItemData> bucket = mBuckets.get(day);
+		ArrayList<ItemData> longSpans = getLongSpansBetween(day, day);
+		if (longSpans.isEmpty()) {
+			if (bucket == null) {
+				return new ArrayList<ItemData>();
+			}
+			return new ArrayList<ItemData>(bucket.values());
+		}
+
+		ArrayList<Collection<ItemData>> lists = new ArrayList<Collection<ItemData>>();
+		if (bucket != null) {
+			lists.add(bucket.values());
+		}
+		lists.add(longSpans);
+		return SortKey.merge(lists);
+	}
+
+	/**
+	 * returns the items on any day from the day of from to the day of to,
+	 * both days included, sorted.
+	 *
+	 * @param from the first date of the range
+	 * @param to the last date of the range
+	 * @return the items within the range, each item only once
+	 */
+	public ArrayList<ItemData> getItemsBetween(Calendar from, Calendar to) {
+		long fromDay = EpochTime.getDay(from.getTimeInMillis());
+		long toDay = EpochTime.getDay(to.getTimeInMillis());
+		if (fromDay > toDay) {
+			return new ArrayList<ItemData>();
+		}
+
+		// multi-day items appear in more than one bucket, merge drops the copies
+		ArrayList<Collection<ItemData>> buckets = new ArrayList<Collection<ItemData>>();
+		for (TreeMap<SortKey, ItemData> bucket
+				: mBuckets.subMap(fromDay, true, toDay, true).values()) {
+			buckets.add(bucket.values());
+		}
+		buckets.add(getLongSpansBetween(fromDay, toDay));
+		return SortKey.merge(buckets);
+	}
+
+	/**
+	 * removes all the items from the index
+	 */
+	public void clear() {
+		mBuckets.clear();
+		mLongSpans.clear();
+	}
+
+	private ArrayList<ItemData> getLongSpansBetween(long fromDay, long toDay) {
+		// in the order of the keys, so the list is sorted
+		ArrayList<ItemData> items = new ArrayList<ItemData>();
+		for (Span span : mLongSpans.values()) {
+			if (span.mFirstDay <= toDay && fromDay <= span.mLastDay) {
+				items.add(span.mItem);
+			}
+		}
+		return items;
+	}
+
+	private Span getLongSpan(ItemData item, long first, long last) {
+		if (first == ItemData.NO_TIME || last == ItemData.NO_TIME) {
+			return null;
+		}
+		long firstDay = EpochTime.getDay(first);
+		long lastDay = EpochTime.getDay(last);
+		if (lastDay - firstDay < MAX_BUCKET_DAYS) {
+			return null;
+		}
+		return new Span(item, firstDay, lastDay);
+	}
+
+	private long[] getDays(long first, long last) {
+		if (first == ItemData.NO_TIME) {
+			return new long[] { EpochTime.getDay(last) };
+		} else if (last == ItemData.NO_TIME) {
+			return new long[] { EpochTime.getDay(first) };
+		}
+
+		long firstDay = EpochTime.getDay(first);
+		long lastDay = EpochTime.getDay(last);
+		if (firstDay > lastDay) {
+			// dates are the wrong way round, only use the two days
+			return new long[] { firstDay, lastDay };
+		}
+
+		long[] days = new long[(int) (lastDay - firstDay + 1)];
+		for (int i = 0; i < days.length; i++) {
+			days[i] = firstDay + i;
+		}
+		return days;
+	}
+
+	private static class Span {
+		private ItemData mItem;
+		private long mFirstDay;
+		private long mLastDay;
+
+		private Span(ItemData item, long firstDay, long lastDay) {
+			mItem = item;
+			mFirstDay = firstDay;
+			mLastDay = lastDay;
+		}
+	}
+}
@@ -9,296 +9,470 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
+import java.util.Collections;
 
-import udo.constants.Constants.Keys;
-import udo.constants.Constants.MainVars;
-import udo.constants.Constants.StorageIndices;
 import udo.constants.Constants.StorageStrings;
+import udo.constants.Constants.StorageVars;
 import udo.data.ItemData;
-import udo.enums.ItemType;
+import udo.enums.StorageFormat;
 import udo.exceptions.ReadingFromStorageException;
 import udo.exceptions.WritingToStorageException;
 
+/**
+ * This class reads and writes the storage file.<br>
+ * A save never changes the storage file in place. The items are written to
+ * a temp file with a footer holding the number of items, the temp file is
+ * forced to the disk, the storage file is kept as the previous save and
+ * the temp file is renamed to the storage file.<br>
+ * So if the program stops in the middle of a save, the storage file,
+ * the finished temp file or the previous save is still whole, and
+ * getFromFile() picks the newest of them that is.<br>
+ * The file is saved in the text format or the binary format (see
+ * BinaryEncoder). Either is read, whatever the format being saved,
+ * so a file is converted the next time it is saved.
+ * Large text files are read by a ParallelTextLoader. Binary files can be
+ * read lazily, leaving the titles and hashtags in the memory mapped file
+ * until they are needed (see RecordSource).<br>
+ * A paged file (see PageStore) is only written whole the first time. After
+ * that, each save writes just the pages of the items that changed.<br>
+ * A segmented file is kept in a segment file for every few months instead
+ * (see SegmentStore), and each save only writes the segments that changed.
+ * While there are segments, they are read instead of the storage file.<br>
+ * Each save also writes a small window file with the items of the next few
+ * days (see StartupWindow), which getWindowFromFile() reads back.
+ */
 public class FileManager {
 
+	private static final char WINDOWS_SEPARATOR = '\\';
+
 	private String mFilename;
-	
+	private StorageFormat mFormat;
+	private boolean mIsLazy;
+
 	private BufferedReader mReader;
-	private ItemData mNextItem;
 	private boolean mIsReading;
-	
+
+	private FileOutputStream mStream;
 	private BufferedWriter mWriter;
+	private RecordEncoder mEncoder;
+	private BinaryEncoder mBinaryEncoder;
+	private ParallelTextLoader mParallelLoader;
+	private PageStore mPageStore;
+	private SegmentStore mSegmentStore;
 	private boolean mIsWriting;
 
+
 	public FileManager() {
-		mFilename = StorageStrings.FILENAME;
-		mIsReading = false;
-		mIsWriting = false;
+		this(StorageStrings.FILENAME, StorageVars.FORMAT);
 	}
-	
+
 	/**
 	 * lets you specify what file to read.
-	 * 
+	 *
 	 * @param filename the file to read
 	 */
 	public FileManager(String filename) {
+		this(filename, StorageVars.FORMAT);
+	}
+
+	/**
+	 * lets you specify what file to read and the format to save it in.
+	 *
+	 * @param filename the file to read
+	 * @param format the format to save in
+	 */
+	public FileManager(String filename, StorageFormat format) {
+		this(filename, format, StorageVars.LAZY_FIELDS);
+	}
+
+	/**
+	 * lets you also specify if binary files are read lazily.
+	 *
+	 * @param filename the file to read
+	 * @param format the format to save in
+	 * @param isLazy true to read the titles and hashtags only when needed
+	 */
+	public FileManager(String filename, StorageFormat format, boolean isLazy) {
 		mFilename = filename;
+		mFormat = format;
+		mIsLazy = isLazy;
+		mEncoder = new RecordEncoder();
+		mBinaryEncoder = new BinaryEncoder();
+		mParallelLoader = new ParallelTextLoader();
+		mSegmentStore = new SegmentStore(filename);
 		mIsReading = false;
 		mIsWriting = false;
 	}
 
 	/**
-	 * gets an arraylist of data after reading in the file
-	 * 
+	 * gets an arraylist of data after reading in the file.
+	 * if the file is damaged, the previous save is read instead.
+	 * if that cannot be read either, the damaged files are put aside
+	 * so that the next read starts with an empty file.
+	 *
 	 * @return the list of items
 	 * @throws ReadingFromStorageException if cannot read
 	 * @throws IOException if reading error
 	 */
 	public ArrayList<ItemData> getFromFile() throws ReadingFromStorageException, IOException {
-		startReadMode();
-		if (!isReading()) {
-			throw new ReadingFromStorageException("read mode cannot be started");
+		mPageStore = null;
+		if (mSegmentStore.hasSegments()) {
+			// only the last save in another format deletes them
+			return mSegmentStore.load();
 		}
-		ArrayList<ItemData> result = new ArrayList<ItemData>();
-		while (hasNextItem()) {
-			ItemData item = getNextItem();
-			result.add(item);
+		recoverUnfinishedSave();
+		try {
+			return readFile(mFilename, false);
+
+		} catch (ReadingFromStorageException e) {
+			File previousFile = new File(getPreviousFilename());
+			if (previousFile.exists()) {
+				try {
+					ArrayList<ItemData> result = readFile(previousFile.getPath(), false);
+					restorePreviousSave();
+					return result;
+				} catch (ReadingFromStorageException e1) {
+					// both are damaged, put both aside below
+					putAside(previousFile.getPath());
+				}
+			}
+			deleteWindowFile();
+			putAside(mFilename);
+			throw e;
 		}
-		stopReadMode();
-		return result;
 	}
 
 	/**
-	 * writes a list of items to the file. 
-	 * @param list the list of items to write.
-	 * @throws IOException if writing error or file error.
-	 * @throws WritingToStorageException if cannot write
+	 * reads the items of the file after the items of its window are shown,
+	 * without any of the recovery of getFromFile(): a missing or damaged
+	 * file is an error, nothing is put aside and the previous save is never
+	 * read instead, because an older save must not be merged with a newer
+	 * window. a damaged file only has its window deleted, so the next start
+	 * reads it with getFromFile().
+	 *
+	 * @return the list of items
+	 * @throws ReadingFromStorageException if the file is missing or damaged
+	 * @throws IOException if reading error
 	 */
-	public void writeToFile(ArrayList<ItemData> list) throws IOException, WritingToStorageException {
-		startWriteMode();
-		if (!isWriting()) {
-			throw new WritingToStorageException("write mode cannot be started");
+	public ArrayList<ItemData> getFromFileForWindow()
+			throws ReadingFromStorageException, IOException {
+		mPageStore = null;
+		if (mSegmentStore.hasSegments()) {
+			return mSegmentStore.load();
 		}
-		for (ItemData item : list) {
-			write(item);
+		if (!new File(mFilename).exists()) {
+			throw new ReadingFromStorageException("the file of the window is missing");
 		}
-		stopWriteMode();
-	}
+		try {
+			return readFile(mFilename, false);
 
-	private boolean hasNextItem() {
-		boolean hasNext = (mNextItem != null);
-		return hasNext;
+		} catch (ReadingFromStorageException e) {
+			deleteWindowFile();
+			throw e;
+		}
 	}
 
-	private ItemData getNextItem() throws IOException {
-		if (hasNextItem()) {
-			ItemData result = mNextItem;
-			String nextLine = getNextLine();
-			mNextItem = makeItemData(nextLine);
-			return result;
+	/**
+	 * writes a list of items to the file.
+	 * the file is replaced in one step once all the items are on the disk,
+	 * and the file it replaces is kept as the previous save.
+	 * a paged file that was read or written before is changed in place instead.
+	 * @param list the list of items to write.
+	 * @throws IOException if writing error or file error.
+	 * @throws WritingToStorageException if cannot write
+	 */
+	public void writeToFile(ArrayList<ItemData> list) throws IOException, WritingToStorageException {
+		// the window must never be older than the file
+		deleteWindowFile();
+		if (mFormat == StorageFormat.SEGMENTED) {
+			writeSegments(list);
+			// the window is read from the segments
+			return;
+		}
+		if (mFormat == StorageFormat.PAGED && mPageStore != null) {
+			updatePagedFile(list);
 		} else {
-			return null;
+			replaceWholeFile(list);
+		}
+		// they would be read instead of the file
+		mSegmentStore.deleteAll();
+		
+		if (isWindowOn()) {
+			try {
+				writeWindowFile(list);
+			} catch (IOException e) {
+				// the next start just reads the whole file first
+				new File(getWindowFilename()).delete();
+			}
 		}
 	}
-
-	private void createNewFile(String filename) throws IOException {
-		File f = new File(StorageStrings.FILEPATH);
-		f.mkdirs();
-		new FileWriter(filename).close();
+	
+	/**
+	 * gives the segments of the file, to query them without reading every item.
+	 *
+	 * @return the segments, which may be none
+	 */
+	public SegmentStore getSegments() {
+		return mSegmentStore;
 	}
 
-	private String getNextLine() throws IOException {
-		return mReader.readLine();
+	/**
+	 * gives the number of pages written by the last save of a paged file
+	 * that changed it in place.
+	 *
+	 * @return the number of pages, or -1 if the file was not changed in place
+	 */
+	public int getPagesWritten() {
+		if (mPageStore == null) {
+			return -1;
+		}
+		return mPageStore.getPagesWritten();
 	}
 
-	private ItemData makeItemData(String line) {
-		if (line == null) {
+	/**
+	 * reads the items saved in the window file with the last save.
+	 *
+	 * @return the window with its items, or null if there is no window
+	 *         for the file or it cannot be read
+	 */
+	public StartupWindow getWindowFromFile() {
+		if (!isWindowOn()) {
 			return null;
 		}
-		if (line.equals("")) {
+		if (mSegmentStore.hasSegments()) {
+			return getWindowFromSegments();
+		}
+		BufferedReader reader;
+		try {
+			reader = new BufferedReader(
+					new InputStreamReader(
+							new FileInputStream(getWindowFilename()),
+							"UTF-8"));
+		} catch (IOException e) {
 			return null;
 		}
-		String[] lineArray = getStringArray(line);
 		
-		ItemType type = getItemType(lineArray[StorageIndices.TYPE]);
-		switch (type) {
-			case EVENT :
-				return getEventItemData(lineArray);
-			case TASK :
-				return getTaskItemData(lineArray);
-			case PLAN :
-				return getPlanItemData(lineArray);
-			default:
-				return null;
+		try {
+			StartupWindow window = readWindowHeader(reader.readLine());
+			TextRecordReader records = new TextRecordReader(window.getItems());
+			String line;
+			while ((line = reader.readLine()) != null) {
+				records.readLine(line);
+			}
+			TextRecordReader.collect(Collections.singletonList(records), true);
+			return window;
 			
+		} catch (ReadingFromStorageException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// already read
+			}
 		}
 	}
-	
-	private ItemData getPlanItemData(String[] lineArray) {
-		// [0uid, 1type, 2title, 3<tags>]
-
-		ItemData item = new ItemData(ItemType.PLAN);
-
-		int uid = Integer.parseInt(lineArray[StorageIndices.UID]);
-		item.put(Keys.UID,
-				uid);
-		
-		String title = lineArray[StorageIndices.TITLE];
-		item.put(Keys.TITLE,
-				title);
-		
-		boolean done = Boolean.parseBoolean(lineArray[StorageIndices.PLAN_DONE]);
-		item.put(Keys.DONE, 
-				done);
 
-		String tagsString = lineArray[StorageIndices.PLAN_HASHTAGS];
-		ArrayList<String> tagsList = getList(tagsString);
-		item.put(Keys.HASHTAGS, 
-				tagsList);
+	// ********* writing ******* //
 
-		return item;
+	private void replaceWholeFile(ArrayList<ItemData> list)
+			throws IOException, WritingToStorageException {
+		String tempFilename = getTempFilename();
+		startWriteMode(tempFilename);
+		if (!isWriting()) {
+			throw new WritingToStorageException("write mode cannot be started");
+		}
+		PageStore pageStore = null;
+		try {
+			if (mFormat == StorageFormat.PAGED) {
+				pageStore = new PageStore(mFilename);
+				pageStore.write(list, mStream);
+			} else if (mFormat == StorageFormat.BINARY) {
+				mBinaryEncoder.write(list, mStream);
+			} else {
+				for (ItemData item : list) {
+					write(item);
+				}
+				writeFooter(mWriter, list.size());
+				mWriter.flush();
+			}
+			mStream.getFD().sync();
+		} finally {
+			stopWriteMode();
+		}
+		mPageStore = null;
+		replaceFile(tempFilename);
+		mPageStore = pageStore;
+	}
+	
+	private void writeSegments(ArrayList<ItemData> list) throws IOException {
+		mPageStore = null;
+		mSegmentStore.write(list);
+		// kept as the previous save, it is not read while there are segments
+		Path file = new File(mFilename).toPath();
+		if (Files.exists(file)) {
+			move(file, new File(getPreviousFilename()).toPath());
+		}
 	}
 
-	private ItemData getTaskItemData(String[] lineArray) {
-		// [0uid, 1type, 2title, 3ddate, 4dtime, 5<tags>]
+	private void updatePagedFile(ArrayList<ItemData> list)
+			throws IOException, WritingToStorageException {
+		try {
+			mPageStore.update(list);
+		} catch (IOException e) {
+			// not known which pages made it, the next save writes the whole file
+			mPageStore = null;
+			throw e;
+		} catch (WritingToStorageException e) {
+			mPageStore = null;
+			throw e;
+		}
+		// it is older than the last save now, so it must not be brought back
+		Files.deleteIfExists(new File(getPreviousFilename()).toPath());
+	}
 
-		ItemData item = new ItemData(ItemType.TASK);
+	// ********* reading ******* //
 
-		int uid = Integer.parseInt(lineArray[StorageIndices.UID]);
-		item.put(Keys.UID,
-				uid);
-		
-		String title = lineArray[StorageIndices.TITLE];
-		item.put(Keys.TITLE,
-				title);
-
-		String dueDate = lineArray[StorageIndices.DUE_DATE];
-		String dueTime = lineArray[StorageIndices.DUE_TIME];
-		Calendar dueCal = getCalendar(dueDate, dueTime);
-		item.put(Keys.DUE, 
-				dueCal);
-		
-		boolean done = Boolean.parseBoolean(lineArray[StorageIndices.TASK_DONE]);
-		item.put(Keys.DONE, 
-				done);
-		
-		String tagsString = lineArray[StorageIndices.TASK_HASHTAGS];
-		ArrayList<String> tagsList = getList(tagsString);
-		item.put(Keys.HASHTAGS, 
-				tagsList);
-		
-		return item;
+	/**
+	 * reads the items of a file.
+	 * files saved before the footer was added have no footer,
+	 * so it is only needed when asked for.
+	 */
+	private ArrayList<ItemData> readFile(String filename, boolean needsFooter)
+			throws ReadingFromStorageException, IOException {
+		byte[] header = readHeader(filename);
+		if (BinaryDecoder.isBinary(header, header.length)) {
+			// binary files always end with a checksum
+			return readBinaryFile(filename);
+		}
+		if (PageStore.isPaged(header, header.length)) {
+			// and each page of a paged file has one
+			return readPagedFile(filename);
+		}
+		if (mParallelLoader.isWorthLoading(filename)) {
+			return mParallelLoader.load(filename, needsFooter);
+		}
+		startReadMode(filename);
+		if (!isReading()) {
+			throw new ReadingFromStorageException("read mode cannot be started");
+		}
+		TextRecordReader reader = new TextRecordReader();
+		try {
+			String line;
+			while ((line = getNextLine()) != null) {
+				reader.readLine(line);
+			}
+		} finally {
+			stopReadMode();
+		}
+		return TextRecordReader.collect(Collections.singletonList(reader), needsFooter);
 	}
 
-	private ItemData getEventItemData(String[] lineArray) {
-		 // [0uid, 1type, 2title, 3stdate, 4stime, 5endate, 6entime, 7<tags>]
-		
-		ItemData item = new ItemData(ItemType.EVENT);
-
-		int uid = Integer.parseInt(lineArray[StorageIndices.UID]);
-		item.put(Keys.UID,
-				uid);
-		
-		String title = lineArray[StorageIndices.TITLE];
-		item.put(Keys.TITLE,
-				title);
-
-		String startDate = lineArray[StorageIndices.START_DATE];
-		String startTime = lineArray[StorageIndices.START_TIME];
-		Calendar startCal = getCalendar(startDate, startTime);
-		item.put(Keys.START, 
-				startCal);
-
-		String endDate = lineArray[StorageIndices.END_DATE];
-		String endTime = lineArray[StorageIndices.END_TIME];
-		Calendar endCal = getCalendar(endDate, endTime);
-		item.put(Keys.END, 
-				endCal);
-
-		String tagsString = lineArray[StorageIndices.EVENT_HASHTAGS];
-		ArrayList<String> tagsList = getList(tagsString);
-		item.put(Keys.HASHTAGS, 
-				tagsList);
-		
-		return item;
+	private byte[] readHeader(String filename) throws IOException {
+		// enough to tell the formats apart
+		byte[] header = new byte[BinaryEncoder.MAGIC.length];
+		InputStream in;
+		try {
+			in = new FileInputStream(filename);
+		} catch (FileNotFoundException e) {
+			return new byte[0];
+		}
+		try {
+			int length = 0;
+			int read;
+			while (length < header.length
+					&& (read = in.read(header, length, header.length - length)) != -1) {
+				length += read;
+			}
+			return Arrays.copyOf(header, length);
+		} finally {
+			in.close();
+		}
 	}
 
-	private String[] getStringArray(String str) {
-		return str.split(StorageStrings.FIELD_DELIMITER);
+	private ArrayList<ItemData> readPagedFile(String filename)
+			throws ReadingFromStorageException, IOException {
+		PageStore store = new PageStore(filename);
+		ArrayList<ItemData> items = store.load();
+		if (filename.equals(mFilename)) {
+			// the next save only writes the pages that changed
+			mPageStore = store;
+		}
+		return items;
 	}
 
-	private ItemType getItemType(String typeString) {
-		if (typeString == null) {
-			return null;
-		} else if (typeString.equals(StorageStrings.TYPE_EVENT)) {
-			return ItemType.EVENT;
-		} else if (typeString.equals(StorageStrings.TYPE_TASK)) {
-			return ItemType.TASK;
-		} else if (typeString.equals(StorageStrings.TYPE_PLAN)) {
-			return ItemType.PLAN;
-		} else {
-			return null;
+	private ArrayList<ItemData> readBinaryFile(String filename)
+			throws ReadingFromStorageException, IOException {
+		Path path = new File(filename).toPath();
+		if (mIsLazy && !isWindows()) {
+			// lazy items read from the mapping for as long as they are kept
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+			try {
+				ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+				return new BinaryDecoder().decode(buffer, true);
+			} finally {
+				// the mapping stays valid after the channel is closed
+				channel.close();
+			}
 		}
+		byte[] bytes = Files.readAllBytes(path);
+		return new BinaryDecoder().decode(ByteBuffer.wrap(bytes), mIsLazy);
 	}
 
-	private Calendar getCalendar(String date, String time) {
-		Calendar cal = Calendar.getInstance();
-		// parse date and time
-		String[] timeArray = time.split(StorageStrings.TIME_DELIMITER);
-		String[] dateArray = date.split(StorageStrings.DATE_DELIMITER);
-		int day = Integer.parseInt(dateArray[0]);
-		int month = Integer.parseInt(dateArray[1]) - 1; // to offset the 0-based month in calendar
-		int year = Integer.parseInt(dateArray[2]);
-		int hour = Integer.parseInt(timeArray[0]);
-		int minute = Integer.parseInt(timeArray[1]);
-		cal.set(year, month, day, hour, minute);
-		return cal;
+	private boolean isWindows() {
+		// windows cannot rename a file while it is mapped, 
+		// so a lazy file is kept in memory there instead
+		return File.separatorChar == WINDOWS_SEPARATOR;
 	}
 
-	private ArrayList<String> getList(String tagsString) {
-		ArrayList<String> list = new ArrayList<String>();
-		if (tagsString == null || tagsString.length() == 0) {
-			return list;
-		} else {
-			String[] tagsArray = tagsString.split(",");
-			for (int i = 0; i < tagsArray.length; i++) {
-				list.add(tagsArray[i]);
-			}
-			return list;
-		}
+	private void createNewFile(String filename) throws IOException {
+		File f = new File(StorageStrings.FILEPATH);
+		f.mkdirs();
+		new FileWriter(filename).close();
 	}
 
-	private void startReadMode() {
+	private String getNextLine() throws IOException {
+		return mReader.readLine();
+	}
+
+	private void startReadMode(String filename) {
 		if (isWriting()) {
 			setReading(false);
 		}
-		
 		try {
 			mReader = new BufferedReader(
 					new InputStreamReader(
-							new FileInputStream(mFilename),
+							new FileInputStream(filename),
 							"UTF-8"));
-			String nextLine = mReader.readLine();
-			mNextItem = makeItemData(nextLine);
 			setReading(true);
-			
+
 		} catch (FileNotFoundException e) {
 			// if there's no existing file, create the file.
 			// then try opening it again.
 			setReading(false);
 			try {
-				createNewFile(mFilename);
-				startReadMode();
+				createNewFile(filename);
+				startReadMode(filename);
 			} catch (IOException e1) {
 				setReading(false);
 			}
-			
+
 		} catch (IOException e) {
-			// if unable to read the nextline
 			setReading(false);
 		}
 	}
@@ -312,13 +486,14 @@ public class FileManager {
 		}
 	}
 
-	private void startWriteMode() {
+	// ********* writing ******* //
+
+	private void startWriteMode(String filename) {
 		try {
-			// will overwrite the current file with the new data.
+			// the temp file is overwritten, the real file is not touched.
+			mStream = new FileOutputStream(filename);
 			mWriter = new BufferedWriter(
-					new OutputStreamWriter(
-							new FileOutputStream(mFilename),
-							"UTF-8"));
+					new OutputStreamWriter(mStream, "UTF-8"));
 			setWriting(true);
 		} catch (IOException e) {
 			setWriting(false);
@@ -332,14 +507,206 @@ public class FileManager {
 		} catch (IOException e) {
 			setWriting(true);
 		}
+		mStream = null;
 	}
 
 	private void write(ItemData item) throws IOException {
-		String itemString = item.toString();
-		mWriter.append(itemString);
+		mEncoder.write(item, mWriter);
 		mWriter.newLine();
 	}
 
+	static void writeFooter(BufferedWriter writer, int itemCount) throws IOException {
+		writer.write(StorageStrings.FOOTER);
+		writer.write(StorageStrings.FIELD_SEPARATOR);
+		writer.write(Integer.toString(itemCount));
+		writer.write(StorageStrings.FIELD_SEPARATOR);
+		writer.write(StorageStrings.RECORD_END);
+		writer.newLine();
+	}
+
+	// ********* the startup window ******* //
+
+	private StartupWindow getWindowFromSegments() {
+		// the zone maps of the segments find the days without a window file
+		StartupWindow window = StartupWindow.startingAt(System.currentTimeMillis(),
+				StorageVars.STARTUP_WINDOW_DAYS);
+		try {
+			window.getItems().addAll(mSegmentStore.getItemsBetween(window.getFromDay(),
+					window.getToDay()));
+			window.setMaxUID(mSegmentStore.getMaxUID());
+			return window;
+		} catch (ReadingFromStorageException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private boolean isWindowOn() {
+		return StorageVars.STARTUP_WINDOW_DAYS > 0;
+	}
+
+	private void writeWindowFile(ArrayList<ItemData> list) throws IOException {
+		// WINDOW|||fromDay|||toDay|||maxUID|||; then the items, then the footer
+		StartupWindow window = StartupWindow.startingAt(System.currentTimeMillis(),
+				StorageVars.STARTUP_WINDOW_DAYS);
+		int maxUID = 0;
+		for (ItemData item : list) {
+			if (item.hasUID()) {
+				maxUID = Math.max(maxUID, item.getUID());
+			}
+		}
+		
+		// not forced to the disk, a window that is lost or cut short
+		// is found by its footer and the whole file is read instead
+		String tempFilename = getWindowFilename() + StorageStrings.TEMP_SUFFIX;
+		BufferedWriter writer = new BufferedWriter(
+				new OutputStreamWriter(
+						new FileOutputStream(tempFilename),
+						"UTF-8"));
+		try {
+			writer.write(StorageStrings.WINDOW_HEADER);
+			writer.write(StorageStrings.FIELD_SEPARATOR);
+			writer.write(Long.toString(window.getFromDay()));
+			writer.write(StorageStrings.FIELD_SEPARATOR);
+			writer.write(Long.toString(window.getToDay()));
+			writer.write(StorageStrings.FIELD_SEPARATOR);
+			writer.write(Integer.toString(maxUID));
+			writer.write(StorageStrings.FIELD_SEPARATOR);
+			writer.write(StorageStrings.RECORD_END);
+			writer.newLine();
+			
+			int count = 0;
+			for (ItemData item : list) {
+				if (window.contains(item)) {
+					mEncoder.write(item, writer);
+					writer.newLine();
+					count++;
+				}
+			}
+			writeFooter(writer, count);
+		} finally {
+			writer.close();
+		}
+		move(new File(tempFilename).toPath(), new File(getWindowFilename()).toPath());
+	}
+
+	private StartupWindow readWindowHeader(String line) throws ReadingFromStorageException {
+		if (line == null 
+				|| !line.startsWith(StorageStrings.WINDOW_HEADER + StorageStrings.FIELD_SEPARATOR)) {
+			throw new ReadingFromStorageException("no window header");
+		}
+		String[] parts = line.split(StorageStrings.FIELD_DELIMITER);
+		try {
+			StartupWindow window = new StartupWindow(Long.parseLong(parts[1]), 
+					Long.parseLong(parts[2]));
+			window.setMaxUID(Integer.parseInt(parts[3]));
+			return window;
+		} catch (NumberFormatException e) {
+			throw new ReadingFromStorageException("damaged window header: " + line, e);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new ReadingFromStorageException("damaged window header: " + line, e);
+		}
+	}
+
+	private void deleteWindowFile() throws IOException {
+		Files.deleteIfExists(new File(getWindowFilename()).toPath());
+	}
+
+	// ********* replacing and recovering files ******* //
+
+	private void replaceFile(String tempFilename) throws IOException {
+		Path file = new File(mFilename).toPath();
+		Path tempFile = new File(tempFilename).toPath();
+		if (Files.exists(file)) {
+			move(file, new File(getPreviousFilename()).toPath());
+		}
+		move(tempFile, file);
+		syncDirectory(file);
+	}
+
+	/**
+	 * finishes or cleans up after a save that stopped halfway.
+	 * if the program stopped after the storage file was made the previous
+	 * save, the finished temp file is moved into place, or if the temp file
+	 * is not finished, the previous save is brought back.
+	 */
+	private void recoverUnfinishedSave() throws IOException {
+		File file = new File(mFilename);
+		File tempFile = new File(getTempFilename());
+
+		if (!file.exists() && tempFile.exists()) {
+			try {
+				// a temp file is only finished once it has its footer
+				readFile(tempFile.getPath(), true);
+				move(tempFile.toPath(), file.toPath());
+			} catch (ReadingFromStorageException e) {
+				// not finished, the previous save is used below
+			}
+		}
+		if (tempFile.exists()) {
+			tempFile.delete();
+		}
+		if (!file.exists() && new File(getPreviousFilename()).exists()) {
+			restorePreviousSave();
+		}
+	}
+
+	private void restorePreviousSave() throws IOException {
+		// copy so the previous save stays whole if this is cut short
+		Path file = new File(mFilename).toPath();
+		deleteWindowFile();
+		putAside(mFilename);
+		Path tempFile = new File(getTempFilename()).toPath();
+		Files.copy(new File(getPreviousFilename()).toPath(),
+				tempFile,
+				StandardCopyOption.REPLACE_EXISTING);
+		move(tempFile, file);
+	}
+
+	private void putAside(String damagedFilename) throws IOException {
+		// kept so the items can still be got back by hand
+		Path file = new File(damagedFilename).toPath();
+		if (Files.exists(file)) {
+			move(file, new File(damagedFilename + StorageStrings.DAMAGED_SUFFIX).toPath());
+		}
+	}
+
+	static void move(Path from, Path to) throws IOException {
+		try {
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	static void syncDirectory(Path file) {
+		// makes the rename itself last, not every system allows this
+		Path directory = file.toAbsolutePath().getParent();
+		try {
+			FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// the rename is still done, it just may not be on the disk yet
+		}
+	}
+
+	private String getWindowFilename() {
+		return mFilename + StorageStrings.WINDOW_SUFFIX;
+	}
+
+	private String getTempFilename() {
+		return mFilename + StorageStrings.TEMP_SUFFIX;
+	}
+
+	private String getPreviousFilename() {
+		return mFilename + StorageStrings.PREVIOUS_SUFFIX;
+	}
+
 	private boolean isWriting() {
 		return mIsWriting;
 	}
@@ -0,0 +1,135 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import udo.data.ItemData;
+
+/**
+ * This class maps string keys (e.g. trigrams) to the items that have them.<br>
+ * Each key has a posting list of items kept sorted by SortKey, so adding and
+ * removing an item costs one map operation per key, a query only looks at
+ * the posting lists of the keys in the query, and the results come out
+ * sorted.
+ */
+public class InvertedIndex {
+
+	private HashMap<String, TreeMap<SortKey, ItemData>> mPostings;
+
+	public InvertedIndex() {
+		mPostings = new HashMap<String, TreeMap<SortKey, ItemData>>();
+	}
+
+	/**
+	 * adds an item to the posting list of each key
+	 *
+	 * @param item the item to add
+	 * @param keys the keys of the item
+	 */
+	public void add(ItemData item, Collection<String> keys) {
+		if (keys == null) {
+			return;
+		}
+		SortKey sortKey = new SortKey(item);
+		for (String key : keys) {
+			TreeMap<SortKey, ItemData> posting = mPostings.get(key);
+			if (posting == null) {
+				posting = new TreeMap<SortKey, ItemData>();
+				mPostings.put(key, posting);
+			}
+			posting.put(sortKey, item);
+		}
+	}
+
+	/**
+	 * removes an item from the posting list of each key.
+	 * the keys must be the same as the ones the item was added with.
+	 *
+	 * @param item the item to remove
+	 * @param keys the keys of the item
+	 */
+	public void remove(ItemData item, Collection<String> keys) {
+		if (keys == null) {
+			return;
+		}
+		SortKey sortKey = new SortKey(item);
+		for (String key : keys) {
+			TreeMap<SortKey, ItemData> posting = mPostings.get(key);
+			if (posting != null) {
+				posting.remove(sortKey);
+				if (posting.isEmpty()) {
+					mPostings.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns the number of items that have the key
+	 *
+	 * @param key the key
+	 * @return the number of items with the key
+	 */
+	public int count(String key) {
+		TreeMap<SortKey, ItemData> posting = mPostings.get(key);
+		if (posting == null) {
+			return 0;
+		}
+		return posting.size();
+	}
+
+	/**
+	 * returns the items that have the key, sorted.
+	 *
+	 * @param key the key
+	 * @return the items with the key
+	 */
+	public ArrayList<ItemData> getItemsWith(String key) {
+		TreeMap<SortKey, ItemData> posting = mPostings.get(key);
+		if (posting == null) {
+			return new ArrayList<ItemData>();
+		}
+		return new ArrayList<ItemData>(posting.values());
+	}
+
+	/**
+	 * returns the items that have every one of the keys (intersection),
+	 * sorted.
+	 *
+	 * @param keys the keys
+	 * @return the items with all the keys
+	 */
+	public ArrayList<ItemData> getItemsWithAll(Collection<String> keys) {
+		return Postings.intersect(getPostings(keys));
+	}
+
+	/**
+	 * returns the items that have at least one of the keys (union),
+	 * sorted.
+	 *
+	 * @param keys the keys
+	 * @return the items with any of the keys, each item only once
+	 */
+	public ArrayList<ItemData> getItemsWithAny(Collection<String> keys) {
+		return Postings.union(getPostings(keys));
+	}
+
+	/**
+	 * removes all the items from the index
+	 */
+	public void clear() {
+		mPostings.clear();
+	}
+
+	private ArrayList<TreeMap<SortKey, ItemData>> getPostings(Collection<String> keys) {
+		ArrayList<TreeMap<SortKey, ItemData>> postings =
+				new ArrayList<TreeMap<SortKey, ItemData>>(keys.size());
+		for (String key : keys) {
+			postings.add(mPostings.get(key));
+		}
+		return postings;
+	}
+}
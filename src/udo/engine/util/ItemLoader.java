@@ -0,0 +1,129 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import udo.constants.Constants.LoadVars;
+import udo.data.ItemData;
+import udo.exceptions.ReadingFromStorageException;
+
+/**
+ * This class reads the rest of the items after the cache is started with
+ * the items of the startup window (see Cache.beginLoading()).<br>
+ * Reading the file is tried a few times. If it still cannot be read, the
+ * cache is told the load failed, so the items of the window are never
+ * taken to be all the items: anything that needs every item fails, and
+ * the autosaver does not save, until retry() reads the file.<br>
+ * The file is read with FileManager.getFromFileForWindow(), which never
+ * reads the previous save or an empty file instead. A damaged file is not
+ * read again, the load stays failed until the next start.
+ */
+public class ItemLoader implements Runnable {
+
+	private FileManager mFileManager;
+	private Cache mCache;
+	private AutoSaver mAutoSaver;
+	private int mAttempts;
+	private long mRetryMillis;
+	private volatile Exception mError;
+	private volatile boolean mIsDamaged;
+
+	public ItemLoader(FileManager fileManager, Cache cache, AutoSaver autoSaver) {
+		this(fileManager, cache, autoSaver, LoadVars.LOAD_ATTEMPTS, LoadVars.RETRY_MILLIS);
+	}
+
+	/**
+	 * lets you specify how often to try.
+	 *
+	 * @param fileManager the file manager to read with
+	 * @param cache the cache being loaded
+	 * @param autoSaver the autosaver of the cache
+	 * @param attempts the number of times to try reading the file
+	 * @param retryMillis the time between two tries
+	 */
+	public ItemLoader(FileManager fileManager, Cache cache, AutoSaver autoSaver,
+			int attempts, long retryMillis) {
+		mFileManager = fileManager;
+		mCache = cache;
+		mAutoSaver = autoSaver;
+		mAttempts = attempts;
+		mRetryMillis = retryMillis;
+	}
+
+	/**
+	 * reads the rest of the items, and tells the cache the load failed
+	 * if the file cannot be read after all the tries.
+	 */
+	@Override
+	public void run() {
+		for (int i = 0; i < mAttempts && !mIsDamaged; i++) {
+			if (i > 0 && !pause()) {
+				break;
+			}
+			if (load()) {
+				return;
+			}
+		}
+		mCache.failLoading();
+	}
+
+	/**
+	 * reads the rest of the items again after the load failed,
+	 * unless the file was found damaged.
+	 *
+	 * @return true if all the items are loaded
+	 */
+	public boolean retry() {
+		if (!mCache.hasLoadFailed()) {
+			return true;
+		}
+		if (mIsDamaged) {
+			return false;
+		}
+		return load();
+	}
+
+	/**
+	 * @return the error of the last try that failed, or null
+	 */
+	public Exception getError() {
+		return mError;
+	}
+
+	private boolean load() {
+		// waits for anything else using the file manager
+		synchronized (mFileManager) {
+			ArrayList<ItemData> items;
+			try {
+				items = mFileManager.getFromFileForWindow();
+			} catch (ReadingFromStorageException e) {
+				// trying again would not make it any less damaged
+				mError = e;
+				mIsDamaged = true;
+				return false;
+			} catch (IOException e) {
+				mError = e;
+				return false;
+			}
+			// loading the rest of the file is not a change to save
+			boolean wasSaved = !mAutoSaver.isDirty();
+			long version = mCache.finishLoading(items);
+			if (wasSaved) {
+				mAutoSaver.markSaved(version);
+			}
+			mError = null;
+			return true;
+		}
+	}
+
+	private boolean pause() {
+		try {
+			Thread.sleep(mRetryMillis);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
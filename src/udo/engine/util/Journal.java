@@ -0,0 +1,324 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+
+import udo.constants.Constants.JournalVars;
+import udo.constants.Constants.StorageStrings;
+import udo.data.ItemData;
+import udo.exceptions.CacheAccessException;
+
+/**
+ * This class keeps a journal of the changes made to the items since the
+ * data file was last saved, so that a change is kept even if the program
+ * stops before the next save.<br>
+ * Each change is one line appended to the end of the journal:<br>
+ * put: + followed by the storage line of the item as it is after the change<br>
+ * delete: - followed by the uid and ;<br>
+ * Replaying the lines in order over the saved data gives back the items.
+ * Doing a line again does not change the result, so it does not matter if
+ * the saved data already has some of the changes.<br>
+ * To start the journal again after a save, rotate() it before taking the
+ * items to save, and discardRotated() once they are saved.
+ */
+public class Journal {
+
+	private static final char PUT = '+';
+	private static final char DELETE = '-';
+	private static final char NEW_LINE = '\n';
+
+	private String mFilename;
+	private String mOldFilename;
+	private int mSyncInterval;
+
+	private FileOutputStream mStream;
+	private BufferedWriter mWriter;
+	private RecordEncoder mEncoder;
+	private int mRecordCount;
+	private int mSkippedCount;
+	private int mUnsyncedCount;
+
+	public Journal() {
+		this(StorageStrings.JOURNAL_FILENAME,
+				StorageStrings.JOURNAL_OLD_FILENAME,
+				JournalVars.SYNC_INTERVAL);
+	}
+
+	/**
+	 * lets you specify the journal files and how often to sync.
+	 *
+	 * @param filename the journal file
+	 * @param oldFilename the file the journal is moved to by rotate()
+	 * @param syncInterval records between each fsync, 0 to never fsync
+	 */
+	public Journal(String filename, String oldFilename, int syncInterval) {
+		mFilename = filename;
+		mOldFilename = oldFilename;
+		mSyncInterval = syncInterval;
+		mEncoder = new RecordEncoder();
+		mRecordCount = 0;
+		mSkippedCount = 0;
+		mUnsyncedCount = 0;
+	}
+
+	/**
+	 * applies the records of the journal to the cache, the rotated journal
+	 * first. a record that was not written fully is skipped, see
+	 * getSkippedCount().
+	 *
+	 * @param cache the cache holding the saved items
+	 * @return the number of records applied
+	 * @throws IOException if reading error
+	 * @throws CacheAccessException if cache cannot be accessed
+	 */
+	public synchronized int replay(Cache cache) throws IOException, CacheAccessException {
+		mSkippedCount = 0;
+		int count = replayFile(mOldFilename, cache) + replayFile(mFilename, cache);
+		mRecordCount = count;
+		return count;
+	}
+
+	/**
+	 * opens the journal for appending, making it if there is none.
+	 *
+	 * @throws IOException if the file cannot be opened
+	 */
+	public synchronized void open() throws IOException {
+		if (mWriter != null) {
+			return;
+		}
+		File file = new File(mFilename);
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		endLastLine(file);
+		mStream = new FileOutputStream(file, true);
+		mWriter = new BufferedWriter(new OutputStreamWriter(mStream, "UTF-8"));
+		mUnsyncedCount = 0;
+	}
+
+	/**
+	 * closes the journal, syncing what has not been synced.
+	 */
+	public synchronized void close() {
+		if (mWriter == null) {
+			return;
+		}
+		try {
+			mWriter.flush();
+			if (mUnsyncedCount > 0) {
+				mStream.getFD().sync();
+			}
+			mWriter.close();
+		} catch (IOException e) {
+			// nothing more can be done, the records that were
+			// flushed are still in the file.
+		}
+		mWriter = null;
+		mStream = null;
+		mUnsyncedCount = 0;
+	}
+
+	/**
+	 * adds a record that an item was added or changed
+	 *
+	 * @param item the item after the change
+	 * @throws IOException if writing error
+	 */
+	public synchronized void logPut(ItemData item) throws IOException {
+		open();
+		mWriter.write(PUT);
+		mEncoder.write(item, mWriter);
+		endRecord();
+	}
+
+	/**
+	 * adds a record that an item was deleted
+	 *
+	 * @param uid the uid of the deleted item
+	 * @throws IOException if writing error
+	 */
+	public synchronized void logDelete(int uid) throws IOException {
+		open();
+		mWriter.write(DELETE);
+		mWriter.write(Integer.toString(uid));
+		mWriter.write(StorageStrings.RECORD_END);
+		endRecord();
+	}
+
+	/**
+	 * gives the number of records since the journal was last rotated
+	 *
+	 * @return the number of records
+	 */
+	public synchronized int getRecordCount() {
+		return mRecordCount;
+	}
+
+	/**
+	 * gives the number of records the last replay() skipped because
+	 * they were not written fully
+	 *
+	 * @return the number of records skipped
+	 */
+	public synchronized int getSkippedCount() {
+		return mSkippedCount;
+	}
+
+	/**
+	 * moves the records so far to the rotated journal and starts an
+	 * empty journal. if the rotated journal is still there from a save
+	 * that did not finish, the records are added to its end instead.
+	 *
+	 * @throws IOException if the files cannot be moved
+	 */
+	public synchronized void rotate() throws IOException {
+		close();
+		File file = new File(mFilename);
+		File oldFile = new File(mOldFilename);
+		if (file.exists()) {
+			if (oldFile.exists()) {
+				appendFile(file, oldFile);
+				if (!file.delete()) {
+					throw new IOException("cannot delete " + mFilename);
+				}
+			} else if (!file.renameTo(oldFile)) {
+				throw new IOException("cannot rotate " + mFilename);
+			}
+		}
+		mRecordCount = 0;
+		open();
+	}
+
+	/**
+	 * deletes the rotated journal, once the items have been saved.
+	 */
+	public synchronized void discardRotated() {
+		new File(mOldFilename).delete();
+	}
+
+	// ********* helper methods ******* //
+
+	private void endRecord() throws IOException {
+		mWriter.write(NEW_LINE);
+		mWriter.flush();
+		mRecordCount++;
+		mUnsyncedCount++;
+		if (mSyncInterval > 0 && mUnsyncedCount >= mSyncInterval) {
+			mStream.getFD().sync();
+			mUnsyncedCount = 0;
+		}
+	}
+
+	private int replayFile(String filename, Cache cache)
+			throws IOException, CacheAccessException {
+		BufferedReader reader;
+		try {
+			reader = new BufferedReader(
+					new InputStreamReader(
+							new FileInputStream(filename),
+							"UTF-8"));
+		} catch (FileNotFoundException e) {
+			return 0;
+		}
+
+		RecordDecoder decoder = new RecordDecoder();
+		int count = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (applyRecord(line, decoder, cache)) {
+					count++;
+				} else if (!line.isEmpty()) {
+					mSkippedCount++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return count;
+	}
+
+	private boolean applyRecord(String line, RecordDecoder decoder, Cache cache)
+			throws CacheAccessException {
+		// a record cut short by a crash has no record end
+		if (line.length() < 2 || !line.endsWith(StorageStrings.RECORD_END)) {
+			return false;
+		}
+		String record = line.substring(1);
+		try {
+			// the decoder throws on a record with fields missing
+			switch (line.charAt(0)) {
+				case PUT :
+					cache.addItem(decoder.decode(record));
+					return true;
+
+				case DELETE :
+					int uid = Integer.parseInt(record.substring(0,
+							record.length() - StorageStrings.RECORD_END.length()));
+					// it may already be deleted in the saved data, and the
+					// saved data may still be loading, so it is not waited for
+					cache.forgetItem(uid);
+					return true;
+
+				default :
+					return false;
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private void endLastLine(File file) throws IOException {
+		// a crash can leave the last record without its line break,
+		// end it so the next record starts on a line of its own
+		if (!file.exists() || file.length() == 0) {
+			return;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(raf.length() - 1);
+			if (raf.read() != NEW_LINE) {
+				raf.write(NEW_LINE);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void appendFile(File from, File to) throws IOException {
+		endLastLine(to);
+		InputStream in = new FileInputStream(from);
+		try {
+			FileOutputStream out = new FileOutputStream(to, true);
+			try {
+				copy(in, out);
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+	}
+}
@@ -0,0 +1,660 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import udo.constants.Constants.StorageStrings;
+import udo.constants.Constants.StorageVars;
+import udo.data.ItemData;
+import udo.exceptions.ReadingFromStorageException;
+import udo.exceptions.WritingToStorageException;
+
+/**
+ * This class keeps the items in a file of pages of a fixed size, so that
+ * saving a changed item only writes the page it is on.<br>
+ * file: header page | record pages<br>
+ * header page: magic | version | page size | page count | file id | crc32<br>
+ * record page: crc32 | slot count | end of records | records ... slots<br>
+ * A record is the line of the item in the text format, in UTF-8. Records
+ * are put from the start of a page upwards and the slots from the end of
+ * the page downwards, each slot holding the offset and length of a record.
+ * An item stays in its page and slot: a changed record is put where it was,
+ * or moved within its page, and only goes to another page if its own page
+ * is full. The free bytes of each page are kept in memory to find a page
+ * for a new record.<br>
+ * update() finds the changed items by comparing them with the items it saved
+ * last, which works because the cache never changes an item in place.<br>
+ * The changed pages are first written to a page log, which is forced to the
+ * disk before any page of the file is changed. A save cut short is finished
+ * from the page log when the file is next read, so no page is left half
+ * written. The page log only applies to the file with the same file id.
+ */
+public class PageStore {
+
+	/** the first bytes of a paged file */
+	public static final byte[] MAGIC = { 0, 'u', 'D', 'p' };
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// the header page
+	private static final int HEADER_PAGE = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int PAGE_SIZE_OFFSET = 5;
+	private static final int PAGE_COUNT_OFFSET = 9;
+	private static final int FILE_ID_OFFSET = 13;
+	private static final int HEADER_CRC_OFFSET = 21;
+
+	// a record page
+	private static final int SLOT_COUNT_OFFSET = 4;
+	private static final int RECORDS_END_OFFSET = 6;
+	private static final int PAGE_HEADER_SIZE = 8;
+	private static final int SLOT_SIZE = 4;
+	private static final int NO_RECORD = 0;
+
+	private static final int NO_PAGE = -1;
+	private static final int INT_SIZE = 4;
+	private static final int LONG_SIZE = 8;
+
+	private String mFilename;
+	private int mPageSize;
+	private int mPageCount;
+	private long mFileId;
+	private int[] mFreeBytes;
+	private int mInsertPage;
+	private HashMap<Integer, StoredItem> mStored;
+	private TreeMap<Integer, ByteBuffer> mDirtyPages;
+	private int mUpdateCount;
+	private int mPagesWritten;
+	private FileChannel mChannel;
+	private RecordEncoder mEncoder;
+	private RecordDecoder mDecoder;
+
+	/**
+	 * @param filename the paged file
+	 */
+	public PageStore(String filename) {
+		mFilename = filename;
+		mPageSize = StorageVars.PAGE_SIZE;
+		mFreeBytes = new int[0];
+		mStored = new HashMap<Integer, StoredItem>();
+		mDirtyPages = new TreeMap<Integer, ByteBuffer>();
+		mEncoder = new RecordEncoder();
+		mDecoder = new RecordDecoder();
+	}
+
+	/**
+	 * checks if the start of a file is the start of a paged file
+	 *
+	 * @param header the first bytes of the file
+	 * @param length the number of bytes in header that were read
+	 * @return true if the file is a paged file
+	 */
+	public static boolean isPaged(byte[] header, int length) {
+		if (length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * reads all the items of the file, after finishing a save that was cut
+	 * short. the items are then the ones the next update() compares with.
+	 *
+	 * @return the items
+	 * @throws ReadingFromStorageException if a page is damaged
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> load() throws ReadingFromStorageException, IOException {
+		mStored.clear();
+		mDirtyPages.clear();
+		mChannel = FileChannel.open(new File(mFilename).toPath(),
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			recoverPageLog();
+			readHeaderPage();
+			if (mChannel.size() != (long) mPageCount * mPageSize) {
+				throw new ReadingFromStorageException("paged file has the wrong length");
+			}
+
+			ArrayList<ItemData> items = new ArrayList<ItemData>();
+			mFreeBytes = new int[mPageCount];
+			for (int pageNumber = HEADER_PAGE + 1; pageNumber < mPageCount; pageNumber++) {
+				ByteBuffer page = readPage(pageNumber);
+				if (getCrc(page, INT_SIZE, mPageSize) != page.getInt(0)) {
+					throw new ReadingFromStorageException("damaged page " + pageNumber);
+				}
+				readRecords(page, pageNumber, items);
+				mFreeBytes[pageNumber] = getFreeBytes(page);
+			}
+			mInsertPage = HEADER_PAGE + 1;
+			return items;
+
+		} catch (IndexOutOfBoundsException e) {
+			throw new ReadingFromStorageException("damaged paged file", e);
+		} catch (NumberFormatException e) {
+			throw new ReadingFromStorageException("damaged record in paged file", e);
+		} finally {
+			closeChannel();
+		}
+	}
+
+	/**
+	 * writes all the items as a new paged file. the items are then the ones
+	 * the next update() compares with, and the stream is taken to be the file.
+	 *
+	 * @param items the items to write
+	 * @param out the stream to write to
+	 * @throws IOException if writing error
+	 * @throws WritingToStorageException if an item does not fit in a page
+	 */
+	public void write(ArrayList<ItemData> items, OutputStream out)
+			throws IOException, WritingToStorageException {
+		mStored.clear();
+		mDirtyPages.clear();
+		mFileId = new Random().nextLong();
+
+		ArrayList<ByteBuffer> pages = new ArrayList<ByteBuffer>();
+		ByteBuffer page = null;
+		for (ItemData item : items) {
+			byte[] record = encode(item);
+			if (page == null || getFreeSpace(page) < record.length + SLOT_SIZE) {
+				page = newPage();
+				pages.add(page);
+			}
+			int slot = addRecord(page, record);
+			mStored.put(item.getUID(), new StoredItem(item, pages.size(), slot));
+		}
+
+		mPageCount = pages.size() + 1;
+		mFreeBytes = new int[mPageCount];
+		out.write(makeHeaderPage().array());
+		for (int i = 0; i < pages.size(); i++) {
+			page = pages.get(i);
+			mFreeBytes[i + 1] = getFreeBytes(page);
+			page.putInt(0, getCrc(page, INT_SIZE, mPageSize));
+			out.write(page.array());
+		}
+		mInsertPage = HEADER_PAGE + 1;
+	}
+
+	/**
+	 * saves the changes between the items and the items saved last,
+	 * writing only the pages of the changed items.
+	 *
+	 * @param items all the items
+	 * @throws IOException if writing error
+	 * @throws WritingToStorageException if an item does not fit in a page
+	 */
+	public void update(ArrayList<ItemData> items) throws IOException, WritingToStorageException {
+		mUpdateCount++;
+		mChannel = FileChannel.open(new File(mFilename).toPath(),
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			for (ItemData item : items) {
+				StoredItem stored = mStored.get(item.getUID());
+				if (stored != null && stored.mItem == item) {
+					stored.mSeen = mUpdateCount;
+				} else {
+					putItem(stored, item);
+				}
+			}
+
+			Iterator<StoredItem> storedItems = mStored.values().iterator();
+			while (storedItems.hasNext()) {
+				StoredItem stored = storedItems.next();
+				if (stored.mSeen != mUpdateCount) {
+					ByteBuffer page = getPage(stored.mPage);
+					removeRecord(page, stored.mSlot);
+					markDirty(stored.mPage, page);
+					storedItems.remove();
+				}
+			}
+
+			flush();
+		} finally {
+			closeChannel();
+		}
+	}
+
+	/**
+	 * @return the number of pages the last update() wrote, header included
+	 */
+	public int getPagesWritten() {
+		return mPagesWritten;
+	}
+
+	private void putItem(StoredItem stored, ItemData item)
+			throws IOException, WritingToStorageException {
+		byte[] record = encode(item);
+		if (stored != null) {
+			ByteBuffer page = getPage(stored.mPage);
+			if (replaceRecord(page, stored.mSlot, record)) {
+				markDirty(stored.mPage, page);
+				stored.mItem = item;
+				stored.mSeen = mUpdateCount;
+				return;
+			}
+			// no room left in its page
+			removeRecord(page, stored.mSlot);
+			markDirty(stored.mPage, page);
+		}
+
+		int pageNumber = findPage(record.length + SLOT_SIZE);
+		ByteBuffer page;
+		if (pageNumber == NO_PAGE) {
+			pageNumber = mPageCount++;
+			mFreeBytes = growFreeBytes(mPageCount);
+			page = newPage();
+		} else {
+			page = getPage(pageNumber);
+		}
+		int slot = addRecord(page, record);
+		markDirty(pageNumber, page);
+
+		StoredItem moved = new StoredItem(item, pageNumber, slot);
+		moved.mSeen = mUpdateCount;
+		mStored.put(item.getUID(), moved);
+	}
+
+	private byte[] encode(ItemData item) throws WritingToStorageException {
+		byte[] record = mEncoder.encode(item).getBytes(UTF_8);
+		if (record.length > mPageSize - PAGE_HEADER_SIZE - SLOT_SIZE) {
+			throw new WritingToStorageException("item too large for a page: " + item.getUID());
+		}
+		return record;
+	}
+
+	private int findPage(int needed) {
+		// goes on from the page found last, so filling up new pages is quick
+		for (int i = 0; i < mPageCount; i++) {
+			int pageNumber = mInsertPage + i;
+			if (pageNumber >= mPageCount) {
+				pageNumber -= mPageCount - 1;
+			}
+			if (pageNumber != HEADER_PAGE && mFreeBytes[pageNumber] >= needed) {
+				mInsertPage = pageNumber;
+				return pageNumber;
+			}
+		}
+		return NO_PAGE;
+	}
+
+	private int[] growFreeBytes(int pageCount) {
+		if (pageCount <= mFreeBytes.length) {
+			return mFreeBytes;
+		}
+		int[] freeBytes = new int[Math.max(pageCount, mFreeBytes.length * 2)];
+		System.arraycopy(mFreeBytes, 0, freeBytes, 0, mFreeBytes.length);
+		return freeBytes;
+	}
+
+	private void markDirty(int pageNumber, ByteBuffer page) {
+		mDirtyPages.put(pageNumber, page);
+		mFreeBytes[pageNumber] = getFreeBytes(page);
+	}
+
+	// ****** pages ****** //
+
+	private ByteBuffer newPage() {
+		ByteBuffer page = ByteBuffer.allocate(mPageSize);
+		page.putShort(SLOT_COUNT_OFFSET, (short) 0);
+		page.putShort(RECORDS_END_OFFSET, (short) PAGE_HEADER_SIZE);
+		return page;
+	}
+
+	private ByteBuffer getPage(int pageNumber) throws IOException {
+		ByteBuffer page = mDirtyPages.get(pageNumber);
+		if (page == null) {
+			page = readPage(pageNumber);
+		}
+		return page;
+	}
+
+	private ByteBuffer readPage(int pageNumber) throws IOException {
+		ByteBuffer page = ByteBuffer.allocate(mPageSize);
+		long position = (long) pageNumber * mPageSize;
+		while (page.hasRemaining()) {
+			if (mChannel.read(page, position + page.position()) == -1) {
+				throw new IOException("page " + pageNumber + " is past the end of the file");
+			}
+		}
+		page.clear();
+		return page;
+	}
+
+	private void readRecords(ByteBuffer page, int pageNumber, ArrayList<ItemData> items) {
+		int slotCount = getSlotCount(page);
+		for (int slot = 0; slot < slotCount; slot++) {
+			int offset = getRecordOffset(page, slot);
+			if (offset == NO_RECORD) {
+				continue;
+			}
+			String line = new String(page.array(), offset, getRecordLength(page, slot), UTF_8);
+			ItemData item = mDecoder.decode(line);
+			items.add(item);
+			mStored.put(item.getUID(), new StoredItem(item, pageNumber, slot));
+		}
+	}
+
+	private int addRecord(ByteBuffer page, byte[] record) {
+		// a free slot is used again before a new one is made
+		int slotCount = getSlotCount(page);
+		int slot = 0;
+		while (slot < slotCount && getRecordOffset(page, slot) != NO_RECORD) {
+			slot++;
+		}
+		int needed = record.length + (slot == slotCount ? SLOT_SIZE : 0);
+		if (getFreeSpace(page) < needed) {
+			compact(page);
+		}
+		if (slot == slotCount) {
+			page.putShort(SLOT_COUNT_OFFSET, (short) (slotCount + 1));
+		}
+		appendRecord(page, slot, record);
+		return slot;
+	}
+
+	private boolean replaceRecord(ByteBuffer page, int slot, byte[] record) {
+		int length = getRecordLength(page, slot);
+		if (record.length <= length) {
+			// the rest of the old record is taken back by the next compact()
+			int offset = getRecordOffset(page, slot);
+			System.arraycopy(record, 0, page.array(), offset, record.length);
+			setSlot(page, slot, offset, record.length);
+			return true;
+		}
+		if (getFreeBytes(page) + length < record.length) {
+			return false;
+		}
+		setSlot(page, slot, NO_RECORD, 0);
+		if (getFreeSpace(page) < record.length) {
+			compact(page);
+		}
+		appendRecord(page, slot, record);
+		return true;
+	}
+
+	private void removeRecord(ByteBuffer page, int slot) {
+		setSlot(page, slot, NO_RECORD, 0);
+		// free slots at the end of the directory are given back
+		int slotCount = getSlotCount(page);
+		while (slotCount > 0 && getRecordOffset(page, slotCount - 1) == NO_RECORD) {
+			slotCount--;
+		}
+		page.putShort(SLOT_COUNT_OFFSET, (short) slotCount);
+	}
+
+	private void appendRecord(ByteBuffer page, int slot, byte[] record) {
+		int end = getRecordsEnd(page);
+		System.arraycopy(record, 0, page.array(), end, record.length);
+		setSlot(page, slot, end, record.length);
+		page.putShort(RECORDS_END_OFFSET, (short) (end + record.length));
+	}
+
+	private void compact(ByteBuffer page) {
+		// moves the records together, the slots stay the same
+		byte[] old = page.array().clone();
+		int end = PAGE_HEADER_SIZE;
+		int slotCount = getSlotCount(page);
+		for (int slot = 0; slot < slotCount; slot++) {
+			int offset = getRecordOffset(page, slot);
+			if (offset == NO_RECORD) {
+				continue;
+			}
+			int length = getRecordLength(page, slot);
+			System.arraycopy(old, offset, page.array(), end, length);
+			setSlot(page, slot, end, length);
+			end += length;
+		}
+		page.putShort(RECORDS_END_OFFSET, (short) end);
+	}
+
+	private int getFreeSpace(ByteBuffer page) {
+		// the space between the records and the slots
+		return getSlotsStart(page) - getRecordsEnd(page);
+	}
+
+	private int getFreeBytes(ByteBuffer page) {
+		// the space there would be after compact()
+		int used = 0;
+		int slotCount = getSlotCount(page);
+		for (int slot = 0; slot < slotCount; slot++) {
+			used += getRecordLength(page, slot);
+		}
+		return getSlotsStart(page) - PAGE_HEADER_SIZE - used;
+	}
+
+	private int getSlotCount(ByteBuffer page) {
+		return page.getShort(SLOT_COUNT_OFFSET) & 0xFFFF;
+	}
+
+	private int getRecordsEnd(ByteBuffer page) {
+		return page.getShort(RECORDS_END_OFFSET) & 0xFFFF;
+	}
+
+	private int getSlotsStart(ByteBuffer page) {
+		return mPageSize - getSlotCount(page) * SLOT_SIZE;
+	}
+
+	private int getSlotPosition(int slot) {
+		return mPageSize - (slot + 1) * SLOT_SIZE;
+	}
+
+	private int getRecordOffset(ByteBuffer page, int slot) {
+		return page.getShort(getSlotPosition(slot)) & 0xFFFF;
+	}
+
+	private int getRecordLength(ByteBuffer page, int slot) {
+		return page.getShort(getSlotPosition(slot) + 2) & 0xFFFF;
+	}
+
+	private void setSlot(ByteBuffer page, int slot, int offset, int length) {
+		page.putShort(getSlotPosition(slot), (short) offset);
+		page.putShort(getSlotPosition(slot) + 2, (short) length);
+	}
+
+	// ****** header page ****** //
+
+	private ByteBuffer makeHeaderPage() {
+		ByteBuffer page = ByteBuffer.allocate(mPageSize);
+		page.put(MAGIC);
+		page.put(VERSION_OFFSET, StorageVars.PAGE_VERSION);
+		page.putInt(PAGE_SIZE_OFFSET, mPageSize);
+		page.putInt(PAGE_COUNT_OFFSET, mPageCount);
+		page.putLong(FILE_ID_OFFSET, mFileId);
+		page.putInt(HEADER_CRC_OFFSET, getCrc(page, 0, HEADER_CRC_OFFSET));
+		page.clear();
+		return page;
+	}
+
+	private void readHeaderPage() throws ReadingFromStorageException, IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_CRC_OFFSET + INT_SIZE);
+		while (header.hasRemaining()) {
+			if (mChannel.read(header, header.position()) == -1) {
+				throw new ReadingFromStorageException("paged file is cut short");
+			}
+		}
+		if (!isPaged(header.array(), header.capacity())) {
+			throw new ReadingFromStorageException("not a paged file");
+		}
+		if (getCrc(header, 0, HEADER_CRC_OFFSET) != header.getInt(HEADER_CRC_OFFSET)) {
+			throw new ReadingFromStorageException("damaged paged file header");
+		}
+		int version = header.get(VERSION_OFFSET);
+		if (version != StorageVars.PAGE_VERSION) {
+			throw new ReadingFromStorageException("unknown paged version " + version);
+		}
+		if (header.getInt(PAGE_SIZE_OFFSET) != mPageSize) {
+			throw new ReadingFromStorageException("paged file has another page size");
+		}
+		mPageCount = header.getInt(PAGE_COUNT_OFFSET);
+		mFileId = header.getLong(FILE_ID_OFFSET);
+		if (mPageCount <= HEADER_PAGE) {
+			throw new ReadingFromStorageException("damaged paged file header");
+		}
+	}
+
+	private int getCrc(ByteBuffer buffer, int start, int end) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), start, end - start);
+		return (int) crc.getValue();
+	}
+
+	// ****** page log ****** //
+
+	private void flush() throws IOException {
+		mPagesWritten = 0;
+		if (mDirtyPages.isEmpty()) {
+			return;
+		}
+		if (mPageCount != readPageCount()) {
+			mDirtyPages.put(HEADER_PAGE, makeHeaderPage());
+		}
+		for (Map.Entry<Integer, ByteBuffer> entry : mDirtyPages.entrySet()) {
+			ByteBuffer page = entry.getValue();
+			if (entry.getKey() != HEADER_PAGE) {
+				page.putInt(0, getCrc(page, INT_SIZE, mPageSize));
+			}
+		}
+
+		writePageLog();
+		for (Map.Entry<Integer, ByteBuffer> entry : mDirtyPages.entrySet()) {
+			writePage(entry.getKey(), entry.getValue());
+		}
+		mChannel.force(false);
+		mPagesWritten = mDirtyPages.size();
+		mDirtyPages.clear();
+		// the pages are all in the file now
+		Files.deleteIfExists(new File(getPageLogFilename()).toPath());
+	}
+
+	private int readPageCount() throws IOException {
+		ByteBuffer count = ByteBuffer.allocate(INT_SIZE);
+		while (count.hasRemaining()) {
+			if (mChannel.read(count, PAGE_COUNT_OFFSET + count.position()) == -1) {
+				throw new IOException("paged file is cut short");
+			}
+		}
+		return count.getInt(0);
+	}
+
+	private void writePage(int pageNumber, ByteBuffer page) throws IOException {
+		ByteBuffer toWrite = page.duplicate();
+		toWrite.limit(mPageSize);
+		toWrite.position(0);
+		long position = (long) pageNumber * mPageSize;
+		while (toWrite.hasRemaining()) {
+			mChannel.write(toWrite, position + toWrite.position());
+		}
+	}
+
+	private void writePageLog() throws IOException {
+		// page log: file id | pages (page number | page) | page count | crc32
+		ByteBuffer log = ByteBuffer.allocate(LONG_SIZE
+				+ mDirtyPages.size() * (INT_SIZE + mPageSize)
+				+ INT_SIZE + INT_SIZE);
+		log.putLong(mFileId);
+		for (Map.Entry<Integer, ByteBuffer> entry : mDirtyPages.entrySet()) {
+			log.putInt(entry.getKey());
+			log.put(entry.getValue().array());
+		}
+		log.putInt(mDirtyPages.size());
+		log.putInt(getCrc(log, 0, log.position()));
+
+		FileOutputStream out = new FileOutputStream(getPageLogFilename());
+		try {
+			out.write(log.array());
+			out.getFD().sync();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void recoverPageLog() throws IOException {
+		File logFile = new File(getPageLogFilename());
+		if (!logFile.exists()) {
+			return;
+		}
+		ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(logFile.toPath()));
+		if (isWholePageLog(log)) {
+			int count = log.getInt(log.limit() - 2 * INT_SIZE);
+			log.position(LONG_SIZE);
+			for (int i = 0; i < count; i++) {
+				int pageNumber = log.getInt();
+				ByteBuffer page = log.slice();
+				page.limit(mPageSize);
+				writePage(pageNumber, page);
+				log.position(log.position() + mPageSize);
+			}
+			mChannel.force(false);
+		}
+		// a log that is not whole was never applied to the file
+		Files.delete(logFile.toPath());
+	}
+
+	private boolean isWholePageLog(ByteBuffer log) throws IOException {
+		int length = log.limit();
+		if (length < LONG_SIZE + 2 * INT_SIZE) {
+			return false;
+		}
+		if (getCrc(log, 0, length - INT_SIZE) != log.getInt(length - INT_SIZE)) {
+			return false;
+		}
+		int count = log.getInt(length - 2 * INT_SIZE);
+		if (length != LONG_SIZE + (long) count * (INT_SIZE + mPageSize) + 2 * INT_SIZE) {
+			return false;
+		}
+		// the log of another file that was saved over since
+		ByteBuffer header = ByteBuffer.allocate(LONG_SIZE);
+		mChannel.read(header, FILE_ID_OFFSET);
+		return header.position() == LONG_SIZE && header.getLong(0) == log.getLong(0);
+	}
+
+	private String getPageLogFilename() {
+		return mFilename + StorageStrings.PAGE_LOG_SUFFIX;
+	}
+
+	private void closeChannel() throws IOException {
+		if (mChannel != null) {
+			mChannel.close();
+			mChannel = null;
+		}
+	}
+
+	/**
+	 * an item as it was saved last, and where its record is
+	 */
+	private static class StoredItem {
+
+		private ItemData mItem;
+		private int mPage;
+		private int mSlot;
+		private int mSeen;
+
+		public StoredItem(ItemData item, int page, int slot) {
+			mItem = item;
+			mPage = page;
+			mSlot = slot;
+		}
+	}
+}
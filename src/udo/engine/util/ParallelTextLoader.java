@@ -0,0 +1,191 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import udo.constants.Constants.StorageVars;
+import udo.data.ItemData;
+import udo.exceptions.ReadingFromStorageException;
+
+/**
+ * This class reads a large text storage file on all the cores.<br>
+ * The file is memory mapped and cut into chunks that end at line breaks.
+ * The chunks are read at the same time on a fork/join pool, each into its
+ * own TextRecordReader, and the items are put together in the order of
+ * the file at the end.
+ */
+public class ParallelTextLoader {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte NEW_LINE = '\n';
+	private static final char CARRIAGE_RETURN = '\r';
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final char WINDOWS_SEPARATOR = '\\';
+
+	private int mParallelism;
+
+	public ParallelTextLoader() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * lets you specify the number of threads to read with.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public ParallelTextLoader(int parallelism) {
+		mParallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * checks if a file is big enough to be worth reading in parallel
+	 *
+	 * @param filename the file
+	 * @return true if the file should be read by this loader
+	 */
+	public boolean isWorthLoading(String filename) {
+		// windows cannot rename a file while it is mapped, and a mapping is
+		// only let go of by the garbage collector, so the next save would fail
+		if (File.separatorChar == WINDOWS_SEPARATOR) {
+			return false;
+		}
+		long length = new File(filename).length();
+		return mParallelism > 1
+				&& length >= StorageVars.PARALLEL_LOAD_BYTES
+				&& length <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * reads all the items of a text file
+	 *
+	 * @param filename the file
+	 * @param needsFooter true if a file without a footer is not whole
+	 * @return the items, in the order of the file
+	 * @throws ReadingFromStorageException if a record or the footer is damaged
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> load(String filename, boolean needsFooter)
+			throws ReadingFromStorageException, IOException {
+		MappedByteBuffer buffer;
+		FileChannel channel = FileChannel.open(new File(filename).toPath(),
+				StandardOpenOption.READ);
+		try {
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// the mapping stays valid after the channel is closed
+			channel.close();
+		}
+
+		int[] bounds = findChunkBounds(buffer);
+		final ArrayList<ChunkTask> tasks = new ArrayList<ChunkTask>();
+		ArrayList<TextRecordReader> parts = new ArrayList<TextRecordReader>();
+		for (int i = 0; i + 1 < bounds.length; i++) {
+			ChunkTask task = new ChunkTask(buffer, bounds[i], bounds[i + 1]);
+			tasks.add(task);
+			parts.add(task.mReader);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(mParallelism);
+		try {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+
+		for (ChunkTask task : tasks) {
+			if (task.mError != null) {
+				throw task.mError;
+			}
+		}
+		return TextRecordReader.collect(parts, needsFooter);
+	}
+
+	private int[] findChunkBounds(ByteBuffer buffer) {
+		// each chunk starts just after a line break
+		int length = buffer.limit();
+		int chunkCount = mParallelism * CHUNKS_PER_THREAD;
+		int chunkSize = Math.max(1, length / chunkCount);
+
+		int[] bounds = new int[chunkCount + 1];
+		int count = 1;
+		int end = 0;
+		while (end < length) {
+			end = Math.min(length, end + chunkSize);
+			while (end < length && buffer.get(end - 1) != NEW_LINE) {
+				end++;
+			}
+			if (count == bounds.length) {
+				bounds = Arrays.copyOf(bounds, bounds.length * 2);
+			}
+			bounds[count++] = end;
+		}
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * reads the lines of one chunk of the file
+	 */
+	private static class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private ByteBuffer mBuffer;
+		private int mStart;
+		private int mEnd;
+		private TextRecordReader mReader;
+		private ReadingFromStorageException mError;
+
+		public ChunkTask(ByteBuffer buffer, int start, int end) {
+			mBuffer = buffer;
+			mStart = start;
+			mEnd = end;
+			mReader = new TextRecordReader();
+		}
+
+		@Override
+		protected void compute() {
+			byte[] bytes = new byte[mEnd - mStart];
+			ByteBuffer chunk = mBuffer.duplicate();
+			chunk.position(mStart);
+			chunk.get(bytes);
+			String text = new String(bytes, UTF_8);
+
+			try {
+				int lineStart = 0;
+				while (lineStart < text.length()) {
+					int lineEnd = text.indexOf(NEW_LINE, lineStart);
+					int next = lineEnd + 1;
+					if (lineEnd == -1) {
+						lineEnd = text.length();
+						next = lineEnd;
+					}
+					if (lineEnd > lineStart && text.charAt(lineEnd - 1) == CARRIAGE_RETURN) {
+						lineEnd--;
+					}
+					mReader.readLine(text.substring(lineStart, lineEnd));
+					lineStart = next;
+				}
+			} catch (ReadingFromStorageException e) {
+				mError = e;
+			}
+		}
+	}
+}
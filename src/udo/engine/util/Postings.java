@@ -0,0 +1,80 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import udo.data.ItemData;
+
+/**
+ * This class combines the posting lists of an index (see TagIndex and
+ * InvertedIndex). A posting list maps the SortKey of each item to the item,
+ * so it is sorted, and the lists can be combined without sorting again.
+ * The indexes only look up the posting lists of the keys in the query.
+ */
+class Postings {
+
+	private Postings() {
+	}
+
+	/**
+	 * returns the items that are in every one of the posting lists
+	 * (intersection), sorted.
+	 *
+	 * @param postings the posting lists, null for a key with no items
+	 * @return the items in all the posting lists
+	 */
+	static ArrayList<ItemData> intersect(ArrayList<TreeMap<SortKey, ItemData>> postings) {
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		if (postings.isEmpty()) {
+			return result;
+		}
+
+		// walk the shortest posting list and probe the others
+		TreeMap<SortKey, ItemData> shortest = null;
+		for (TreeMap<SortKey, ItemData> posting : postings) {
+			if (posting == null) {
+				return result;
+			}
+			if (shortest == null || posting.size() < shortest.size()) {
+				shortest = posting;
+			}
+		}
+
+		for (Entry<SortKey, ItemData> entry : shortest.entrySet()) {
+			if (isInAll(entry.getKey(), postings)) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * returns the items that are in at least one of the posting lists
+	 * (union), sorted.
+	 *
+	 * @param postings the posting lists, null for a key with no items
+	 * @return the items in any of the posting lists, each item only once
+	 */
+	static ArrayList<ItemData> union(ArrayList<TreeMap<SortKey, ItemData>> postings) {
+		ArrayList<Collection<ItemData>> sources = new ArrayList<Collection<ItemData>>();
+		for (TreeMap<SortKey, ItemData> posting : postings) {
+			if (posting != null) {
+				sources.add(posting.values());
+			}
+		}
+		return SortKey.merge(sources);
+	}
+
+	private static boolean isInAll(SortKey sortKey,
+			ArrayList<TreeMap<SortKey, ItemData>> postings) {
+		for (TreeMap<SortKey, ItemData> posting : postings) {
+			if (!posting.containsKey(sortKey)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,224 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import udo.constants.Constants.StorageStrings;
+import udo.data.EpochTime;
+import udo.data.ItemData;
+import udo.data.TagDictionary;
+import udo.enums.ItemType;
+
+/**
+ * This class turns the lines of the storage file back into items. It is the
+ * reverse of RecordEncoder.<br>
+ * Each line is read once from the start to the end: numbers are parsed
+ * where they are in the line and the fields are put straight into the item,
+ * so no arrays of parts or Calendars are made.<br>
+ * Items with the same title share one title string. A decoder remembers the
+ * titles it has seen, so use a new decoder for each load. It also remembers
+ * the ids of the hashtags it has seen, so that decoders on other threads
+ * seldom have to wait for the TagDictionary.
+ */
+public class RecordDecoder {
+
+	private static final String SEPARATOR = StorageStrings.FIELD_SEPARATOR;
+	private static final char DATE_DELIMITER = StorageStrings.DATE_DELIMITER.charAt(0);
+	private static final char TIME_DELIMITER = StorageStrings.TIME_DELIMITER.charAt(0);
+	private static final char TAG_DELIMITER = StorageStrings.TAG_DELIMITER.charAt(0);
+
+	private String mLine;
+	private int mPos;
+	private HashMap<String, String> mTitles;
+	private HashMap<String, Integer> mTagIds;
+	private int[] mTagBuffer;
+
+	public RecordDecoder() {
+		mTitles = new HashMap<String, String>();
+		mTagIds = new HashMap<String, Integer>();
+		mTagBuffer = new int[8];
+	}
+
+	/**
+	 * makes an item from a line of the storage file
+	 *
+	 * @param line the line
+	 * @return the item, or null if the line is empty
+	 * @throws NumberFormatException if a number or date in the line is wrong,
+	 *             or the line is cut short
+	 */
+	public ItemData decode(String line) {
+		if (line == null || line.isEmpty()) {
+			return null;
+		}
+		mLine = line;
+		mPos = 0;
+		try {
+			return readItem();
+		} catch (IndexOutOfBoundsException e) {
+			throw new NumberFormatException("cut short at " + mPos + ": " + mLine);
+		} finally {
+			mLine = null;
+		}
+	}
+
+	private ItemData readItem() {
+		int uid = readInt();
+		skipSeparator();
+		ItemType type = readType();
+		skipSeparator();
+
+		ItemData item = new ItemData(type);
+		item.setUID(uid);
+		item.setTitle(getTitle(readField()));
+		skipSeparator();
+
+		switch (type) {
+			case EVENT :
+				// sdate | stime | edate | etime
+				item.setStart(readDateTime());
+				skipSeparator();
+				item.setEnd(readDateTime());
+				break;
+
+			case TASK :
+				// ddate | dtime | done
+				item.setDue(readDateTime());
+				skipSeparator();
+				item.setDone(readBoolean());
+				break;
+
+			default :
+				// done
+				item.setDone(readBoolean());
+				break;
+		}
+		skipSeparator();
+		item.setTagIds(readTagIds());
+		// every record ends with a separator, a line cut short does not
+		skipSeparator();
+		return item;
+	}
+
+	private ItemType readType() {
+		String field = readField();
+		if (field.equals(StorageStrings.TYPE_EVENT)) {
+			return ItemType.EVENT;
+		} else if (field.equals(StorageStrings.TYPE_TASK)) {
+			return ItemType.TASK;
+		} else {
+			return ItemType.PLAN;
+		}
+	}
+
+	private long readDateTime() {
+		// d/m/yyyy|||h:m
+		int day = readInt();
+		skip(DATE_DELIMITER);
+		int month = readInt();
+		skip(DATE_DELIMITER);
+		int year = readInt();
+		skipSeparator();
+		int hour = readInt();
+		skip(TIME_DELIMITER);
+		int minute = readInt();
+		return EpochTime.toMillis(year, month, day, hour, minute);
+	}
+
+	private boolean readBoolean() {
+		int end = getFieldEnd();
+		boolean value = (end - mPos == 4)
+				&& mLine.regionMatches(true, mPos, "true", 0, 4);
+		mPos = end;
+		return value;
+	}
+
+	private int[] readTagIds() {
+		int count = 0;
+		int end = getFieldEnd();
+		int start = mPos;
+		while (start < end) {
+			int tagEnd = mLine.indexOf(TAG_DELIMITER, start);
+			if (tagEnd == -1 || tagEnd > end) {
+				tagEnd = end;
+			}
+			if (count == mTagBuffer.length) {
+				mTagBuffer = Arrays.copyOf(mTagBuffer, count * 2);
+			}
+			mTagBuffer[count++] = getTagId(mLine.substring(start, tagEnd));
+			start = tagEnd + 1;
+		}
+		mPos = end;
+		return Arrays.copyOf(mTagBuffer, count);
+	}
+
+	private int getTagId(String tag) {
+		Integer id = mTagIds.get(tag);
+		if (id == null) {
+			id = TagDictionary.getInstance().getId(tag);
+			mTagIds.put(tag, id);
+		}
+		return id;
+	}
+
+	private int readInt() {
+		boolean isNegative = false;
+		if (mPos < mLine.length() && mLine.charAt(mPos) == '-') {
+			isNegative = true;
+			mPos++;
+		}
+		int start = mPos;
+		int value = 0;
+		while (mPos < mLine.length()) {
+			int digit = mLine.charAt(mPos) - '0';
+			if (digit < 0 || digit > 9) {
+				break;
+			}
+			value = value * 10 + digit;
+			mPos++;
+		}
+		if (mPos == start) {
+			throw new NumberFormatException("no number at " + start + ": " + mLine);
+		}
+		return isNegative ? -value : value;
+	}
+
+	private String readField() {
+		int end = getFieldEnd();
+		String field = mLine.substring(mPos, end);
+		mPos = end;
+		return field;
+	}
+
+	private int getFieldEnd() {
+		int end = mLine.indexOf(SEPARATOR, mPos);
+		if (end == -1) {
+			return mLine.length();
+		}
+		return end;
+	}
+
+	private void skip(char delimiter) {
+		if (mPos >= mLine.length() || mLine.charAt(mPos) != delimiter) {
+			throw new NumberFormatException("expected " + delimiter + " at " + mPos + ": " + mLine);
+		}
+		mPos++;
+	}
+
+	private void skipSeparator() {
+		if (!mLine.startsWith(SEPARATOR, mPos)) {
+			throw new NumberFormatException("expected " + SEPARATOR + " at " + mPos + ": " + mLine);
+		}
+		mPos += SEPARATOR.length();
+	}
+
+	private String getTitle(String title) {
+		String sameTitle = mTitles.get(title);
+		if (sameTitle == null) {
+			mTitles.put(title, title);
+			return title;
+		}
+		return sameTitle;
+	}
+}
@@ -0,0 +1,126 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import udo.constants.Constants.StorageStrings;
+import udo.data.EpochTime;
+import udo.data.ItemData;
+import udo.data.TagDictionary;
+
+/**
+ * This class turns items into the lines of the storage file.<br>
+ * The fields are appended straight into a StringBuilder that is reused for
+ * every item, and numbers and dates are written without boxing or a
+ * Formatter, so saving many items makes little garbage. The lines are the
+ * same as the StorageStrings.UNFORMATTED_STRING_* formats give:<br>
+ * event: uid | type | title | sdate | stime | edate | etime | tags<br>
+ * task: uid | type | title | ddate | dtime | done | tags<br>
+ * plan: uid | type | title | done | tags
+ */
+public class RecordEncoder {
+
+	private StringBuilder mBuilder;
+	private char[] mChars;
+	private int[] mFields;
+
+	public RecordEncoder() {
+		mBuilder = new StringBuilder();
+		mChars = new char[0];
+		mFields = new int[EpochTime.FIELD_COUNT];
+	}
+
+	/**
+	 * returns the line of an item
+	 *
+	 * @param item the item
+	 * @return the line, without a line break
+	 */
+	public String encode(ItemData item) {
+		mBuilder.setLength(0);
+		append(item);
+		return mBuilder.toString();
+	}
+
+	/**
+	 * writes the line of an item to a writer, without a line break
+	 *
+	 * @param item the item
+	 * @param writer the writer to write to
+	 * @throws IOException if writing error
+	 */
+	public void write(ItemData item, Writer writer) throws IOException {
+		mBuilder.setLength(0);
+		append(item);
+		int length = mBuilder.length();
+		if (mChars.length < length) {
+			mChars = new char[Math.max(length, mChars.length * 2)];
+		}
+		mBuilder.getChars(0, length, mChars, 0);
+		writer.write(mChars, 0, length);
+	}
+
+	private void append(ItemData item) {
+		mBuilder.append(item.getUID());
+		appendSeparator();
+		mBuilder.append(item.getItemType().toString());
+		appendSeparator();
+		mBuilder.append(item.getTitle());
+		appendSeparator();
+
+		switch (item.getItemType()) {
+			case EVENT :
+				appendDateTime(item.getStart());
+				appendSeparator();
+				appendDateTime(item.getEnd());
+				break;
+
+			case TASK :
+				appendDateTime(item.getDue());
+				appendSeparator();
+				mBuilder.append(item.isDone());
+				break;
+
+			default :
+				mBuilder.append(item.isDone());
+				break;
+		}
+
+		appendSeparator();
+		appendTags(item.getTagIds());
+		appendSeparator();
+		mBuilder.append(StorageStrings.RECORD_END);
+	}
+
+	private void appendDateTime(long millis) {
+		// date | time, as d/m/yyyy|||h:m
+		EpochTime.getFields(millis, mFields);
+		mBuilder.append(mFields[EpochTime.DAY]);
+		mBuilder.append(StorageStrings.DATE_DELIMITER);
+		mBuilder.append(mFields[EpochTime.MONTH]);
+		mBuilder.append(StorageStrings.DATE_DELIMITER);
+		mBuilder.append(mFields[EpochTime.YEAR]);
+		appendSeparator();
+		mBuilder.append(mFields[EpochTime.HOUR]);
+		mBuilder.append(StorageStrings.TIME_DELIMITER);
+		mBuilder.append(mFields[EpochTime.MINUTE]);
+	}
+
+	private void appendTags(int[] tagIds) {
+		if (tagIds == null) {
+			return;
+		}
+		TagDictionary tags = TagDictionary.getInstance();
+		for (int i = 0; i < tagIds.length; i++) {
+			if (i != 0) {
+				mBuilder.append(StorageStrings.TAG_DELIMITER);
+			}
+			mBuilder.append(tags.getTag(tagIds[i]));
+		}
+	}
+
+	private void appendSeparator() {
+		mBuilder.append(StorageStrings.FIELD_SEPARATOR);
+	}
+}
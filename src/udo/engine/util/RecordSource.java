@@ -0,0 +1,79 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import udo.data.ItemData;
+import udo.data.LazyFieldSource;
+import udo.exceptions.ReadingFromStorageException;
+
+/**
+ * This class holds the records of a binary storage file that was read
+ * lazily, so the titles and hashtags of its items can be read when they
+ * are first needed.<br>
+ * An item read lazily only keeps the offset of its record. The records
+ * read last are kept in a cache of a bounded size, so an item that is shown
+ * again is not read again, while items that are never shown cost nothing.
+ */
+public class RecordSource implements LazyFieldSource {
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private ByteBuffer mBuffer;
+	private int[] mTagIds;
+	private BinaryDecoder mDecoder;
+	private LinkedHashMap<Integer, ItemData> mDecoded;
+
+	/**
+	 * @param buffer the whole file, which must not change any more
+	 * @param tagIds the dictionary ids of the tags of the file, by their number
+	 * @param cacheSize the number of read records to keep
+	 */
+	public RecordSource(ByteBuffer buffer, int[] tagIds, final int cacheSize) {
+		mBuffer = buffer;
+		mTagIds = tagIds;
+		mDecoder = new BinaryDecoder();
+		// in access order, so the record used the longest time ago goes first
+		mDecoded = new LinkedHashMap<Integer, ItemData>(16, LOAD_FACTOR, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ItemData> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	@Override
+	public String getTitle(int offset) {
+		return getRecord(offset).getTitle();
+	}
+
+	@Override
+	public int[] getTagIds(int offset) {
+		return getRecord(offset).getTagIds();
+	}
+
+	/**
+	 * @return the number of read records being kept
+	 */
+	public synchronized int getDecodedCount() {
+		return mDecoded.size();
+	}
+
+	private synchronized ItemData getRecord(int offset) {
+		ItemData record = mDecoded.get(offset);
+		if (record == null) {
+			try {
+				record = mDecoder.decodeAt(mBuffer, offset, mTagIds);
+			} catch (ReadingFromStorageException e) {
+				// the whole file was checked when it was read
+				throw new IllegalStateException("damaged record at " + offset, e);
+			}
+			mDecoded.put(offset, record);
+		}
+		return record;
+	}
+}
@@ -0,0 +1,258 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+
+import udo.constants.Constants.SearchVars;
+import udo.data.ItemData;
+
+/**
+ * This class is a word index over the titles and hashtags of items, used to
+ * rank search results with BM25.<br>
+ * Each word maps to the items that have it, together with how many times it
+ * appears in the title and in the hashtags of each item. An item scores
+ * higher when the query words appear often in it (term frequency), when the
+ * words are rare among all items (inverse document frequency), and when they
+ * appear in the title rather than in the hashtags (field weight).<br>
+ * Only the best results are kept while scoring, in a heap, so the full list
+ * of matches is never sorted.
+ */
+public class SearchIndex {
+
+	private static final int FIELD_TITLE = 0;
+	private static final int FIELD_HASHTAGS = 1;
+	private static final int FIELD_COUNT = 2;
+
+	private static final double[] FIELD_WEIGHTS = {
+		SearchVars.TITLE_WEIGHT,
+		SearchVars.HASHTAG_WEIGHT
+	};
+
+	// word -> uid -> number of times the word is in each field
+	private HashMap<String, HashMap<Integer, int[]>> mPostings;
+	// uid -> number of words in each field
+	private HashMap<Integer, int[]> mLengths;
+	private HashMap<Integer, ItemData> mItems;
+	private long[] mTotalLengths;
+
+	public SearchIndex() {
+		mPostings = new HashMap<String, HashMap<Integer, int[]>>();
+		mLengths = new HashMap<Integer, int[]>();
+		mItems = new HashMap<Integer, ItemData>();
+		mTotalLengths = new long[FIELD_COUNT];
+	}
+
+	/**
+	 * adds an item under the words of its title and hashtags
+	 *
+	 * @param item the item to add
+	 */
+	public void add(ItemData item) {
+		Integer uid = item.getUID();
+		ArrayList<ArrayList<String>> fields = getFields(item);
+		int[] lengths = new int[FIELD_COUNT];
+
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			for (String word : fields.get(field)) {
+				HashMap<Integer, int[]> posting = mPostings.get(word);
+				if (posting == null) {
+					posting = new HashMap<Integer, int[]>();
+					mPostings.put(word, posting);
+				}
+				int[] frequencies = posting.get(uid);
+				if (frequencies == null) {
+					frequencies = new int[FIELD_COUNT];
+					posting.put(uid, frequencies);
+				}
+				frequencies[field]++;
+			}
+			lengths[field] = fields.get(field).size();
+			mTotalLengths[field] += lengths[field];
+		}
+
+		mLengths.put(uid, lengths);
+		mItems.put(uid, item);
+	}
+
+	/**
+	 * removes an item from the index.
+	 * the title and hashtags must be the same as when it was added.
+	 *
+	 * @param item the item to remove
+	 */
+	public void remove(ItemData item) {
+		Integer uid = item.getUID();
+		int[] lengths = mLengths.remove(uid);
+		if (lengths == null) {
+			return;
+		}
+		mItems.remove(uid);
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			mTotalLengths[field] -= lengths[field];
+		}
+
+		for (ArrayList<String> words : getFields(item)) {
+			for (String word : words) {
+				HashMap<Integer, int[]> posting = mPostings.get(word);
+				if (posting != null) {
+					posting.remove(uid);
+					if (posting.isEmpty()) {
+						mPostings.remove(word);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns the items that best match the words of the query,
+	 * best match first. items without any of the words are not returned.
+	 *
+	 * @param query the query
+	 * @param limit the maximum number of items to return
+	 * @return the best matching items, at most limit of them
+	 */
+	public ArrayList<ItemData> search(String query, int limit) {
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		int itemCount = mItems.size();
+		if (itemCount == 0 || limit <= 0) {
+			return result;
+		}
+
+		double[] averageLengths = new double[FIELD_COUNT];
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			averageLengths[field] = Math.max(1.0,
+					(double) mTotalLengths[field] / itemCount);
+		}
+
+		HashMap<Integer, Double> scores = new HashMap<Integer, Double>();
+		for (String word : new HashSet<String>(tokenize(query))) {
+			HashMap<Integer, int[]> posting = mPostings.get(word);
+			if (posting == null) {
+				continue;
+			}
+			double idf = getInverseDocumentFrequency(itemCount, posting.size());
+			for (Entry<Integer, int[]> entry : posting.entrySet()) {
+				Integer uid = entry.getKey();
+				double frequency = getWeightedFrequency(entry.getValue(),
+						mLengths.get(uid),
+						averageLengths);
+				double score = idf * frequency * (SearchVars.BM25_K1 + 1)
+						/ (frequency + SearchVars.BM25_K1);
+				Double previous = scores.get(uid);
+				scores.put(uid, previous == null ? score : previous + score);
+			}
+		}
+
+		// min-heap of the best results so far, the worst one is on top
+		PriorityQueue<ScoredItem> best = new PriorityQueue<ScoredItem>(limit + 1);
+		for (Entry<Integer, Double> entry : scores.entrySet()) {
+			best.add(new ScoredItem(entry.getKey(), entry.getValue()));
+			if (best.size() > limit) {
+				best.poll();
+			}
+		}
+
+		while (!best.isEmpty()) {
+			result.add(mItems.get(best.poll().mUID));
+		}
+		// the heap gives the worst first
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * removes all the items from the index
+	 */
+	public void clear() {
+		mPostings.clear();
+		mLengths.clear();
+		mItems.clear();
+		mTotalLengths = new long[FIELD_COUNT];
+	}
+
+	/**
+	 * splits a string into lower case words made of letters and digits
+	 *
+	 * @param str the string
+	 * @return the words in the string
+	 */
+	public static ArrayList<String> tokenize(String str) {
+		ArrayList<String> words = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i <= str.length(); i++) {
+			boolean isWordChar = i < str.length()
+					&& Character.isLetterOrDigit(str.charAt(i));
+			if (isWordChar && start == -1) {
+				start = i;
+			} else if (!isWordChar && start != -1) {
+				words.add(str.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	private ArrayList<ArrayList<String>> getFields(ItemData item) {
+		ArrayList<ArrayList<String>> fields = new ArrayList<ArrayList<String>>();
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			fields.add(new ArrayList<String>());
+		}
+
+		String title = item.getTitle();
+		if (title != null) {
+			fields.get(FIELD_TITLE).addAll(tokenize(title));
+		}
+
+		ArrayList<String> tags = item.getTags();
+		if (tags != null) {
+			for (String tag : tags) {
+				fields.get(FIELD_HASHTAGS).addAll(tokenize(tag));
+			}
+		}
+		return fields;
+	}
+
+	private double getInverseDocumentFrequency(int itemCount, int matchCount) {
+		return Math.log(1.0 + (itemCount - matchCount + 0.5) / (matchCount + 0.5));
+	}
+
+	private double getWeightedFrequency(int[] frequencies, int[] lengths,
+			double[] averageLengths) {
+		double frequency = 0;
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			if (frequencies[field] == 0) {
+				continue;
+			}
+			// longer fields than average count each word for less
+			double lengthNorm = 1 - SearchVars.BM25_B
+					+ SearchVars.BM25_B * lengths[field] / averageLengths[field];
+			frequency += FIELD_WEIGHTS[field] * frequencies[field] / lengthNorm;
+		}
+		return frequency;
+	}
+
+	private static class ScoredItem implements Comparable<ScoredItem> {
+		private final int mUID;
+		private final double mScore;
+
+		public ScoredItem(int uid, double score) {
+			mUID = uid;
+			mScore = score;
+		}
+
+		@Override
+		public int compareTo(ScoredItem other) {
+			if (mScore != other.mScore) {
+				return Double.compare(mScore, other.mScore);
+			}
+			// same score, the larger uid is worse so results are stable
+			return Integer.compare(other.mUID, mUID);
+		}
+	}
+}
@@ -0,0 +1,481 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import udo.constants.Constants.StorageStrings;
+import udo.constants.Constants.StorageVars;
+import udo.data.EpochTime;
+import udo.data.ItemData;
+import udo.enums.ItemType;
+import udo.exceptions.ReadingFromStorageException;
+
+/**
+ * This class keeps the items in one segment file for every few months
+ * (see StorageVars.SEGMENT_MONTHS), next to the storage file.<br>
+ * An item goes in the segment of the month of its start or due time.
+ * Items without one go in the undated segment. A segment file is in the
+ * text format, with a SegmentSummary line just before its footer:<br>
+ * records | summary | END|||count|||;<br>
+ * The queries read only the summaries first, from the ends of the files,
+ * and skip the segments that cannot have any matching item.
+ * A save only writes the segments whose items changed, found by comparing
+ * them with the items saved last, which works because the cache never
+ * changes an item in place. Each segment is replaced in one step, like the
+ * storage file. A save cut short can leave some segments newer than the
+ * others, which the journal of the changes since the last save puts right.<br>
+ * A damaged segment is put aside on its own, and the other segments are
+ * still read. A save only deletes the segments this store read or wrote
+ * last that have no items left, never a segment it has not read.
+ */
+public class SegmentStore {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+	private static final int MONTHS_PER_YEAR = 12;
+	private static final int TAIL_BYTES = 4096;
+	private static final char NEW_LINE = '\n';
+	private static final char DOT = '.';
+
+	private String mFilename;
+	private HashMap<String, ArrayList<ItemData>> mSaved;
+	private ArrayList<String> mDamaged;
+	private RecordEncoder mEncoder;
+	private int[] mFields;
+	private int mSegmentsWritten;
+	private int mSegmentsRead;
+
+	/**
+	 * @param filename the storage file the segments are kept next to
+	 */
+	public SegmentStore(String filename) {
+		mFilename = filename;
+		mSaved = new HashMap<String, ArrayList<ItemData>>();
+		mDamaged = new ArrayList<String>();
+		mEncoder = new RecordEncoder();
+		mFields = new int[EpochTime.FIELD_COUNT];
+	}
+
+	/**
+	 * @return true if there are segment files
+	 */
+	public boolean hasSegments() {
+		return !getSegmentKeys().isEmpty();
+	}
+
+	/**
+	 * reads the items of all the segments. the items are then the ones
+	 * the next write() compares with. a damaged segment is put aside
+	 * and left out, see getDamagedSegments().
+	 *
+	 * @return the items of the segments that could be read
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> load() throws IOException {
+		mSaved.clear();
+		mDamaged.clear();
+		ArrayList<ItemData> items = new ArrayList<ItemData>();
+		for (String key : getSegmentKeys()) {
+			String filename = getSegmentFilename(key);
+			ArrayList<ItemData> segmentItems;
+			try {
+				segmentItems = readSegment(filename);
+			} catch (ReadingFromStorageException e) {
+				// kept so the items can still be got back by hand
+				FileManager.move(new File(filename).toPath(),
+						new File(filename + StorageStrings.DAMAGED_SUFFIX).toPath());
+				mDamaged.add(key);
+				continue;
+			}
+			mSaved.put(key, segmentItems);
+			items.addAll(segmentItems);
+		}
+		return items;
+	}
+
+	/**
+	 * saves the items, writing only the segments that changed since
+	 * the last load() or write(), and deleting the ones of those left empty.
+	 *
+	 * @param items all the items
+	 * @throws IOException if writing error
+	 */
+	public void write(ArrayList<ItemData> items) throws IOException {
+		TreeMap<String, ArrayList<ItemData>> segments = new TreeMap<String, ArrayList<ItemData>>();
+		for (ItemData item : items) {
+			String key = getKey(item);
+			ArrayList<ItemData> segment = segments.get(key);
+			if (segment == null) {
+				segment = new ArrayList<ItemData>();
+				segments.put(key, segment);
+			}
+			segment.add(item);
+		}
+
+		mSegmentsWritten = 0;
+		for (Map.Entry<String, ArrayList<ItemData>> entry : segments.entrySet()) {
+			if (!isSame(mSaved.get(entry.getKey()), entry.getValue())) {
+				writeSegment(entry.getKey(), entry.getValue());
+				mSegmentsWritten++;
+			}
+		}
+		for (String key : mSaved.keySet()) {
+			if (!segments.containsKey(key)) {
+				Files.deleteIfExists(new File(getSegmentFilename(key)).toPath());
+			}
+		}
+		FileManager.syncDirectory(new File(mFilename).toPath());
+		mSaved = new HashMap<String, ArrayList<ItemData>>(segments);
+	}
+
+	/**
+	 * deletes all the segment files, once the items are saved another way
+	 *
+	 * @throws IOException if a file cannot be deleted
+	 */
+	public void deleteAll() throws IOException {
+		for (String key : getSegmentKeys()) {
+			Files.deleteIfExists(new File(getSegmentFilename(key)).toPath());
+		}
+		mSaved.clear();
+	}
+
+	/**
+	 * @return the keys of the segments the last load() found damaged and put aside
+	 */
+	public ArrayList<String> getDamagedSegments() {
+		return new ArrayList<String>(mDamaged);
+	}
+
+	/**
+	 * @return the number of segments the last write() wrote
+	 */
+	public int getSegmentsWritten() {
+		return mSegmentsWritten;
+	}
+
+	/**
+	 * @return the number of segments the last query read
+	 */
+	public int getSegmentsRead() {
+		return mSegmentsRead;
+	}
+
+	// ****** queries ****** //
+
+	/**
+	 * reads the events and tasks on any day between two days
+	 *
+	 * @param fromDay the first day, in days since the epoch
+	 * @param toDay the last day
+	 * @return the items
+	 * @throws ReadingFromStorageException if a segment is damaged
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> getItemsBetween(long fromDay, long toDay)
+			throws ReadingFromStorageException, IOException {
+		StartupWindow days = new StartupWindow(fromDay, toDay);
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		mSegmentsRead = 0;
+		for (String key : getSegmentKeys()) {
+			SegmentSummary summary = readSummary(key);
+			if (summary != null && !summary.mightHaveDays(fromDay, toDay)) {
+				continue;
+			}
+			for (ItemData item : readSegmentForQuery(key)) {
+				if (days.contains(item)) {
+					result.add(item);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * reads the items with a hashtag
+	 *
+	 * @param tag the hashtag, in any case
+	 * @return the items
+	 * @throws ReadingFromStorageException if a segment is damaged
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> getItemsWithTag(String tag)
+			throws ReadingFromStorageException, IOException {
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		mSegmentsRead = 0;
+		for (String key : getSegmentKeys()) {
+			SegmentSummary summary = readSummary(key);
+			if (summary != null && !summary.mightHaveTag(tag)) {
+				continue;
+			}
+			for (ItemData item : readSegmentForQuery(key)) {
+				if (hasTag(item, tag)) {
+					result.add(item);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * reads the items that have all the words of a query
+	 * in their title or hashtags
+	 *
+	 * @param query the words to search for
+	 * @return the items
+	 * @throws ReadingFromStorageException if a segment is damaged
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> searchItems(String query)
+			throws ReadingFromStorageException, IOException {
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		mSegmentsRead = 0;
+		ArrayList<String> words = SearchIndex.tokenize(query);
+		if (words.isEmpty()) {
+			return result;
+		}
+		for (String key : getSegmentKeys()) {
+			SegmentSummary summary = readSummary(key);
+			if (summary != null && !summary.mightHaveWords(words)) {
+				continue;
+			}
+			for (ItemData item : readSegmentForQuery(key)) {
+				if (getWords(item).containsAll(words)) {
+					result.add(item);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * reads the tasks and plans that are not done
+	 *
+	 * @return the items
+	 * @throws ReadingFromStorageException if a segment is damaged
+	 * @throws IOException if reading error
+	 */
+	public ArrayList<ItemData> getUndoneItems() throws ReadingFromStorageException, IOException {
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		mSegmentsRead = 0;
+		for (String key : getSegmentKeys()) {
+			SegmentSummary summary = readSummary(key);
+			if (summary != null && summary.getUndoneCount() == 0) {
+				continue;
+			}
+			for (ItemData item : readSegmentForQuery(key)) {
+				if (item.getItemType() != ItemType.EVENT && item.hasDone() && !item.isDone()) {
+					result.add(item);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the highest uid in any segment, from the summaries
+	 * @throws ReadingFromStorageException if a summary cannot be read
+	 * @throws IOException if reading error
+	 */
+	public int getMaxUID() throws ReadingFromStorageException, IOException {
+		int maxUID = 0;
+		for (String key : getSegmentKeys()) {
+			SegmentSummary summary = readSummary(key);
+			if (summary == null) {
+				throw new ReadingFromStorageException("damaged segment " + key);
+			}
+			maxUID = Math.max(maxUID, summary.getMaxUID());
+		}
+		return maxUID;
+	}
+
+	// ****** segment files ****** //
+
+	private String getKey(ItemData item) {
+		long time = item.getSortTime();
+		if (time == ItemData.NO_TIME) {
+			return StorageStrings.SEGMENT_UNDATED;
+		}
+		EpochTime.getFields(time, mFields);
+		int month = mFields[EpochTime.YEAR] * MONTHS_PER_YEAR + mFields[EpochTime.MONTH] - 1;
+		month -= month % StorageVars.SEGMENT_MONTHS;
+
+		// the first month of the segment, like 2014-09
+		StringBuilder key = new StringBuilder();
+		key.append(month / MONTHS_PER_YEAR);
+		key.append('-');
+		int monthOfYear = month % MONTHS_PER_YEAR + 1;
+		if (monthOfYear < 10) {
+			key.append('0');
+		}
+		key.append(monthOfYear);
+		return key.toString();
+	}
+
+	private TreeSet<String> getSegmentKeys() {
+		TreeSet<String> keys = new TreeSet<String>();
+		File file = new File(mFilename).getAbsoluteFile();
+		String prefix = file.getName() + StorageStrings.SEGMENT_SUFFIX;
+		String[] names = file.getParentFile().list();
+		if (names == null) {
+			return keys;
+		}
+		for (String name : names) {
+			// temp and damaged segments have another dot
+			if (name.startsWith(prefix) && name.indexOf(DOT, prefix.length()) == -1) {
+				keys.add(name.substring(prefix.length()));
+			}
+		}
+		return keys;
+	}
+
+	private String getSegmentFilename(String key) {
+		return mFilename + StorageStrings.SEGMENT_SUFFIX + key;
+	}
+
+	private boolean isSame(List<ItemData> saved, List<ItemData> items) {
+		if (saved == null || saved.size() != items.size()) {
+			return false;
+		}
+		for (int i = 0; i < items.size(); i++) {
+			if (saved.get(i) != items.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writeSegment(String key, ArrayList<ItemData> items) throws IOException {
+		String filename = getSegmentFilename(key);
+		String tempFilename = filename + StorageStrings.TEMP_SUFFIX;
+		FileOutputStream stream = new FileOutputStream(tempFilename);
+		try {
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+			for (ItemData item : items) {
+				mEncoder.write(item, writer);
+				writer.newLine();
+			}
+			writer.write(SegmentSummary.of(items).toString());
+			writer.newLine();
+			FileManager.writeFooter(writer, items.size());
+			writer.flush();
+			stream.getFD().sync();
+		} finally {
+			stream.close();
+		}
+		FileManager.move(new File(tempFilename).toPath(), new File(filename).toPath());
+	}
+
+	private ArrayList<ItemData> readSegmentForQuery(String key)
+			throws ReadingFromStorageException, IOException {
+		mSegmentsRead++;
+		return readSegment(getSegmentFilename(key));
+	}
+
+	private ArrayList<ItemData> readSegment(String filename)
+			throws ReadingFromStorageException, IOException {
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(filename), UTF_8));
+		TextRecordReader records = new TextRecordReader();
+		boolean hasSummary = false;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(StorageStrings.SEGMENT_HEADER)) {
+					hasSummary = true;
+				} else {
+					records.readLine(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if (!hasSummary) {
+			throw new ReadingFromStorageException("segment has no summary: " + filename);
+		}
+		return TextRecordReader.collect(Collections.singletonList(records), true);
+	}
+
+	private SegmentSummary readSummary(String key) throws IOException {
+		// the summary is the line before the footer, at the end of the file
+		RandomAccessFile file = new RandomAccessFile(getSegmentFilename(key), "r");
+		try {
+			long length = file.length();
+			int tailLength = TAIL_BYTES;
+			while (true) {
+				int start = (int) Math.max(0, length - tailLength);
+				byte[] tail = new byte[(int) (length - start)];
+				file.seek(start);
+				file.readFully(tail);
+				// the summary and footer are ascii, the records before may not be
+				String text = new String(tail, LATIN_1);
+				int lineStart = text.lastIndexOf(NEW_LINE + StorageStrings.SEGMENT_HEADER);
+				if (lineStart != -1) {
+					return readSummaryLine(text, lineStart + 1);
+				}
+				if (start == 0) {
+					return text.startsWith(StorageStrings.SEGMENT_HEADER)
+							? readSummaryLine(text, 0)
+							: null;
+				}
+				tailLength *= 2;
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	private SegmentSummary readSummaryLine(String text, int lineStart) {
+		int lineEnd = text.indexOf(NEW_LINE, lineStart);
+		if (lineEnd == -1) {
+			// a segment without its footer is not whole
+			return null;
+		}
+		String line = text.substring(lineStart, lineEnd).trim();
+		return SegmentSummary.fromString(line);
+	}
+
+	private boolean hasTag(ItemData item, String tag) {
+		ArrayList<String> tags = item.getTags();
+		if (tags == null) {
+			return false;
+		}
+		for (String itemTag : tags) {
+			if (itemTag.equalsIgnoreCase(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private ArrayList<String> getWords(ItemData item) {
+		ArrayList<String> words = new ArrayList<String>();
+		if (item.getTitle() != null) {
+			words.addAll(SearchIndex.tokenize(item.getTitle()));
+		}
+		ArrayList<String> tags = item.getTags();
+		if (tags != null) {
+			for (String tag : tags) {
+				words.addAll(SearchIndex.tokenize(tag));
+			}
+		}
+		return words;
+	}
+}
@@ -0,0 +1,200 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import udo.constants.Constants.StorageStrings;
+import udo.data.EpochTime;
+import udo.data.ItemData;
+import udo.enums.ItemType;
+
+/**
+ * This class sums up the items of one segment file, so that a query can
+ * tell from it whether the segment is worth reading at all.<br>
+ * It holds the number of items, how many are done and not done, the first
+ * and last day any item is on, the highest uid, and bloom filters over the
+ * hashtags and the words of the titles. It is written as the line before
+ * the footer of the segment:<br>
+ * SEGMENT|||count|||done|||undone|||first day|||last day|||max uid|||tags|||words|||;
+ */
+public class SegmentSummary {
+
+	/** the first and last day of a segment without dated items */
+	public static final long NO_DAY = Long.MIN_VALUE;
+
+	private static final String LINE_START =
+			StorageStrings.SEGMENT_HEADER + StorageStrings.FIELD_SEPARATOR;
+	private static final int FIELD_COUNT = 9;
+
+	private int mCount;
+	private int mDoneCount;
+	private int mUndoneCount;
+	private long mFirstDay;
+	private long mLastDay;
+	private int mMaxUID;
+	private BloomFilter mTags;
+	private BloomFilter mWords;
+
+	private SegmentSummary() {
+	}
+
+	/**
+	 * sums up a list of items
+	 *
+	 * @param items the items of the segment
+	 * @return the summary
+	 */
+	public static SegmentSummary of(List<ItemData> items) {
+		SegmentSummary summary = new SegmentSummary();
+		summary.mCount = items.size();
+		summary.mFirstDay = NO_DAY;
+		summary.mLastDay = NO_DAY;
+		summary.mTags = new BloomFilter(items.size());
+		summary.mWords = new BloomFilter(items.size() * 2);
+		for (ItemData item : items) {
+			summary.add(item);
+		}
+		return summary;
+	}
+
+	/**
+	 * reads a summary line
+	 *
+	 * @param line the line
+	 * @return the summary, or null if the line is not a whole summary
+	 */
+	public static SegmentSummary fromString(String line) {
+		if (!line.startsWith(LINE_START) || !line.endsWith(StorageStrings.RECORD_END)) {
+			return null;
+		}
+		String[] fields = line.split(StorageStrings.FIELD_DELIMITER);
+		if (fields.length < FIELD_COUNT) {
+			return null;
+		}
+		SegmentSummary summary = new SegmentSummary();
+		try {
+			summary.mCount = Integer.parseInt(fields[1]);
+			summary.mDoneCount = Integer.parseInt(fields[2]);
+			summary.mUndoneCount = Integer.parseInt(fields[3]);
+			summary.mFirstDay = Long.parseLong(fields[4]);
+			summary.mLastDay = Long.parseLong(fields[5]);
+			summary.mMaxUID = Integer.parseInt(fields[6]);
+			summary.mTags = BloomFilter.fromString(fields[7]);
+			summary.mWords = BloomFilter.fromString(fields[8]);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return summary;
+	}
+
+	@Override
+	public String toString() {
+		String separator = StorageStrings.FIELD_SEPARATOR;
+		return LINE_START + mCount + separator + mDoneCount + separator
+				+ mUndoneCount + separator + mFirstDay + separator
+				+ mLastDay + separator + mMaxUID + separator
+				+ mTags + separator + mWords + separator
+				+ StorageStrings.RECORD_END;
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	public int getDoneCount() {
+		return mDoneCount;
+	}
+
+	public int getUndoneCount() {
+		return mUndoneCount;
+	}
+
+	public int getMaxUID() {
+		return mMaxUID;
+	}
+
+	/**
+	 * checks if an item of the segment may be on a day between two days
+	 *
+	 * @param fromDay the first day
+	 * @param toDay the last day
+	 * @return false if no item of the segment is on any of the days
+	 */
+	public boolean mightHaveDays(long fromDay, long toDay) {
+		return mFirstDay != NO_DAY && mFirstDay <= toDay && fromDay <= mLastDay;
+	}
+
+	/**
+	 * @param tag the hashtag, in any case
+	 * @return false if no item of the segment has the hashtag
+	 */
+	public boolean mightHaveTag(String tag) {
+		return mTags.mightContain(tag.toLowerCase());
+	}
+
+	/**
+	 * checks if an item of the segment may have all the words
+	 * in its title or hashtags
+	 *
+	 * @param words the words, in lower case
+	 * @return false if no item of the segment can have all the words
+	 */
+	public boolean mightHaveWords(List<String> words) {
+		for (String word : words) {
+			if (!mWords.mightContain(word)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void add(ItemData item) {
+		if (item.hasDone() && item.getItemType() != ItemType.EVENT) {
+			if (item.isDone()) {
+				mDoneCount++;
+			} else {
+				mUndoneCount++;
+			}
+		}
+		if (item.getUID() > mMaxUID) {
+			mMaxUID = item.getUID();
+		}
+		addDays(item);
+
+		String title = item.getTitle();
+		if (title != null) {
+			for (String word : SearchIndex.tokenize(title)) {
+				mWords.add(word);
+			}
+		}
+		ArrayList<String> tags = item.getTags();
+		if (tags != null) {
+			for (String tag : tags) {
+				mTags.add(tag.toLowerCase());
+				for (String word : SearchIndex.tokenize(tag)) {
+					mWords.add(word);
+				}
+			}
+		}
+	}
+
+	private void addDays(ItemData item) {
+		long start = item.getItemType() == ItemType.EVENT ? item.getStart() : item.getDue();
+		if (start == ItemData.NO_TIME) {
+			return;
+		}
+		long end = item.getItemType() == ItemType.EVENT ? item.getEnd() : start;
+		if (end == ItemData.NO_TIME) {
+			end = start;
+		}
+		long startDay = EpochTime.getDay(start);
+		long endDay = EpochTime.getDay(end);
+		if (mFirstDay == NO_DAY || startDay < mFirstDay) {
+			mFirstDay = startDay;
+		}
+		if (mLastDay == NO_DAY || endDay > mLastDay) {
+			mLastDay = endDay;
+		}
+	}
+}
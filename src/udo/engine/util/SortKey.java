@@ -0,0 +1,123 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import udo.data.ItemData;
+
+/**
+ * This class is the key that the cache keeps its items sorted by.<br>
+ * Items are ordered by their start (events) or due (tasks) time, then by
+ * their uid. Items without a date (plans) come after all items with a date.
+ * This is the same order as ItemData.compareTo(), with the uid breaking ties,
+ * so every item has its own place in the order.<br>
+ * The key is worked out once when the item goes into a sorted map, so
+ * keeping the maps sorted never has to look inside the items again.
+ */
+public class SortKey implements Comparable<SortKey> {
+
+	private static final long NO_DATE = Long.MAX_VALUE;
+
+	private final long mTime;
+	private final int mUID;
+
+	public SortKey(ItemData item) {
+		long time = item.getSortTime();
+		if (time == ItemData.NO_TIME) {
+			mTime = NO_DATE;
+		} else {
+			mTime = time;
+		}
+		mUID = item.getUID();
+	}
+
+	@Override
+	public int compareTo(SortKey other) {
+		if (mTime != other.mTime) {
+			return mTime < other.mTime ? -1 : 1;
+		}
+		return Integer.compare(mUID, other.mUID);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof SortKey)) {
+			return false;
+		}
+		SortKey otherKey = (SortKey) other;
+		return mTime == otherKey.mTime && mUID == otherKey.mUID;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * mUID + (int) (mTime ^ (mTime >>> 32));
+	}
+
+	/**
+	 * merges lists of items that are each already sorted into one sorted
+	 * list. an item that is in more than one list is only added once.
+	 *
+	 * @param sources the sorted lists of items
+	 * @return the merged list
+	 */
+	public static ArrayList<ItemData> merge(ArrayList<? extends Iterable<ItemData>> sources) {
+		ArrayList<ItemData> result = new ArrayList<ItemData>();
+		PriorityQueue<Head> heads = new PriorityQueue<Head>(Math.max(1, sources.size()));
+		for (Iterable<ItemData> source : sources) {
+			Head head = new Head(source.iterator());
+			if (head.mItem != null) {
+				heads.add(head);
+			}
+		}
+
+		SortKey lastKey = null;
+		while (!heads.isEmpty()) {
+			Head head = heads.poll();
+			// the same item has the same key, so copies come one after another
+			if (!head.mKey.equals(lastKey)) {
+				result.add(head.mItem);
+				lastKey = head.mKey;
+			}
+			if (head.next()) {
+				heads.add(head);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * the next item of one of the lists being merged
+	 */
+	private static class Head implements Comparable<Head> {
+		private Iterator<ItemData> mIterator;
+		private ItemData mItem;
+		private SortKey mKey;
+
+		public Head(Iterator<ItemData> iterator) {
+			mIterator = iterator;
+			next();
+		}
+
+		public boolean next() {
+			if (mIterator.hasNext()) {
+				mItem = mIterator.next();
+				mKey = new SortKey(mItem);
+				return true;
+			} else {
+				mItem = null;
+				mKey = null;
+				return false;
+			}
+		}
+
+		@Override
+		public int compareTo(Head other) {
+			return mKey.compareTo(other.mKey);
+		}
+	}
+}
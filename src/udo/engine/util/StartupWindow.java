@@ -0,0 +1,106 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+
+import udo.data.EpochTime;
+import udo.data.ItemData;
+import udo.enums.ItemType;
+
+/**
+ * This class is a range of days around the time the items were saved,
+ * with the items in it. Each save also writes the items of the coming days
+ * to a small window file, so that the next start can show the today and
+ * todo panels from it without reading every item first.<br>
+ * Days are counted in local days since the epoch, see EpochTime.getDay().
+ * Both the first and the last day are in the window.
+ */
+public class StartupWindow {
+
+	private long mFromDay;
+	private long mToDay;
+	private int mMaxUID;
+	private ArrayList<ItemData> mItems;
+
+	public StartupWindow(long fromDay, long toDay) {
+		mFromDay = fromDay;
+		mToDay = toDay;
+		mMaxUID = 0;
+		mItems = new ArrayList<ItemData>();
+	}
+
+	/**
+	 * makes a window of days starting on the day of a time
+	 *
+	 * @param millis the time the window starts on
+	 * @param days the number of days in the window
+	 * @return the window, with no items yet
+	 */
+	public static StartupWindow startingAt(long millis, int days) {
+		long fromDay = EpochTime.getDay(millis);
+		return new StartupWindow(fromDay, fromDay + days - 1);
+	}
+
+	public long getFromDay() {
+		return mFromDay;
+	}
+
+	public long getToDay() {
+		return mToDay;
+	}
+
+	/**
+	 * @return the highest uid of all the saved items, not just of the window
+	 */
+	public int getMaxUID() {
+		return mMaxUID;
+	}
+
+	public void setMaxUID(int uid) {
+		mMaxUID = uid;
+	}
+
+	public ArrayList<ItemData> getItems() {
+		return mItems;
+	}
+
+	/**
+	 * checks if every day from one day to another is in the window
+	 *
+	 * @param fromDay the first day
+	 * @param toDay the last day
+	 * @return true if all the days are in the window
+	 */
+	public boolean covers(long fromDay, long toDay) {
+		return mFromDay <= fromDay && toDay <= mToDay;
+	}
+
+	/**
+	 * checks if an item is on any day of the window.
+	 * events are on every day from their start to their end,
+	 * tasks are on the day they are due, plans are on no day.
+	 *
+	 * @param item the item
+	 * @return true if the item is in the window
+	 */
+	public boolean contains(ItemData item) {
+		long start;
+		long end;
+		if (item.getItemType() == ItemType.EVENT) {
+			start = item.getStart();
+			end = item.getEnd();
+		} else if (item.getItemType() == ItemType.TASK) {
+			start = item.getDue();
+			end = start;
+		} else {
+			return false;
+		}
+		if (start == ItemData.NO_TIME) {
+			return false;
+		}
+		if (end == ItemData.NO_TIME) {
+			end = start;
+		}
+		return EpochTime.getDay(start) <= mToDay && EpochTime.getDay(end) >= mFromDay;
+	}
+}
@@ -0,0 +1,144 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import udo.data.ItemData;
+
+/**
+ * This class maps hashtag ids (see TagDictionary) to the items that have them.<br>
+ * The ids are small numbers given out one after another, so the posting
+ * lists are kept in a list at the index of their id, and finding one is an
+ * array lookup with no hashing of strings. Each posting list is kept sorted
+ * by SortKey, so the results come out sorted. An id that is not in the
+ * dictionary (TagDictionary.NO_ID) has no items.
+ */
+public class TagIndex {
+
+	private ArrayList<TreeMap<SortKey, ItemData>> mPostings;
+
+	public TagIndex() {
+		mPostings = new ArrayList<TreeMap<SortKey, ItemData>>();
+	}
+
+	/**
+	 * adds an item to the posting list of each of its hashtags
+	 *
+	 * @param item the item to add
+	 * @param ids the hashtag ids of the item, or null
+	 */
+	public void add(ItemData item, int[] ids) {
+		if (ids == null) {
+			return;
+		}
+		SortKey sortKey = new SortKey(item);
+		for (int id : ids) {
+			while (mPostings.size() <= id) {
+				mPostings.add(null);
+			}
+			TreeMap<SortKey, ItemData> posting = mPostings.get(id);
+			if (posting == null) {
+				posting = new TreeMap<SortKey, ItemData>();
+				mPostings.set(id, posting);
+			}
+			posting.put(sortKey, item);
+		}
+	}
+
+	/**
+	 * removes an item from the posting list of each of its hashtags.
+	 * the ids must be the same as the ones the item was added with.
+	 *
+	 * @param item the item to remove
+	 * @param ids the hashtag ids of the item, or null
+	 */
+	public void remove(ItemData item, int[] ids) {
+		if (ids == null) {
+			return;
+		}
+		SortKey sortKey = new SortKey(item);
+		for (int id : ids) {
+			TreeMap<SortKey, ItemData> posting = getPosting(id);
+			if (posting != null) {
+				posting.remove(sortKey);
+				if (posting.isEmpty()) {
+					mPostings.set(id, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns the number of items that have the hashtag
+	 *
+	 * @param id the hashtag id
+	 * @return the number of items with the hashtag
+	 */
+	public int count(int id) {
+		TreeMap<SortKey, ItemData> posting = getPosting(id);
+		if (posting == null) {
+			return 0;
+		}
+		return posting.size();
+	}
+
+	/**
+	 * returns the items that have the hashtag, sorted.
+	 *
+	 * @param id the hashtag id
+	 * @return the items with the hashtag
+	 */
+	public ArrayList<ItemData> getItemsWith(int id) {
+		TreeMap<SortKey, ItemData> posting = getPosting(id);
+		if (posting == null) {
+			return new ArrayList<ItemData>();
+		}
+		return new ArrayList<ItemData>(posting.values());
+	}
+
+	/**
+	 * returns the items that have every one of the hashtags (intersection),
+	 * sorted.
+	 *
+	 * @param ids the hashtag ids
+	 * @return the items with all the hashtags
+	 */
+	public ArrayList<ItemData> getItemsWithAll(int[] ids) {
+		return Postings.intersect(getPostings(ids));
+	}
+
+	/**
+	 * returns the items that have at least one of the hashtags (union),
+	 * sorted.
+	 *
+	 * @param ids the hashtag ids
+	 * @return the items with any of the hashtags, each item only once
+	 */
+	public ArrayList<ItemData> getItemsWithAny(int[] ids) {
+		return Postings.union(getPostings(ids));
+	}
+
+	/**
+	 * removes all the items from the index
+	 */
+	public void clear() {
+		mPostings.clear();
+	}
+
+	private TreeMap<SortKey, ItemData> getPosting(int id) {
+		if (id < 0 || id >= mPostings.size()) {
+			return null;
+		}
+		return mPostings.get(id);
+	}
+
+	private ArrayList<TreeMap<SortKey, ItemData>> getPostings(int[] ids) {
+		ArrayList<TreeMap<SortKey, ItemData>> postings =
+				new ArrayList<TreeMap<SortKey, ItemData>>(ids.length);
+		for (int id : ids) {
+			postings.add(getPosting(id));
+		}
+		return postings;
+	}
+}
@@ -0,0 +1,151 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import udo.constants.Constants.StorageStrings;
+import udo.data.ItemData;
+import udo.exceptions.ReadingFromStorageException;
+
+/**
+ * This class reads the lines of a text storage file, or of one part of it,
+ * into items and checks that they are whole.<br>
+ * A file can be read in parts by one reader each. collect() then puts the
+ * items of the parts together in order and checks the footer of the file
+ * against the number of items before it.
+ */
+public class TextRecordReader {
+
+	private static final String FOOTER_START =
+			StorageStrings.FOOTER + StorageStrings.FIELD_SEPARATOR;
+	private static final int NO_FOOTER = -1;
+
+	private RecordDecoder mDecoder;
+	private ArrayList<ItemData> mItems;
+	private int mFooterCount;
+	private int mItemsBeforeFooter;
+	private boolean mHasItemsAfterFooter;
+
+	public TextRecordReader() {
+		this(new ArrayList<ItemData>());
+	}
+
+	/**
+	 * lets you give the list to put the items in
+	 *
+	 * @param items the list to add the items to
+	 */
+	public TextRecordReader(ArrayList<ItemData> items) {
+		mDecoder = new RecordDecoder();
+		mItems = items;
+		mFooterCount = NO_FOOTER;
+	}
+
+	/**
+	 * reads one line of the file
+	 *
+	 * @param line the line, without the line break
+	 * @throws ReadingFromStorageException if the line is not a whole record
+	 */
+	public void readLine(String line) throws ReadingFromStorageException {
+		if (line.isEmpty()) {
+			return;
+		}
+		if (line.startsWith(FOOTER_START)) {
+			readFooter(line);
+			return;
+		}
+		if (hasFooter()) {
+			mHasItemsAfterFooter = true;
+		}
+		// a line cut short by a crash has no record end
+		if (!line.endsWith(StorageStrings.RECORD_END)) {
+			throw new ReadingFromStorageException("unfinished record: " + line);
+		}
+		try {
+			mItems.add(mDecoder.decode(line));
+		} catch (NumberFormatException e) {
+			throw new ReadingFromStorageException("damaged record: " + line, e);
+		}
+	}
+
+	public ArrayList<ItemData> getItems() {
+		return mItems;
+	}
+
+	public boolean hasFooter() {
+		return mFooterCount != NO_FOOTER;
+	}
+
+	/**
+	 * puts together the items read by the readers of the parts of a file
+	 *
+	 * @param parts the readers of the parts, in the order of the file
+	 * @param needsFooter true if a file without a footer is not whole
+	 * @return the items of the file
+	 * @throws ReadingFromStorageException if the footer is missing or wrong
+	 */
+	public static ArrayList<ItemData> collect(List<TextRecordReader> parts, boolean needsFooter)
+			throws ReadingFromStorageException {
+		int size = 0;
+		for (TextRecordReader part : parts) {
+			size += part.mItems.size();
+		}
+
+		ArrayList<ItemData> items;
+		if (parts.size() == 1) {
+			items = parts.get(0).mItems;
+		} else {
+			items = new ArrayList<ItemData>(size);
+		}
+		TextRecordReader footerPart = null;
+		int itemsBeforeFooter = 0;
+		int itemsRead = 0;
+		for (TextRecordReader part : parts) {
+			if (footerPart != null && !part.mItems.isEmpty()) {
+				throw new ReadingFromStorageException("items after the footer");
+			}
+			if (part.hasFooter()) {
+				if (footerPart != null || part.mHasItemsAfterFooter) {
+					throw new ReadingFromStorageException("items after the footer");
+				}
+				footerPart = part;
+				itemsBeforeFooter = itemsRead + part.mItemsBeforeFooter;
+			}
+			itemsRead += part.mItems.size();
+			if (items != part.mItems) {
+				items.addAll(part.mItems);
+			}
+		}
+
+		if (footerPart == null) {
+			if (needsFooter) {
+				throw new ReadingFromStorageException("no footer");
+			}
+		} else if (footerPart.mFooterCount != itemsBeforeFooter) {
+			throw new ReadingFromStorageException("wrong number of items: "
+					+ footerPart.mFooterCount + " in footer, "
+					+ itemsBeforeFooter + " read");
+		}
+		return items;
+	}
+
+	private void readFooter(String line) throws ReadingFromStorageException {
+		// END|||count|||;
+		if (hasFooter()) {
+			throw new ReadingFromStorageException("two footers");
+		}
+		int end = line.indexOf(StorageStrings.FIELD_SEPARATOR, FOOTER_START.length());
+		try {
+			mFooterCount = Integer.parseInt(line.substring(FOOTER_START.length(),
+					end == -1 ? line.length() : end));
+		} catch (NumberFormatException e) {
+			throw new ReadingFromStorageException("damaged footer: " + line, e);
+		}
+		if (mFooterCount < 0) {
+			throw new ReadingFromStorageException("damaged footer: " + line);
+		}
+		mItemsBeforeFooter = mItems.size();
+	}
+}
@@ -0,0 +1,91 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import udo.data.ItemData;
+
+/**
+ * This class indexes the titles and hashtags of items by their trigrams
+ * (every run of three characters, in lower case).<br>
+ * Any item whose title or hashtag contains a query string must have all of
+ * the trigrams of the query, so intersecting the posting lists of those
+ * trigrams gives a short list of candidates that only need to be checked.
+ * Queries shorter than a trigram cannot be narrowed down this way.
+ */
+public class TrigramIndex {
+
+	private static final int GRAM_LENGTH = 3;
+
+	private InvertedIndex mGrams;
+
+	public TrigramIndex() {
+		mGrams = new InvertedIndex();
+	}
+
+	/**
+	 * adds an item under the trigrams of its title and hashtags
+	 *
+	 * @param item the item to add
+	 */
+	public void add(ItemData item) {
+		mGrams.add(item, getItemGrams(item));
+	}
+
+	/**
+	 * removes an item from the index.
+	 * the title and hashtags must be the same as when it was added.
+	 *
+	 * @param item the item to remove
+	 */
+	public void remove(ItemData item) {
+		mGrams.remove(item, getItemGrams(item));
+	}
+
+	/**
+	 * returns the items that may contain the query in their title or hashtags.
+	 * every item that does contain the query is in the list,
+	 * but some items in the list may not contain it.
+	 *
+	 * @param query the query in lower case
+	 * @return the candidate items, or null if the query is too short to narrow
+	 *         the items down, in which case every item is a candidate
+	 */
+	public ArrayList<ItemData> getCandidates(String query) {
+		if (query.length() < GRAM_LENGTH) {
+			return null;
+		}
+		HashSet<String> grams = new HashSet<String>();
+		addGrams(grams, query);
+		return mGrams.getItemsWithAll(grams);
+	}
+
+	/**
+	 * removes all the items from the index
+	 */
+	public void clear() {
+		mGrams.clear();
+	}
+
+	private HashSet<String> getItemGrams(ItemData item) {
+		HashSet<String> grams = new HashSet<String>();
+		String title = item.getTitle();
+		if (title != null) {
+			addGrams(grams, title.toLowerCase());
+		}
+		ArrayList<String> tags = item.getTags();
+		if (tags != null) {
+			for (String tag : tags) {
+				addGrams(grams, tag.toLowerCase());
+			}
+		}
+		return grams;
+	}
+
+	private void addGrams(HashSet<String> grams, String str) {
+		for (int i = 0; i + GRAM_LENGTH <= str.length(); i++) {
+			grams.add(str.substring(i, i + GRAM_LENGTH));
+		}
+	}
+}
@@ -0,0 +1,55 @@
+//@author A0108358B
+package udo.engine.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class hands out uids for new items.<br>
+ * Uids are given out in increasing order from a counter, so getting one
+ * takes constant time no matter how many items there are, and is safe to do
+ * from several threads at once.<br>
+ * Uids are never reused, even after the item is deleted, so that an undone
+ * delete can put the item back under its old uid. Items loaded from the file
+ * keep their uids, and the counter is moved past them with reserve(), so
+ * new uids never clash with saved ones.
+ */
+public class UIDAllocator {
+
+	private static final int FIRST_UID = 1;
+
+	private AtomicInteger mNext;
+
+	public UIDAllocator() {
+		mNext = new AtomicInteger(FIRST_UID);
+	}
+
+	/**
+	 * returns a uid that has not been given out or reserved before
+	 *
+	 * @return a new uid
+	 */
+	public int allocate() {
+		int uid = mNext.getAndIncrement();
+		if (uid < FIRST_UID) {
+			// the counter went past the largest int
+			throw new IllegalStateException("no more uids");
+		}
+		return uid;
+	}
+
+	/**
+	 * marks a uid as taken, e.g. by an item loaded from the file,
+	 * so that it is never given out by allocate()
+	 *
+	 * @param uid the uid that is taken
+	 */
+	public void reserve(int uid) {
+		int next = mNext.get();
+		while (uid >= next) {
+			if (mNext.compareAndSet(next, uid + 1)) {
+				return;
+			}
+			next = mNext.get();
+		}
+	}
+}
@@ -8,6 +8,7 @@ import udo.data.OutputData;
 import udo.engine.util.Cache;
 import udo.engine.util.UndoBin;
 import udo.enums.Command;
+import udo.enums.DataKey;
 import udo.enums.ExecutionStatus;
 import udo.enums.ItemType;
 import udo.enums.ParsingStatus;
@@ -81,7 +82,7 @@ public class RunnerDelete extends Runner {
 		
 		// copy the data in the item to the inputdata.
 		// so that the add command can add like it came from the parser
-		for (String key : item.getKeys()) {
+		for (DataKey key : item.getKeys()) {
 			undoInput.put(key, item.get(key));
 		}
 		
@@ -42,6 +42,8 @@ public class RunnerDone extends Runner {
 						ExecutionStatus.FAIL);
 			}
 			
+			// mark a copy so that the cache can update its indexes
+			itemToMark = itemToMark.copy();
 			switch (cmd) {
 				case MARK_DONE :
 					markDone(itemToMark);
@@ -54,6 +56,7 @@ public class RunnerDone extends Runner {
 				default:
 					break;
 			}
+			mCache.updateItem(itemToMark);
 			
 			OutputData output = new OutputData(cmd,
 					ParsingStatus.SUCCESS,
@@ -4,6 +4,7 @@ package udo.engine.util.runners;
 import java.util.Calendar;
 
 import udo.constants.Constants.Keys;
+import udo.data.EpochTime;
 import udo.data.InputData;
 import udo.data.ItemData;
 import udo.data.OutputData;
@@ -28,7 +29,8 @@ public class RunnerEdit extends Runner {
 	public OutputData run() {
 		int uid = (int) mInput.get(Keys.UID);
 		try {
-			ItemData itemToEdit = mCache.getItem(uid);
+			// edit a copy so that the cache can update its indexes
+			ItemData itemToEdit = mCache.getItem(uid).copy();
 			Object value = mInput.get(Keys.VALUE);
 			OutputData output;
 
@@ -67,6 +69,10 @@ public class RunnerEdit extends Runner {
 							ExecutionStatus.FAIL);
 			}
 			
+			if (output.getExecutionStatus() == ExecutionStatus.SUCCESS) {
+				mCache.updateItem(itemToEdit);
+			}
+			
 			output.put(Keys.ITEM, itemToEdit);
 			output.put(Keys.FIELD, field);
 			
@@ -91,9 +97,9 @@ public class RunnerEdit extends Runner {
 	}
 
 	private OutputData runEditTitle(ItemData item, String title) {
-		String oldTitle = (String) item.get(Keys.TITLE);
-		item.put(Keys.TITLE, title);
-		int uid = (int) item.get(Keys.UID);
+		String oldTitle = item.getTitle();
+		item.setTitle(title);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.TITLE, oldTitle);
 		
 		OutputData output = new OutputData(Command.EDIT, 
@@ -110,10 +116,10 @@ public class RunnerEdit extends Runner {
 					ParsingStatus.SUCCESS,
 					ExecutionStatus.FAIL);
 		}
-		Calendar startCal = (Calendar) item.get(Keys.START);
-		Calendar calToStore = (Calendar) startCal.clone();
-		setTime(startCal, timeCal);
-		int uid = (int) item.get(Keys.UID);
+		long oldStart = item.getStart();
+		item.setStart(EpochTime.combine(oldStart, timeCal.getTimeInMillis()));
+		Calendar calToStore = EpochTime.toCalendar(oldStart);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.START_TIME, calToStore);
 		OutputData output = new OutputData(Command.EDIT, 
 				ParsingStatus.SUCCESS,
@@ -128,10 +134,10 @@ public class RunnerEdit extends Runner {
 					ParsingStatus.SUCCESS,
 					ExecutionStatus.FAIL);
 		}
-		Calendar endCal = (Calendar) item.get(Keys.END);
-		Calendar calToStore = (Calendar) endCal.clone();
-		setTime(endCal, timeCal);
-		int uid = (int) item.get(Keys.UID);
+		long oldEnd = item.getEnd();
+		item.setEnd(EpochTime.combine(oldEnd, timeCal.getTimeInMillis()));
+		Calendar calToStore = EpochTime.toCalendar(oldEnd);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.END_TIME, calToStore);
 		OutputData output = new OutputData(Command.EDIT, 
 				ParsingStatus.SUCCESS,
@@ -146,10 +152,10 @@ public class RunnerEdit extends Runner {
 					ParsingStatus.SUCCESS,
 					ExecutionStatus.FAIL);
 		}
-		Calendar dueCal = (Calendar) item.get(Keys.START);
-		Calendar calToStore = (Calendar) dueCal.clone();
-		setDate(dueCal, dateCal);
-		int uid = (int) item.get(Keys.UID);
+		long oldStart = item.getStart();
+		item.setStart(EpochTime.combine(dateCal.getTimeInMillis(), oldStart));
+		Calendar calToStore = EpochTime.toCalendar(oldStart);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.START_DATE, calToStore);
 		OutputData output = new OutputData(Command.EDIT, 
 				ParsingStatus.SUCCESS,
@@ -164,10 +170,10 @@ public class RunnerEdit extends Runner {
 					ParsingStatus.SUCCESS,
 					ExecutionStatus.FAIL);
 		}
-		Calendar dueCal = (Calendar) item.get(Keys.END);
-		Calendar calToStore = (Calendar) dueCal.clone();
-		setDate(dueCal, dateCal);
-		int uid = (int) item.get(Keys.UID);
+		long oldEnd = item.getEnd();
+		item.setEnd(EpochTime.combine(dateCal.getTimeInMillis(), oldEnd));
+		Calendar calToStore = EpochTime.toCalendar(oldEnd);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.END_DATE, calToStore);
 		OutputData output = new OutputData(Command.EDIT, 
 				ParsingStatus.SUCCESS,
@@ -182,10 +188,10 @@ public class RunnerEdit extends Runner {
 					ParsingStatus.SUCCESS,
 					ExecutionStatus.FAIL);
 		}
-		Calendar dueCal = (Calendar) item.get(Keys.DUE);
-		Calendar calToStore = (Calendar) dueCal.clone();
-		setTime(dueCal, timeCal);
-		int uid = (int) item.get(Keys.UID);
+		long oldDue = item.getDue();
+		item.setDue(EpochTime.combine(oldDue, timeCal.getTimeInMillis()));
+		Calendar calToStore = EpochTime.toCalendar(oldDue);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.DUE_TIME, calToStore);
 		OutputData output = new OutputData(Command.EDIT, 
 				ParsingStatus.SUCCESS,
@@ -200,10 +206,10 @@ public class RunnerEdit extends Runner {
 					ParsingStatus.SUCCESS,
 					ExecutionStatus.FAIL);
 		}
-		Calendar dueCal = (Calendar) item.get(Keys.DUE);
-		Calendar calToStore = (Calendar) dueCal.clone();
-		setDate(dueCal, dateCal);
-		int uid = (int) item.get(Keys.UID);
+		long oldDue = item.getDue();
+		item.setDue(EpochTime.combine(dateCal.getTimeInMillis(), oldDue));
+		Calendar calToStore = EpochTime.toCalendar(oldDue);
+		int uid = item.getUID();
 		storeUndo(uid, EditField.DUE_DATE, calToStore);
 		OutputData output = new OutputData(Command.EDIT, 
 				ParsingStatus.SUCCESS,
@@ -212,20 +218,6 @@ public class RunnerEdit extends Runner {
 		return output;
 	}
 
-	private OutputData setTime(Calendar itemCal, Calendar timeCal) {
-		itemCal.set(Calendar.HOUR_OF_DAY, timeCal.get(Calendar.HOUR_OF_DAY));
-		itemCal.set(Calendar.MINUTE, timeCal.get(Calendar.MINUTE));
-		return new OutputData(Command.EDIT, 
-				ParsingStatus.SUCCESS,
-				ExecutionStatus.SUCCESS);
-	}
-
-	private void setDate(Calendar itemCal, Calendar dateCal) {
-		itemCal.set(Calendar.YEAR, dateCal.get(Calendar.YEAR));
-		itemCal.set(Calendar.MONTH, dateCal.get(Calendar.MONTH));
-		itemCal.set(Calendar.DAY_OF_MONTH, dateCal.get(Calendar.DAY_OF_MONTH));
-	}
-
 	private void storeUndo(int uid, EditField field, Object oldValue) {
 		InputData undoInput = new InputData(Command.EDIT, ParsingStatus.SUCCESS);
 		undoInput.put(Keys.UID, uid);
@@ -47,6 +47,18 @@ public class RunnerList extends Runner {
 					result = mCache.getAllItemsWithHashtag(hashtag);
 					output.put(Keys.QUERY_VALUE, hashtag);
 					break;
+					
+				case ALL_HASHTAGS :
+					ArrayList<String> allTags = getTags(mInput);
+					result = mCache.getAllItemsWithAllHashtags(allTags);
+					output.put(Keys.QUERY_VALUE, allTags);
+					break;
+					
+				case ANY_HASHTAG :
+					ArrayList<String> anyTags = getTags(mInput);
+					result = mCache.getAllItemsWithAnyHashtag(anyTags);
+					output.put(Keys.QUERY_VALUE, anyTags);
+					break;
 
 				case DATE :
 					Calendar dateCal = (Calendar) mInput.get(Keys.QUERY_VALUE);
@@ -54,6 +66,14 @@ public class RunnerList extends Runner {
 					output.put(Keys.QUERY_VALUE, dateCal);
 					break;
 					
+				case DATE_RANGE :
+					Calendar fromCal = (Calendar) mInput.get(Keys.QUERY_VALUE);
+					Calendar toCal = (Calendar) mInput.get(Keys.QUERY_END_VALUE);
+					result = mCache.getAllItemsBetween(fromCal, toCal);
+					output.put(Keys.QUERY_VALUE, fromCal);
+					output.put(Keys.QUERY_END_VALUE, toCal);
+					break;
+					
 				case EVENT :
 					result = mCache.getAllEvents();
 					break;
@@ -79,5 +99,10 @@ public class RunnerList extends Runner {
 
 		return output;
 	}
+	
+	@SuppressWarnings("unchecked")
+	private ArrayList<String> getTags(InputData input) {
+		return (ArrayList<String>) input.get(Keys.QUERY_VALUE);
+	}
 
 }
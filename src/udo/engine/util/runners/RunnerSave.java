@@ -1,24 +1,35 @@
 //@author A0108358B
 package udo.engine.util.runners;
 
-import java.io.IOException;
-import java.util.ArrayList;
-
-import udo.data.ItemData;
+import udo.constants.Constants.AutoSaveVars;
 import udo.data.OutputData;
-import udo.engine.util.Cache;
-import udo.engine.util.FileManager;
+import udo.engine.util.AutoSaver;
 import udo.enums.Command;
 import udo.enums.ExecutionStatus;
 import udo.enums.ParsingStatus;
-import udo.exceptions.CacheAccessException;
-import udo.exceptions.WritingToStorageException;
 
+/**
+ * asks the autosaver to save the items and waits a while for the save,
+ * so a save that fails (e.g. the disk is full) is not shown as saved.
+ * the save is shared with any save already waiting to start.
+ */
 public class RunnerSave extends Runner {
+	
+	private AutoSaver mAutoSaver;
+	private long mTimeoutMillis;
+
+	public RunnerSave(AutoSaver saver) {
+		this(saver, AutoSaveVars.SAVE_WAIT_MILLIS);
+	}
 
-	public RunnerSave(FileManager f, Cache c) {
-		super(null, f, null, c);
-		
+	/**
+	 * @param saver the autosaver to save with
+	 * @param timeoutMillis the longest time to wait for the save
+	 */
+	public RunnerSave(AutoSaver saver, long timeoutMillis) {
+		super(null, null, null, null);
+		mAutoSaver = saver;
+		mTimeoutMillis = timeoutMillis;
 	}
 
 	@Override
@@ -26,26 +37,10 @@ public class RunnerSave extends Runner {
 		OutputData output = new OutputData(Command.SAVE,
 				ParsingStatus.SUCCESS, 
 				ExecutionStatus.SUCCESS);
-		try {
-			writeCacheToFile();
-			
-		} catch (WritingToStorageException e) {
-			output.setExecutionStatus(ExecutionStatus.FAIL);
-		} catch (IOException e) {
-			output.setExecutionStatus(ExecutionStatus.FAIL);
-		} catch (CacheAccessException e) {
+		if (!mAutoSaver.saveNow(mTimeoutMillis)) {
 			output.setExecutionStatus(ExecutionStatus.FAIL);
 		}
-		
 		return output;
 	}
 
-	private void writeCacheToFile() throws 
-							WritingToStorageException, 
-							IOException, 
-							CacheAccessException {
-		ArrayList<ItemData> itemsToWrite = mCache.getAllItems(); 
-		mFileManager.writeToFile(itemsToWrite);
-	}
-
 }
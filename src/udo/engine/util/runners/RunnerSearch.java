@@ -29,7 +29,13 @@ public class RunnerSearch extends Runner {
 		ArrayList<ItemData> list = new ArrayList<ItemData>();
 		
 		try {
-			list = mCache.searchAllItems(searchQuery);
+			if (mInput.contains(Keys.SEARCH_LIMIT)) {
+				// ranked search, best matches first
+				int limit = (int) mInput.get(Keys.SEARCH_LIMIT);
+				list = mCache.rankAllItems(searchQuery, limit);
+			} else {
+				list = mCache.searchAllItems(searchQuery);
+			}
 			
 		} catch (CacheAccessException e) {
 			e.printStackTrace();
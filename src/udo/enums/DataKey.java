@@ -0,0 +1,18 @@
+//@author A0108358B
+package udo.enums;
+
+/**
+ * The keys of the data in the data storage objects (InputData, OutputData
+ * and ItemData). Use them through Constants.Keys.
+ */
+public enum DataKey {
+	UID, TITLE,
+	DUE, DONE,
+	START, END,
+	HASHTAG, HASHTAGS,
+	ITEM, ITEMS,
+	QUERY_TYPE, QUERY_VALUE, QUERY_END_VALUE,
+	FIELD, VALUE, OLD_VALUE,
+	DATE,
+	SEARCH_QUERY, SEARCH_LIMIT
+}
@@ -7,7 +7,10 @@ package udo.enums;
 public enum ListQuery {
 	ALL, 
 	SINGLE_HASHTAG, 
+	ALL_HASHTAGS,
+	ANY_HASHTAG,
 	DATE, 
+	DATE_RANGE,
 	DONE,
 	EVENT,
 	TASK,
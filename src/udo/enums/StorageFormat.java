@@ -0,0 +1,12 @@
+//@author A0108358B
+package udo.enums;
+
+/**
+ * the formats the storage file can be saved in.
+ * a file in any format can be read, whichever format is saved.
+ * a paged file is changed in place, a segmented file is split by months
+ * and only the changed segments are written, the others are written whole.
+ */
+public enum StorageFormat {
+	TEXT, BINARY, PAGED, SEGMENTED
+}
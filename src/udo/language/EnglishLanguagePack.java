@@ -17,11 +17,13 @@ public class EnglishLanguagePack extends LanguagePack {
 		MARK_DONE = "done";
 		TOGGLE_DONE = "toggle";
 		SEARCH = "search";
+		FIND = "find";
 		
 		// Keywords
 		FROM = "from";
 		TO = "to";
 		BY = "by";
+		OR = "or";
 		
 		// Time words
 		YESTERDAY = "yesterday";
@@ -72,6 +74,9 @@ public class EnglishLanguagePack extends LanguagePack {
 		POPUP_QUERY_ALL = "all items";
 		POPUP_QUERY_DONE = "items that have been marked as done";
 		POPUP_QUERY_DATE = "items on ";
+		POPUP_QUERY_DATE_RANGE = "items from ";
+		POPUP_QUERY_ALL_HASHTAGS = "items with all of ";
+		POPUP_QUERY_ANY_HASHTAG = "items with any of ";
 		POPUP_QUERY_EVENT = "all events";
 		POPUP_QUERY_PLAN = "all plans";
 		POPUP_QUERY_TASK = "all tasks";
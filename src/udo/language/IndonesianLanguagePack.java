@@ -16,10 +16,12 @@ public class IndonesianLanguagePack extends LanguagePack {
 		MARK_DONE = "selesai";
 		TOGGLE_DONE = "ubah";
 		SEARCH = "cari";
+		FIND = "temukan";
 		
 		FROM = "dari";
 		TO = "sampai";
 		BY = "sebelum";
+		OR = "atau";
 		
 		YESTERDAY = "kemarin";
 		TODAY = "hari ini";
@@ -67,6 +69,9 @@ public class IndonesianLanguagePack extends LanguagePack {
 		POPUP_QUERY_ALL = "semua item";
 		POPUP_QUERY_DONE = "item yang telah ditandai sebagai selesai";
 		POPUP_QUERY_DATE = "item pada tanggal ";
+		POPUP_QUERY_DATE_RANGE = "item dari tanggal ";
+		POPUP_QUERY_ALL_HASHTAGS = "item dengan semua ";
+		POPUP_QUERY_ANY_HASHTAG = "item dengan salah satu ";
 		POPUP_QUERY_EVENT = "semua kejadian";
 		POPUP_QUERY_PLAN = "semua rencana";
 		POPUP_QUERY_TASK = "semua tugas";
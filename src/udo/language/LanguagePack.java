@@ -56,11 +56,13 @@ public abstract class LanguagePack {
 	protected String MARK_DONE;
 	protected String TOGGLE_DONE;
 	protected String SEARCH;
+	protected String FIND;
 	
 	// keywords
 	protected String FROM;
 	protected String TO;
 	protected String BY;
+	protected String OR;
 	
 	// time words
 	protected String YESTERDAY;
@@ -112,6 +114,9 @@ public abstract class LanguagePack {
 	protected String POPUP_QUERY_ALL;
 	protected String POPUP_QUERY_DONE;
 	protected String POPUP_QUERY_DATE;
+	protected String POPUP_QUERY_DATE_RANGE;
+	protected String POPUP_QUERY_ALL_HASHTAGS;
+	protected String POPUP_QUERY_ANY_HASHTAG;
 	protected String POPUP_QUERY_EVENT;
 	protected String POPUP_QUERY_PLAN;
 	protected String POPUP_QUERY_TASK;
@@ -268,6 +273,9 @@ public abstract class LanguagePack {
 	public String getSEARCH() {
 		return SEARCH;
 	}
+	public String getFIND() {
+		return FIND;
+	}
 	public String getFROM() {
 		return FROM;
 	}
@@ -277,6 +285,9 @@ public abstract class LanguagePack {
 	public String getBY() {
 		return BY;
 	}
+	public String getOR() {
+		return OR;
+	}
 	public String getYESTERDAY() {
 		return YESTERDAY;
 	}
@@ -402,6 +413,18 @@ public abstract class LanguagePack {
 		return POPUP_QUERY_DATE;
 	}
 
+	public String getPOPUP_QUERY_DATE_RANGE() {
+		return POPUP_QUERY_DATE_RANGE;
+	}
+
+	public String getPOPUP_QUERY_ALL_HASHTAGS() {
+		return POPUP_QUERY_ALL_HASHTAGS;
+	}
+
+	public String getPOPUP_QUERY_ANY_HASHTAG() {
+		return POPUP_QUERY_ANY_HASHTAG;
+	}
+
 	public String getPOPUP_QUERY_EVENT() {
 		return POPUP_QUERY_EVENT;
 	}
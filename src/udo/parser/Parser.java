@@ -103,6 +103,10 @@ public class Parser {
 		} else if (command.equals(mLang.getSEARCH())) {
 			return Command.SEARCH;
 			
+		} else if (command.equals(mLang.getFIND())) {
+			// ranked search, see SearchAction
+			return Command.SEARCH;
+			
 		} else {
 			return Command.NULL;
 		}
@@ -2,12 +2,19 @@
 package udo.parser.util;
 
 import udo.constants.Constants.Keys;
+import udo.constants.Constants.SearchVars;
 import udo.data.InputData;
 import udo.enums.Command;
 import udo.enums.ParsingStatus;
 
 public class SearchAction implements Action {
 
+	/**
+	 * This class handles both kinds of search.
+	 * "search <<query>>" finds all items containing the query, 
+	 * "find <<query>>" finds the items that best match the words of the query.
+	 */
+
 	public SearchAction() {
 		
 	}
@@ -18,6 +25,9 @@ public class SearchAction implements Action {
 		if (isValidSearch(input)) {
 			String searchString = getSearchQuery(input);
 			searchInputData.put(Keys.SEARCH_QUERY, searchString);
+			if (isRankedSearch(input)) {
+				searchInputData.put(Keys.SEARCH_LIMIT, SearchVars.DEFAULT_LIMIT);
+			}
 			searchInputData.setParsingStatus(ParsingStatus.SUCCESS);
 		} else {
 			searchInputData.setParsingStatus(ParsingStatus.FAIL);
@@ -39,6 +49,11 @@ public class SearchAction implements Action {
 		return searchString;
 	}
  
+	private boolean isRankedSearch(String input) {
+		String parts[] = input.split(" ");
+		return parts[0].toLowerCase().equals(mLang.getFIND());
+	}
+ 
 	private boolean isValidSearch(String input) {
 		String parts[] = input.split(" ");
 		if (parts.length >= 2) {
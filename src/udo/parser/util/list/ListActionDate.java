@@ -8,20 +8,32 @@ import udo.data.InputData;
 import udo.enums.Command;
 import udo.enums.ListQuery;
 import udo.enums.ParsingStatus;
+import udo.language.LanguagePack;
 import udo.parser.util.DateGetter;
 
 public class ListActionDate implements ListActionCommand {
 
 	/**
-	 * This class handles the date field
+	 * This class handles the date field.
+	 * A range of dates can be given in the format:
+	 * "list <<date>> to <<date>>"
 	 */
 	
+	private LanguagePack mLang = LanguagePack.getInstance();
+	
 	public ListActionDate() {
 		
 	}
 
 	@Override
 	public void fill(Command type, String details, InputData data) {
+		String rangeDelimiter = " " + mLang.getTO() + " ";
+		int rangeIndex = details.toLowerCase().lastIndexOf(rangeDelimiter);
+		if (rangeIndex != -1) {
+			fillRange(details, rangeIndex, rangeDelimiter.length(), data);
+			return;
+		}
+		
 		DateGetter listDate = new DateGetter();
 		Calendar date = listDate.getDate(details);
 		if (date != null) {
@@ -33,4 +45,21 @@ public class ListActionDate implements ListActionCommand {
 		}
 	}
 
+	private void fillRange(String details, int rangeIndex, int delimiterLength, 
+			InputData data) {
+		DateGetter listDate = new DateGetter();
+		String fromString = details.substring(0, rangeIndex);
+		String toString = details.substring(rangeIndex + delimiterLength);
+		Calendar from = listDate.getDate(fromString);
+		Calendar to = listDate.getDate(toString);
+		if (from != null && to != null) {
+			data.put(Keys.QUERY_TYPE, ListQuery.DATE_RANGE);
+			data.put(Keys.QUERY_VALUE, from);
+			data.put(Keys.QUERY_END_VALUE, to);
+			data.setParsingStatus(ParsingStatus.SUCCESS);
+		} else {
+			data.setParsingStatus(ParsingStatus.FAIL);
+		}
+	}
+
 }
@@ -8,13 +8,18 @@ import udo.data.InputData;
 import udo.enums.Command;
 import udo.enums.ListQuery;
 import udo.enums.ParsingStatus;
+import udo.language.LanguagePack;
 
 public class ListActionHashtag implements ListActionCommand {
 
 	/**
-	 * This class handles the hashtag field
+	 * This class handles the hashtag field.
+	 * "list #a #b" lists items with all of the hashtags, 
+	 * "list #a or #b" lists items with any of the hashtags.
 	 */
 	
+	private LanguagePack mLang = LanguagePack.getInstance();
+	
 	public ListActionHashtag() {
 		
 	}
@@ -22,15 +27,33 @@ public class ListActionHashtag implements ListActionCommand {
 	@Override
 	public void fill(Command type, String details, InputData data) {
 		ArrayList<String> tags = getTags(details);
-		if (!tags.isEmpty()) {
+		if (tags.size() == 1) {
 			data.put(Keys.QUERY_VALUE, tags.get(0));
 			data.put(Keys.QUERY_TYPE, ListQuery.SINGLE_HASHTAG);
 			data.setParsingStatus(ParsingStatus.SUCCESS);
+		} else if (tags.size() > 1 && isUnion(details)) {
+			data.put(Keys.QUERY_VALUE, tags);
+			data.put(Keys.QUERY_TYPE, ListQuery.ANY_HASHTAG);
+			data.setParsingStatus(ParsingStatus.SUCCESS);
+		} else if (tags.size() > 1) {
+			data.put(Keys.QUERY_VALUE, tags);
+			data.put(Keys.QUERY_TYPE, ListQuery.ALL_HASHTAGS);
+			data.setParsingStatus(ParsingStatus.SUCCESS);
 		} else {
 			data.setParsingStatus(ParsingStatus.FAIL);
 		}
 	}
 	
+	private boolean isUnion(String input) {
+		String words[] = input.toLowerCase().split(" ");
+		for (String word : words) {
+			if (word.equals(mLang.getOR())) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	private ArrayList<String> getTags(String input) {
 		ArrayList<String> tagArrayList = new ArrayList<String>();
 		String tag;
@@ -11,6 +11,9 @@ import org.junit.runners.Suite.SuiteClasses;
 	ParserUnitTest.class, 
 	EngineUnitTest.class, 
 	CacheUnitTest.class, 
+	ItemDataUnitTest.class, 
+	JournalUnitTest.class, 
+	AutoSaverUnitTest.class, 
 	FileManagerUnitTest.class, 
 	UndoBinUnitTest.class
 	})
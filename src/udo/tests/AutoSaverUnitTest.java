@@ -0,0 +1,218 @@
+//@author A0108358B
+package udo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import udo.data.ItemData;
+import udo.data.OutputData;
+import udo.engine.util.AutoSaver;
+import udo.engine.util.Cache;
+import udo.engine.util.FileManager;
+import udo.engine.util.ItemLoader;
+import udo.engine.util.Journal;
+import udo.engine.util.StartupWindow;
+import udo.engine.util.runners.RunnerSave;
+import udo.enums.ExecutionStatus;
+import udo.enums.ItemType;
+import udo.exceptions.CacheAccessException;
+import udo.exceptions.ReadingFromStorageException;
+import udo.exceptions.WritingToStorageException;
+
+public class AutoSaverUnitTest {
+
+	private static final String TEST_FILENAME = "data/test_autosave_data.txt";
+	private static final String TEST_JOURNAL_FILENAME = "data/test_autosave_journal.txt";
+	private static final String TEST_OLD_JOURNAL_FILENAME = "data/test_autosave_journal.old.txt";
+	private static final long WAIT_SECONDS = 10;
+
+	private Cache mCache;
+	private Journal mJournal;
+
+	@Before
+	public void setUp() {
+		new File(TEST_FILENAME).delete();
+		new File(TEST_JOURNAL_FILENAME).delete();
+		new File(TEST_OLD_JOURNAL_FILENAME).delete();
+		mCache = new Cache();
+		mJournal = new Journal(TEST_JOURNAL_FILENAME, TEST_OLD_JOURNAL_FILENAME, 0);
+	}
+
+	@Test
+	public void testAutoSaverSaveNow() {
+		// changes the cache, then saves and reads the file back.
+		// the journal is started again by the save.
+		AutoSaver saver = new AutoSaver(new FileManager(TEST_FILENAME),
+				mCache, mJournal, 100, TimeUnit.HOURS.toMillis(1));
+		try {
+			addPlan(1);
+			addPlan(2);
+			assertTrue("dirty", saver.isDirty());
+			assertTrue("saved", saver.saveNow());
+			assertFalse("not dirty", saver.isDirty());
+
+			assertEquals("items in file",
+					2,
+					new FileManager(TEST_FILENAME).getFromFile().size());
+			assertEquals("journal started again", 0, mJournal.getRecordCount());
+			assertFalse("rotated journal deleted",
+					new File(TEST_OLD_JOURNAL_FILENAME).exists());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		}
+	}
+
+	@Test
+	public void testAutoSaverAfterChanges() {
+		// the second change reaches the limit, so a save is started
+		// without waiting for the quiet period.
+		// asking again gives back that save, or one after it.
+		AutoSaver saver = new AutoSaver(new FileManager(TEST_FILENAME),
+				mCache, mJournal, 2, TimeUnit.HOURS.toMillis(1));
+		try {
+			addPlan(1);
+			saver.notifyChange();
+			addPlan(2);
+			saver.notifyChange();
+			Future<Boolean> save = saver.requestSave();
+			assertTrue("saved", save.get(WAIT_SECONDS, TimeUnit.SECONDS));
+			assertFalse("not dirty", saver.isDirty());
+			assertEquals("items in file",
+					2,
+					new FileManager(TEST_FILENAME).getFromFile().size());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		} catch (InterruptedException e) {
+			fail("interrupted");
+		} catch (ExecutionException e) {
+			fail("save failed");
+		} catch (TimeoutException e) {
+			fail("save did not start");
+		}
+	}
+
+	@Test
+	public void testAutoSaverLoadFailed() {
+		// the rest of the items cannot be read after the window is loaded.
+		// nothing is saved until they are, so the file keeps all its items.
+		final int[] failures = { 0 };
+		FileManager failing = new FileManager(TEST_FILENAME) {
+			@Override
+			public ArrayList<ItemData> getFromFileForWindow()
+					throws ReadingFromStorageException, IOException {
+				if (failures[0] < 3) {
+					failures[0]++;
+					throw new IOException("cannot read");
+				}
+				return super.getFromFileForWindow();
+			}
+		};
+		AutoSaver saver = new AutoSaver(failing,
+				mCache, mJournal, 100, TimeUnit.HOURS.toMillis(1));
+		ItemLoader loader = new ItemLoader(failing, mCache, saver, 2, 0);
+		try {
+			ArrayList<ItemData> items = new ArrayList<ItemData>();
+			for (int uid = 1; uid <= 3; uid++) {
+				items.add(makePlan(uid));
+			}
+			new FileManager(TEST_FILENAME).writeToFile(items);
+
+			mCache.beginLoading(StartupWindow.startingAt(System.currentTimeMillis(), 1));
+			loader.run();
+			assertTrue("load failed", mCache.hasLoadFailed());
+			try {
+				mCache.getAllItems();
+				fail("partial items given");
+			} catch (CacheAccessException e) {
+				// expected
+			}
+
+			addPlan(4);
+			assertFalse("not saved", saver.saveNow());
+			assertEquals("items in file",
+					3,
+					new FileManager(TEST_FILENAME).getFromFile().size());
+
+			assertFalse("still cannot read", loader.retry());
+			assertTrue("read at last", loader.retry());
+			assertFalse("loaded", mCache.isLoading());
+			assertTrue("saved", saver.saveNow());
+			assertEquals("items in file",
+					4,
+					new FileManager(TEST_FILENAME).getFromFile().size());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		}
+	}
+
+	@Test
+	public void testAutoSaverSaveFails() {
+		// the file cannot be written, so the save command fails
+		// instead of showing the items as saved
+		FileManager failing = new FileManager(TEST_FILENAME) {
+			@Override
+			public void writeToFile(ArrayList<ItemData> list)
+					throws IOException, WritingToStorageException {
+				throw new IOException("disk full");
+			}
+		};
+		AutoSaver saver = new AutoSaver(failing,
+				mCache, mJournal, 100, TimeUnit.HOURS.toMillis(1));
+		try {
+			addPlan(1);
+			OutputData output = new RunnerSave(saver).run();
+			assertEquals("save failed", ExecutionStatus.FAIL, output.getExecutionStatus());
+			assertTrue("still dirty", saver.isDirty());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		}
+	}
+
+	private void addPlan(int uid) throws CacheAccessException, IOException {
+		ItemData plan = makePlan(uid);
+		mCache.addItem(plan);
+		mJournal.logPut(plan);
+	}
+
+	private ItemData makePlan(int uid) {
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.setUID(uid);
+		plan.setTitle("plan " + uid);
+		plan.setDone(false);
+		plan.setTags(new ArrayList<String>());
+		return plan;
+	}
+}
@@ -3,13 +3,22 @@ package udo.tests;
 
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+
 import org.junit.Test;
 
 import udo.constants.Constants.Keys;
 import udo.data.ItemData;
+import udo.data.TagDictionary;
 import udo.engine.util.Cache;
+import udo.engine.util.CacheSnapshot;
+import udo.engine.util.StartupWindow;
 import udo.enums.ItemType;
 import udo.exceptions.CacheAccessException;
 import udo.exceptions.InvalidUIDException;
@@ -21,6 +30,8 @@ public class CacheUnitTest {
 	// this is because their success mostly depends on the core methods.
 	// we assume the logic is correct for the aux methods. 
 
+	private static final int EVENT_UID = 12345;
+	private static final int TASK_UID = 12346;
 	private static final int PLAN_UID = 12347;
 	private static final int NOT_EXIST_UID = 0;
 	private static final int INVALID_UID = -1;
@@ -172,6 +183,481 @@ public class CacheUnitTest {
 		}
 	}
 	
+	@Test
+	public void testCacheAddSameUID() throws CacheAccessException, 
+			ItemNotFoundException, InvalidUIDException {
+		// adds two items with the same uid
+		// the second one should replace the first one
+		Cache c = new Cache();
+		ItemData i = new ItemData(ItemType.PLAN);
+		i.put(Keys.TITLE, "asd");
+		i.put(Keys.UID, PLAN_UID);
+		ItemData ii = new ItemData(ItemType.EVENT);
+		ii.put(Keys.TITLE, "asdasd");
+		ii.put(Keys.UID, PLAN_UID);
+		c.addItem(i);
+		c.addItem(ii);
+		
+		assertEquals("there should only be one item",
+				1,
+				c.size());
+		
+		assertTrue("the item should be the second one",
+				ii.contentEquals(c.getItem(PLAN_UID)));
+		
+		assertEquals("the first item should not be listed anymore",
+				0,
+				c.getAllPlans().size());
+	}
+	
+	@Test
+	public void testCacheEditKeepsIdentity() throws CacheAccessException, 
+			ItemNotFoundException, InvalidUIDException {
+		// puts an item in a hash set, edits a copy of it in the cache
+		// then checks that the edited item is still found in the set
+		Cache c = new Cache();
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, TASK_UID);
+		task.put(Keys.TITLE, "before");
+		task.put(Keys.DONE, false);
+		c.addItem(task);
+		HashSet<ItemData> seen = new HashSet<ItemData>();
+		seen.add(c.getItem(TASK_UID));
+		
+		ItemData edited = c.getItem(TASK_UID).copy();
+		edited.put(Keys.TITLE, "after");
+		edited.put(Keys.DONE, true);
+		c.updateItem(edited);
+		
+		assertTrue("edited item is the same item",
+				seen.contains(c.getItem(TASK_UID)));
+		assertFalse("edited item has different content",
+				task.contentEquals(c.getItem(TASK_UID)));
+		assertTrue("copy has the same content",
+				edited.copy().contentEquals(edited));
+		assertNotEquals("items without uids are different",
+				new ItemData(ItemType.PLAN),
+				new ItemData(ItemType.PLAN));
+	}
+	
+	@Test
+	public void testCacheGetItemsOnDate() throws CacheAccessException, 
+			ItemNotFoundException, InvalidUIDException {
+		// adds an event spanning three days and a task on the last day
+		// then checks which items are found on each day
+		Cache c = new Cache();
+		Calendar start = Calendar.getInstance();
+		Calendar end = (Calendar) start.clone();
+		end.add(Calendar.DAY_OF_MONTH, 2);
+		Calendar middle = (Calendar) start.clone();
+		middle.add(Calendar.DAY_OF_MONTH, 1);
+		
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, EVENT_UID);
+		event.put(Keys.START, start);
+		event.put(Keys.END, end);
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, TASK_UID);
+		task.put(Keys.DUE, end.clone());
+		task.put(Keys.DONE, false);
+		c.addItem(event);
+		c.addItem(task);
+		
+		assertEquals("the event spans the middle day",
+				1,
+				c.getAllEventsOn(middle).size());
+		
+		assertEquals("both items are on the last day",
+				2,
+				c.getAllItemsOn(end).size());
+		
+		assertEquals("both items are between the first and last day",
+				2,
+				c.getAllItemsBetween(start, end).size());
+		
+		// move the task to the first day
+		ItemData movedTask = c.getItem(TASK_UID).copy();
+		movedTask.put(Keys.DUE, start.clone());
+		c.updateItem(movedTask);
+		
+		assertEquals("the task is not on the last day anymore",
+				1,
+				c.getAllItemsOn(end).size());
+		
+		assertEquals("the task is on the first day",
+				2,
+				c.getAllItemsOn(start).size());
+	}
+
+	@Test
+	public void testCacheGetLongEvent() throws CacheAccessException,
+			ItemNotFoundException, InvalidUIDException {
+		// adds an event spanning ninety years and a task in between,
+		// then checks the event is found on any day in its span
+		Cache c = new Cache();
+		Calendar start = Calendar.getInstance();
+		Calendar end = (Calendar) start.clone();
+		end.add(Calendar.YEAR, 90);
+		Calendar middle = (Calendar) start.clone();
+		middle.add(Calendar.YEAR, 45);
+		Calendar after = (Calendar) end.clone();
+		after.add(Calendar.DAY_OF_MONTH, 1);
+
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, EVENT_UID);
+		event.put(Keys.START, start);
+		event.put(Keys.END, end);
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, TASK_UID);
+		task.put(Keys.DUE, middle.clone());
+		task.put(Keys.DONE, false);
+		c.addItem(event);
+		c.addItem(task);
+
+		ArrayList<ItemData> items = c.getAllItemsOn(middle);
+		assertEquals("both items are on the middle day", 2, items.size());
+		assertEquals("sorted by start", EVENT_UID, items.get(0).getUID());
+		assertEquals("both items are between the middle and the end",
+				2,
+				c.getAllItemsBetween(middle, end).size());
+		assertEquals("the event is not after its end",
+				0,
+				c.getAllEventsOn(after).size());
+
+		c.deleteItem(EVENT_UID);
+		assertEquals("the event is gone",
+				0,
+				c.getAllEventsOn(middle).size());
+	}
+
+	@Test
+	public void testCacheSortedAfterUpdate() throws CacheAccessException, 
+			ItemNotFoundException, InvalidUIDException {
+		// adds two tasks and a plan, then moves the later task before
+		// the other and checks the lists follow the new order
+		Cache c = new Cache();
+		Calendar early = Calendar.getInstance();
+		Calendar late = (Calendar) early.clone();
+		late.add(Calendar.HOUR_OF_DAY, 1);
+		Calendar earlier = (Calendar) early.clone();
+		earlier.add(Calendar.HOUR_OF_DAY, -1);
+		
+		ItemData first = new ItemData(ItemType.TASK);
+		first.put(Keys.UID, EVENT_UID);
+		first.put(Keys.DUE, early);
+		first.put(Keys.DONE, false);
+		ItemData second = new ItemData(ItemType.TASK);
+		second.put(Keys.UID, TASK_UID);
+		second.put(Keys.DUE, late);
+		second.put(Keys.DONE, false);
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.put(Keys.UID, PLAN_UID);
+		plan.put(Keys.DONE, false);
+		c.addItem(plan);
+		c.addItem(second);
+		c.addItem(first);
+		
+		ArrayList<ItemData> items = c.getAllItems();
+		assertEquals("plans come last", PLAN_UID, items.get(2).get(Keys.UID));
+		assertEquals("earlier task first", EVENT_UID, items.get(0).get(Keys.UID));
+		
+		ItemData moved = c.getItem(TASK_UID).copy();
+		moved.put(Keys.DUE, earlier);
+		c.updateItem(moved);
+		
+		items = c.getAllTodo();
+		assertEquals("all items are still there", 3, items.size());
+		assertEquals("moved task is first", TASK_UID, items.get(0).get(Keys.UID));
+		assertEquals("other task is second", EVENT_UID, items.get(1).get(Keys.UID));
+	}
+	
+	@Test
+	public void testCacheGetItemsWithHashtags() throws CacheAccessException {
+		// adds two plans sharing one hashtag
+		// then lists them with one, all and any of the hashtags
+		Cache c = new Cache();
+		ItemData work = new ItemData(ItemType.PLAN);
+		ArrayList<String> workTags = new ArrayList<String>();
+		workTags.add("work");
+		work.put(Keys.HASHTAGS, workTags);
+		ItemData urgentWork = new ItemData(ItemType.PLAN);
+		ArrayList<String> urgentWorkTags = new ArrayList<String>();
+		urgentWorkTags.add("work");
+		urgentWorkTags.add("urgent");
+		urgentWork.put(Keys.HASHTAGS, urgentWorkTags);
+		c.addItem(work);
+		c.addItem(urgentWork);
+		
+		ArrayList<String> query = new ArrayList<String>();
+		query.add("work");
+		query.add("urgent");
+		
+		assertEquals("both items have the work hashtag",
+				2,
+				c.getAllItemsWithHashtag("work").size());
+		
+		assertEquals("only one item has both hashtags",
+				1,
+				c.getAllItemsWithAllHashtags(query).size());
+		
+		assertEquals("both items have either hashtag",
+				2,
+				c.getAllItemsWithAnyHashtag(query).size());
+		
+		// a hashtag no item ever had is not given an id by a query
+		query.add("never used");
+		assertEquals("no item has all three hashtags",
+				0,
+				c.getAllItemsWithAllHashtags(query).size());
+		assertEquals("the unknown hashtag is skipped",
+				2,
+				c.getAllItemsWithAnyHashtag(query).size());
+		assertEquals("the unknown hashtag has no id",
+				TagDictionary.NO_ID,
+				TagDictionary.getInstance().findId("never used"));
+	}
+	
+	@Test
+	public void testCacheSearch() throws CacheAccessException {
+		// adds two plans, one matching by title and one by hashtag
+		// then searches with long and short queries
+		Cache c = new Cache();
+		ItemData byTitle = new ItemData(ItemType.PLAN);
+		byTitle.put(Keys.TITLE, "Buy Groceries");
+		byTitle.put(Keys.HASHTAGS, new ArrayList<String>());
+		ItemData byTag = new ItemData(ItemType.PLAN);
+		byTag.put(Keys.TITLE, "call mum");
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("groceries");
+		byTag.put(Keys.HASHTAGS, tags);
+		c.addItem(byTitle);
+		c.addItem(byTag);
+		
+		assertEquals("both items match the query",
+				2,
+				c.searchAllItems(" groCERies ").size());
+		
+		assertEquals("only one item matches the query",
+				1,
+				c.searchAllItems("buy").size());
+		
+		assertEquals("short queries still match",
+				1,
+				c.searchAllItems("mu").size());
+		
+		assertEquals("no item matches the query",
+				0,
+				c.searchAllItems("grocery").size());
+	}
+	
+	@Test
+	public void testCacheRankedSearch() throws CacheAccessException {
+		// adds three plans, the word is in the title of one,
+		// in the hashtags of another and not in the third.
+		Cache c = new Cache();
+		ItemData inTag = new ItemData(ItemType.PLAN);
+		inTag.put(Keys.TITLE, "call mum");
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("report");
+		inTag.put(Keys.HASHTAGS, tags);
+		ItemData inTitle = new ItemData(ItemType.PLAN);
+		inTitle.put(Keys.TITLE, "write report");
+		inTitle.put(Keys.HASHTAGS, new ArrayList<String>());
+		ItemData notIn = new ItemData(ItemType.PLAN);
+		notIn.put(Keys.TITLE, "buy milk");
+		notIn.put(Keys.HASHTAGS, new ArrayList<String>());
+		c.addItem(inTag);
+		c.addItem(inTitle);
+		c.addItem(notIn);
+		
+		ArrayList<ItemData> result = c.rankAllItems("Report", 10);
+		
+		assertEquals("only two items have the word",
+				2,
+				result.size());
+		
+		assertEquals("the title match should be first",
+				inTitle,
+				result.get(0));
+		
+		assertEquals("the limit should be kept",
+				1,
+				c.rankAllItems("report", 1).size());
+	}
+	
+	@Test
+	public void testCacheGenerateUID() throws CacheAccessException {
+		// adds an item with a known uid, then many items without uids
+		// then checks that every item got its own uid
+		Cache c = new Cache();
+		int itemCount = 1000;
+		ItemData loaded = new ItemData(ItemType.PLAN);
+		loaded.put(Keys.UID, PLAN_UID);
+		c.addItem(loaded);
+		
+		for (int i = 0; i < itemCount; i++) {
+			c.addItem(new ItemData(ItemType.PLAN));
+		}
+		
+		assertEquals("no uids should clash", itemCount + 1, c.size());
+		assertTrue("new uids come after the loaded uid",
+				c.generateUID() > PLAN_UID);
+	}
+	
+	@Test
+	public void testCacheSnapshot() throws CacheAccessException, 
+			ItemNotFoundException, InvalidUIDException {
+		// takes a snapshot, changes the cache, then checks that the
+		// snapshot still shows the cache as it was
+		Cache c = new Cache();
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.put(Keys.UID, PLAN_UID);
+		plan.put(Keys.TITLE, "before");
+		c.addItem(plan);
+		
+		CacheSnapshot before = c.snapshot();
+		assertEquals("unchanged cache gives the same snapshot",
+				before,
+				c.snapshot());
+		
+		ItemData changed = c.getItem(PLAN_UID).copy();
+		changed.put(Keys.TITLE, "after");
+		c.updateItem(changed);
+		c.addItem(new ItemData(ItemType.EVENT));
+		
+		CacheSnapshot after = c.snapshot();
+		assertNotEquals("changes raise the version",
+				before.getVersion(),
+				after.getVersion());
+		assertEquals("old snapshot keeps its size", 1, before.size());
+		assertEquals("old snapshot keeps the old item",
+				"before",
+				before.getItem(PLAN_UID).get(Keys.TITLE));
+		assertEquals("new snapshot has the new item",
+				"after",
+				after.getItem(PLAN_UID).get(Keys.TITLE));
+		assertEquals("new snapshot has all items", 2, after.getAllItems().size());
+	}
+	
+	@Test
+	public void testCacheConcurrentAccess() throws InterruptedException {
+		// adds items in one thread while other threads list the items
+		// then checks that nobody got an access error and every item is there
+		final Cache c = new Cache();
+		final int itemCount = 200;
+		final ArrayList<Exception> errors = new ArrayList<Exception>();
+		
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					for (int i = 0; i < itemCount; i++) {
+						ItemData plan = new ItemData(ItemType.PLAN);
+						plan.put(Keys.UID, EVENT_UID + i);
+						plan.put(Keys.DONE, false);
+						c.addItem(plan);
+					}
+				} catch (CacheAccessException e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				}
+			}
+		});
+		
+		ArrayList<Thread> readers = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < itemCount; j++) {
+							c.getAllItems();
+							c.getAllUndonePlans();
+						}
+					} catch (Exception e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			}));
+		}
+		
+		writer.start();
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		writer.join();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		
+		assertEquals("no thread should fail", 0, errors.size());
+		assertEquals("all items should be added", itemCount, c.size());
+	}
+	
+	@Test
+	public void testCacheLoadingWindow() throws Exception {
+		// loads a window with an event first, changes the cache,
+		// then loads the rest of the items and checks the changes are kept
+		final Cache c = new Cache();
+		Calendar now = Calendar.getInstance();
+		StartupWindow window = StartupWindow.startingAt(now.getTimeInMillis(), 7);
+		window.setMaxUID(PLAN_UID);
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, EVENT_UID);
+		event.put(Keys.TITLE, "saved");
+		event.put(Keys.START, now);
+		event.put(Keys.END, now.clone());
+		window.getItems().add(event);
+		
+		c.beginLoading(window);
+		assertTrue("should be loading", c.isLoading());
+		assertEquals("window day should not wait", 1, c.getAllEventsOn(now).size());
+		assertTrue("uids of unloaded items should not be given out",
+				c.generateUID() > PLAN_UID);
+		
+		ItemData edited = event.copy();
+		edited.put(Keys.TITLE, "edited");
+		c.updateItem(edited);
+		assertFalse("unloaded item is not there yet", c.forgetItem(TASK_UID));
+		
+		final ArrayList<Integer> sizes = new ArrayList<Integer>();
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sizes.add(c.getAllItems().size());
+				} catch (CacheAccessException e) {
+					// sizes stays empty
+				}
+			}
+		});
+		reader.start();
+		
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, TASK_UID);
+		task.put(Keys.DONE, false);
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.put(Keys.UID, PLAN_UID);
+		ArrayList<ItemData> all = new ArrayList<ItemData>();
+		all.add(event);
+		all.add(task);
+		all.add(plan);
+		c.finishLoading(all);
+		reader.join();
+		
+		assertFalse("should be loaded", c.isLoading());
+		assertEquals("reader should see all items", 2, (int) sizes.get(0));
+		assertEquals("edit should be kept", "edited", c.getItem(EVENT_UID).getTitle());
+		assertEquals("plan should be loaded", PLAN_UID, c.getItem(PLAN_UID).getUID());
+		try {
+			c.getItem(TASK_UID);
+			fail("deleted item should not be loaded");
+		} catch (ItemNotFoundException e) {
+			// expected
+		}
+	}
+	
 	@Test
 	public void testCacheClear() {
 		// adds an item 
@@ -344,8 +344,8 @@ public class EngineUnitTest {
 		
 		InputData inputEdit = new InputData(Command.EDIT, ParsingStatus.SUCCESS);
 		inputEdit.put(Keys.UID, EVENT_UID);
-		inputEdit.put("field", EditField.END_TIME);
-		inputEdit.put("value", Calendar.getInstance());
+		inputEdit.put(Keys.FIELD, EditField.END_TIME);
+		inputEdit.put(Keys.VALUE, Calendar.getInstance());
 		OutputData output = e.execute(inputEdit);
 		
 		assertFalse("output not null",
@@ -382,8 +382,8 @@ public class EngineUnitTest {
 		
 		InputData inputEdit = new InputData(Command.EDIT, ParsingStatus.SUCCESS);
 		inputEdit.put(Keys.UID, TASK_UID);
-		inputEdit.put("field", EditField.DUE_TIME);
-		inputEdit.put("value", Calendar.getInstance());
+		inputEdit.put(Keys.FIELD, EditField.DUE_TIME);
+		inputEdit.put(Keys.VALUE, Calendar.getInstance());
 		OutputData output = e.execute(inputEdit);
 		
 		assertFalse("output not null",
@@ -420,8 +420,8 @@ public class EngineUnitTest {
 		
 		InputData inputEdit = new InputData(Command.EDIT, ParsingStatus.SUCCESS);
 		inputEdit.put(Keys.UID, TASK_UID);
-		inputEdit.put("field", EditField.DUE_DATE);
-		inputEdit.put("value", Calendar.getInstance());
+		inputEdit.put(Keys.FIELD, EditField.DUE_DATE);
+		inputEdit.put(Keys.VALUE, Calendar.getInstance());
 		OutputData output = e.execute(inputEdit);
 		
 		assertFalse("output not null",
@@ -458,8 +458,8 @@ public class EngineUnitTest {
 		
 		InputData inputEdit = new InputData(Command.EDIT, ParsingStatus.SUCCESS);
 		inputEdit.put(Keys.UID, TASK_UID);
-		inputEdit.put("field", EditField.TITLE);
-		inputEdit.put("value", "dummy title");
+		inputEdit.put(Keys.FIELD, EditField.TITLE);
+		inputEdit.put(Keys.VALUE, "dummy title");
 		OutputData output = e.execute(inputEdit);
 		
 		assertFalse("output not null",
@@ -3,17 +3,36 @@ package udo.tests;
 
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
 
 import org.junit.Test;
 
 import udo.constants.Constants.Keys;
+import udo.constants.Constants.StorageStrings;
+import udo.data.EpochTime;
 import udo.data.ItemData;
+import udo.engine.util.AutoSaver;
+import udo.engine.util.Cache;
 import udo.engine.util.FileManager;
+import udo.engine.util.ItemLoader;
+import udo.engine.util.Journal;
+import udo.engine.util.ParallelTextLoader;
+import udo.engine.util.RecordDecoder;
+import udo.engine.util.RecordEncoder;
+import udo.engine.util.SegmentStore;
+import udo.engine.util.StartupWindow;
 import udo.enums.ItemType;
+import udo.enums.StorageFormat;
 import udo.exceptions.ReadingFromStorageException;
 import udo.exceptions.WritingToStorageException;
 
@@ -21,6 +40,13 @@ public class FileManagerUnitTest {
 
 	private static final String TEST_READ_FILENAME = "data/test_read_data.txt";
 	private static final String TEST_WRITE_FILENAME = "data/test_write_data.txt";
+	private static final String TEST_RECOVER_FILENAME = "data/test_recover_data.txt";
+	private static final String TEST_BINARY_FILENAME = "data/test_binary_data.bin";
+	private static final String TEST_PARALLEL_FILENAME = "data/test_parallel_data.txt";
+	private static final String TEST_WINDOW_FILENAME = "data/test_window_data.txt";
+	private static final String TEST_LAZY_FILENAME = "data/test_lazy_data.txt";
+	private static final String TEST_PAGED_FILENAME = "data/test_paged_data.txt";
+	private static final String TEST_SEGMENT_FILENAME = "data/test_segment_data.txt";
 
 	@Test
 	public void testFMReadFile() {
@@ -89,5 +115,603 @@ public class FileManagerUnitTest {
 				2);
 		
 	}
+	
+	@Test
+	public void testFMEncodeRecord() {
+		// encodes one item of each type, then checks the lines are the same
+		// as the storage formats give
+		Calendar start = Calendar.getInstance();
+		start.set(2015, Calendar.MARCH, 9, 14, 5);
+		Calendar end = (Calendar) start.clone();
+		end.add(Calendar.DAY_OF_MONTH, 40);
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("work");
+		tags.add("cs2103");
+		RecordEncoder encoder = new RecordEncoder();
+		
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, 12345);
+		event.put(Keys.TITLE, "test event");
+		event.put(Keys.START, start);
+		event.put(Keys.END, end);
+		event.put(Keys.HASHTAGS, tags);
+		assertEquals("event line",
+				String.format(StorageStrings.UNFORMATTED_STRING_EVENT,
+						12345, "EVENT", "test event",
+						9, 3, 2015, 14, 5,
+						end.get(Calendar.DAY_OF_MONTH),
+						end.get(Calendar.MONTH) + 1,
+						end.get(Calendar.YEAR),
+						end.get(Calendar.HOUR_OF_DAY),
+						end.get(Calendar.MINUTE),
+						"work,cs2103"),
+				encoder.encode(event));
+		
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, 12346);
+		task.put(Keys.TITLE, "test task");
+		task.put(Keys.DUE, start);
+		task.put(Keys.DONE, true);
+		task.put(Keys.HASHTAGS, new ArrayList<String>());
+		assertEquals("task line",
+				String.format(StorageStrings.UNFORMATTED_STRING_TASK,
+						12346, "TASK", "test task",
+						9, 3, 2015, 14, 5, true, ""),
+				encoder.encode(task));
+		
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.put(Keys.UID, 12347);
+		plan.put(Keys.TITLE, "test plan");
+		plan.put(Keys.DONE, false);
+		plan.put(Keys.HASHTAGS, tags);
+		assertEquals("plan line",
+				String.format(StorageStrings.UNFORMATTED_STRING_PLAN,
+						12347, "PLAN", "test plan", false, "work,cs2103"),
+				encoder.encode(plan));
+	}
+	
+	@Test
+	public void testFMDecodeRecord() {
+		// encodes items of each type, decodes the lines,
+		// then checks the items are the same as before
+		Calendar start = Calendar.getInstance();
+		start.clear();
+		start.set(2015, Calendar.DECEMBER, 31, 23, 59);
+		Calendar end = (Calendar) start.clone();
+		end.add(Calendar.MINUTE, 1);
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("work");
+		tags.add("cs2103");
+		RecordEncoder encoder = new RecordEncoder();
+		RecordDecoder decoder = new RecordDecoder();
+		
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, 12345);
+		event.put(Keys.TITLE, "test | event");
+		event.put(Keys.START, start);
+		event.put(Keys.END, end);
+		event.put(Keys.HASHTAGS, tags);
+		assertTrue("event",
+				event.contentEquals(decoder.decode(encoder.encode(event))));
+		
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, 12346);
+		task.put(Keys.TITLE, "test task");
+		task.put(Keys.DUE, end);
+		task.put(Keys.DONE, true);
+		task.put(Keys.HASHTAGS, new ArrayList<String>());
+		assertTrue("task",
+				task.contentEquals(decoder.decode(encoder.encode(task))));
+		
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.put(Keys.UID, 12347);
+		plan.put(Keys.TITLE, "test task");
+		plan.put(Keys.DONE, false);
+		plan.put(Keys.HASHTAGS, tags);
+		ItemData decodedPlan = decoder.decode(encoder.encode(plan));
+		assertTrue("plan", plan.contentEquals(decodedPlan));
+		assertTrue("same titles share a string",
+				decodedPlan.getTitle() == decoder.decode(encoder.encode(task)).getTitle());
+		
+		assertEquals("empty line", null, decoder.decode(""));
+	}
+	
+	@Test
+	public void testFMRecoverTornFile() {
+		// saves twice, then cuts the file in the middle of a line
+		// like a crash would. the previous save is read instead.
+		FileManager fm = new FileManager(TEST_RECOVER_FILENAME);
+		deleteFiles(TEST_RECOVER_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		list.add(makePlan(1, "first"));
+		
+		try {
+			fm.writeToFile(list);
+			list.add(makePlan(2, "second"));
+			fm.writeToFile(list);
+			assertEquals("second save", 2, fm.getFromFile().size());
+			
+			RandomAccessFile file = new RandomAccessFile(TEST_RECOVER_FILENAME, "rw");
+			file.setLength(file.length() / 2);
+			file.close();
+			
+			assertEquals("previous save", 1, fm.getFromFile().size());
+			assertTrue("damaged file kept", 
+					new File(TEST_RECOVER_FILENAME 
+							+ StorageStrings.DAMAGED_SUFFIX).exists());
+			assertEquals("previous save is now the file", 
+					1, 
+					fm.getFromFile().size());
+			
+		} catch (IOException e) {
+			fail("io");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		}
+	}
+	
+	@Test
+	public void testFMRecoverUnfinishedSave() {
+		// a crash after the file became the previous save 
+		// but before the temp file took its place
+		FileManager fm = new FileManager(TEST_RECOVER_FILENAME);
+		deleteFiles(TEST_RECOVER_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		list.add(makePlan(1, "first"));
+		list.add(makePlan(2, "second"));
+		
+		try {
+			fm.writeToFile(list);
+			File file = new File(TEST_RECOVER_FILENAME);
+			assertTrue("moved to temp", file.renameTo(
+					new File(TEST_RECOVER_FILENAME + StorageStrings.TEMP_SUFFIX)));
+			
+			assertEquals("finished temp file", 2, fm.getFromFile().size());
+			assertTrue("file back in place", file.exists());
+			
+		} catch (IOException e) {
+			fail("io");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		}
+	}
+	
+	@Test
+	public void testFMBinaryFormat() {
+		// saves one item of each type in the binary format, then reads
+		// them back with a text file manager, which finds the format itself
+		deleteFiles(TEST_BINARY_FILENAME);
+		Calendar start = Calendar.getInstance();
+		start.set(2015, Calendar.MARCH, 9, 14, 5, 0);
+		start.set(Calendar.MILLISECOND, 0);
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("work");
+		tags.add("cs2103");
+		
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, 12345);
+		event.put(Keys.TITLE, "test event \u00e9");
+		event.put(Keys.START, start);
+		event.put(Keys.END, start);
+		event.put(Keys.HASHTAGS, tags);
+		ItemData task = new ItemData(ItemType.TASK);
+		task.put(Keys.UID, 12346);
+		task.put(Keys.TITLE, "test task");
+		task.put(Keys.DUE, start);
+		task.put(Keys.DONE, true);
+		task.put(Keys.HASHTAGS, new ArrayList<String>());
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		list.add(event);
+		list.add(task);
+		list.add(makePlan(12347, "test plan"));
+		
+		try {
+			new FileManager(TEST_BINARY_FILENAME, StorageFormat.BINARY)
+					.writeToFile(list);
+			byte[] bytes = Files.readAllBytes(new File(TEST_BINARY_FILENAME).toPath());
+			assertEquals("binary file", 0, bytes[0]);
+			
+			ArrayList<ItemData> getBack = new FileManager(TEST_BINARY_FILENAME, 
+					StorageFormat.TEXT).getFromFile();
+			assertEquals("size", 3, getBack.size());
+			for (int i = 0; i < list.size(); i++) {
+				assertTrue("same item " + i, list.get(i).contentEquals(getBack.get(i)));
+			}
+			
+		} catch (IOException e) {
+			fail("io");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		}
+	}
+	
+	@Test
+	public void testFMConvertToBinary() {
+		// a text file is read by a binary file manager and saved as binary.
+		// a binary file cut short falls back to the text save before it.
+		deleteFiles(TEST_BINARY_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		list.add(makePlan(1, "first"));
+		list.add(makePlan(2, "second"));
+		FileManager binaryFm = new FileManager(TEST_BINARY_FILENAME, StorageFormat.BINARY);
+		
+		try {
+			new FileManager(TEST_BINARY_FILENAME, StorageFormat.TEXT).writeToFile(list);
+			ArrayList<ItemData> getBack = binaryFm.getFromFile();
+			assertEquals("read text", 2, getBack.size());
+			
+			getBack.remove(1);
+			binaryFm.writeToFile(getBack);
+			assertEquals("read binary", 1, binaryFm.getFromFile().size());
+			
+			RandomAccessFile file = new RandomAccessFile(TEST_BINARY_FILENAME, "rw");
+			file.setLength(file.length() - 1);
+			file.close();
+			assertEquals("previous text save", 2, binaryFm.getFromFile().size());
+			
+		} catch (IOException e) {
+			fail("io");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		}
+	}
+	
+	@Test
+	public void testFMParallelLoad() {
+		// reads a text file in many chunks, then checks the items are
+		// the same and in the same order as when read line by line.
+		// a file cut short at a line break is found by the footer.
+		deleteFiles(TEST_PARALLEL_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		for (int i = 1; i <= 1000; i++) {
+			list.add(makePlan(i, "plan " + i));
+		}
+		FileManager fm = new FileManager(TEST_PARALLEL_FILENAME, StorageFormat.TEXT);
+		ParallelTextLoader loader = new ParallelTextLoader(4);
+		
+		try {
+			fm.writeToFile(list);
+			ArrayList<ItemData> lineByLine = fm.getFromFile();
+			ArrayList<ItemData> parallel = loader.load(TEST_PARALLEL_FILENAME, true);
+			assertEquals("size", 1000, parallel.size());
+			for (int i = 0; i < lineByLine.size(); i++) {
+				assertTrue("same item " + i, 
+						lineByLine.get(i).contentEquals(parallel.get(i)));
+			}
+			
+			RandomAccessFile file = new RandomAccessFile(TEST_PARALLEL_FILENAME, "rw");
+			file.setLength(file.length() / 2);
+			file.close();
+			try {
+				loader.load(TEST_PARALLEL_FILENAME, true);
+				fail("file cut short should not be read");
+			} catch (ReadingFromStorageException e) {
+				// expected
+			}
+			
+		} catch (IOException e) {
+			fail("io");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		} catch (ReadingFromStorageException e) {
+			fail("reading storage");
+		}
+	}
+	
+	@Test
+	public void testFMWindowFile() {
+		// saves an event of today and a plan, then checks the window file
+		// has just the event and the highest uid of both.
+		// a damaged window file is not used.
+		deleteFiles(TEST_WINDOW_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		// the file keeps times to the minute
+		Calendar now = Calendar.getInstance();
+		now.set(Calendar.SECOND, 0);
+		now.set(Calendar.MILLISECOND, 0);
+		ItemData event = new ItemData(ItemType.EVENT);
+		event.put(Keys.UID, 1);
+		event.put(Keys.TITLE, "today");
+		event.put(Keys.START, now);
+		event.put(Keys.END, now.clone());
+		event.put(Keys.HASHTAGS, new ArrayList<String>());
+		list.add(event);
+		list.add(makePlan(5, "some time"));
+		FileManager fm = new FileManager(TEST_WINDOW_FILENAME, StorageFormat.TEXT);
+		
+		try {
+			fm.writeToFile(list);
+			StartupWindow window = fm.getWindowFromFile();
+			assertEquals("window items", 1, window.getItems().size());
+			assertTrue("window event", event.contentEquals(window.getItems().get(0)));
+			assertEquals("max uid", 5, window.getMaxUID());
+			
+			String windowFilename = TEST_WINDOW_FILENAME + StorageStrings.WINDOW_SUFFIX;
+			RandomAccessFile file = new RandomAccessFile(windowFilename, "rw");
+			file.setLength(file.length() - 4);
+			file.close();
+			assertEquals("damaged window", null, fm.getWindowFromFile());
+			
+		} catch (IOException e) {
+			fail("io");
+		} catch (WritingToStorageException e) {
+			fail("writing storage");
+		}
+	}
+	
+	@Test
+	public void testFMWindowDamagedFile() throws Exception {
+		// the items of the window are loaded, then the rest of the file
+		// turns out torn and there is no previous save. the load stays
+		// failed however often it is tried, and nothing is saved over the file.
+		deleteFiles(TEST_WINDOW_FILENAME);
+		String journalFilename = TEST_WINDOW_FILENAME + ".journal";
+		new File(journalFilename).delete();
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		list.add(makePlan(1, "first"));
+		list.add(makePlan(2, "second"));
+		FileManager fm = new FileManager(TEST_WINDOW_FILENAME, StorageFormat.TEXT);
+		fm.writeToFile(list);
+		RandomAccessFile file = new RandomAccessFile(TEST_WINDOW_FILENAME, "rw");
+		file.setLength(file.length() - 10);
+		file.close();
+		byte[] torn = Files.readAllBytes(new File(TEST_WINDOW_FILENAME).toPath());
+
+		Cache cache = new Cache();
+		Journal journal = new Journal(journalFilename, journalFilename + ".old", 0);
+		AutoSaver saver = new AutoSaver(fm, cache, journal, 100, 60 * 60 * 1000);
+		ItemLoader loader = new ItemLoader(fm, cache, saver, 3, 0);
+		cache.beginLoading(StartupWindow.startingAt(System.currentTimeMillis(), 1));
+		loader.run();
+		assertTrue("load failed", cache.hasLoadFailed());
+		assertTrue("not tried again", !loader.retry());
+		assertTrue("still failed", cache.hasLoadFailed());
+
+		cache.addItem(makePlan(3, "third"));
+		assertTrue("not saved", !saver.saveNow());
+		assertTrue("file kept as it was", Arrays.equals(torn,
+				Files.readAllBytes(new File(TEST_WINDOW_FILENAME).toPath())));
+		assertTrue("nothing put aside",
+				!new File(TEST_WINDOW_FILENAME + StorageStrings.DAMAGED_SUFFIX).exists());
+		assertTrue("window deleted for the next start",
+				!new File(TEST_WINDOW_FILENAME + StorageStrings.WINDOW_SUFFIX).exists());
+		new File(journalFilename).delete();
+	}
+
+	@Test
+	public void testFMWindowNotFromPreviousSave() throws Exception {
+		// the rest of a window is never read from the previous save,
+		// which can still have items deleted since
+		deleteFiles(TEST_WINDOW_FILENAME);
+		FileManager fm = new FileManager(TEST_WINDOW_FILENAME, StorageFormat.TEXT);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		list.add(makePlan(1, "deleted later"));
+		fm.writeToFile(list);
+		list.clear();
+		list.add(makePlan(2, "kept"));
+		fm.writeToFile(list);
+		RandomAccessFile file = new RandomAccessFile(TEST_WINDOW_FILENAME, "rw");
+		file.setLength(file.length() - 10);
+		file.close();
+
+		try {
+			fm.getFromFileForWindow();
+			fail("previous save read");
+		} catch (ReadingFromStorageException e) {
+			// expected
+		}
+		assertTrue("previous save kept",
+				new File(TEST_WINDOW_FILENAME + StorageStrings.PREVIOUS_SUFFIX).exists());
+		assertEquals("the next start reads the previous save", 1, fm.getFromFile().size());
+	}
+
+	@Test
+	public void testFMLazyFields() throws Exception {
+		// reads a binary file lazily, then checks the titles and tags
+		// are read back when needed, also by a search in the cache,
+		// and that setting a title gives the item its own fields.
+		deleteFiles(TEST_LAZY_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		for (int i = 1; i <= 100; i++) {
+			ItemData plan = makePlan(i, "plan " + i);
+			ArrayList<String> tags = new ArrayList<String>();
+			tags.add("tag" + (i % 3));
+			plan.put(Keys.HASHTAGS, tags);
+			list.add(plan);
+		}
+		new FileManager(TEST_LAZY_FILENAME, StorageFormat.BINARY).writeToFile(list);
+		FileManager fm = new FileManager(TEST_LAZY_FILENAME, StorageFormat.BINARY, true);
+		
+		ArrayList<ItemData> getBack = fm.getFromFile();
+		assertEquals("size", 100, getBack.size());
+		for (int i = 0; i < list.size(); i++) {
+			assertTrue("lazy " + i, getBack.get(i).hasLazyFields());
+			assertTrue("same item " + i, list.get(i).contentEquals(getBack.get(i)));
+		}
+		
+		Cache c = new Cache();
+		c.addAll(getBack);
+		assertEquals("search lazy titles", 1, c.searchAllItems("plan 42").size());
+		assertEquals("lazy hashtags", 33, c.getAllItemsWithHashtag("tag0").size());
+		
+		ItemData edited = getBack.get(0).copy();
+		edited.setTitle("edited");
+		assertTrue("edited item has its own fields", !edited.hasLazyFields());
+		assertEquals("tags are kept", "tag1", edited.getTags().get(0));
+		assertEquals("original is not changed", "plan 1", getBack.get(0).getTitle());
+	}
+	
+	@Test
+	public void testFMPagedFile() throws Exception {
+		// converts a text file to a paged file, then changes, adds and
+		// deletes items and checks each save only writes the pages it needs,
+		// and that the file read back has the same items.
+		deleteFiles(TEST_PAGED_FILENAME);
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		for (int i = 1; i <= 1000; i++) {
+			list.add(makePlan(i, "plan " + i));
+		}
+		new FileManager(TEST_PAGED_FILENAME, StorageFormat.TEXT).writeToFile(list);
+		FileManager fm = new FileManager(TEST_PAGED_FILENAME, StorageFormat.PAGED);
+		list = fm.getFromFile();
+		fm.writeToFile(list);
+		
+		list = fm.getFromFile();
+		ItemData done = list.get(500).copy();
+		done.put(Keys.DONE, true);
+		list.set(500, done);
+		fm.writeToFile(list);
+		assertEquals("one page for one change", 1, fm.getPagesWritten());
+		assertTrue("previous save is out of date", !new File(TEST_PAGED_FILENAME 
+				+ StorageStrings.PREVIOUS_SUFFIX).exists());
+		
+		ItemData longer = list.get(10).copy();
+		longer.put(Keys.TITLE, new String(new char[2000]).replace('\0', 'x'));
+		list.set(10, longer);
+		list.remove(20);
+		list.add(makePlan(1001, "new plan"));
+		fm.writeToFile(list);
+		assertTrue("only a few pages", fm.getPagesWritten() <= 4);
+		
+		ArrayList<ItemData> getBack = 
+				new FileManager(TEST_PAGED_FILENAME, StorageFormat.PAGED).getFromFile();
+		assertEquals("size", list.size(), getBack.size());
+		HashMap<Integer, ItemData> byUID = new HashMap<Integer, ItemData>();
+		for (ItemData item : getBack) {
+			byUID.put(item.getUID(), item);
+		}
+		for (ItemData item : list) {
+			assertTrue("same item " + item.getUID(), 
+					item.contentEquals(byUID.get(item.getUID())));
+		}
+		assertTrue("no page log left", 
+				!new File(TEST_PAGED_FILENAME + StorageStrings.PAGE_LOG_SUFFIX).exists());
+	}
+	
+	@Test
+	public void testFMSegments() throws Exception {
+		// saves events of three months and some plans in segments,
+		// then checks a change only writes its segment, and that
+		// queries read only the segments that can have matching items.
+		deleteFiles(TEST_SEGMENT_FILENAME);
+		new SegmentStore(TEST_SEGMENT_FILENAME).deleteAll();
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		for (int month = 1; month <= 3; month++) {
+			for (int day = 1; day <= 20; day++) {
+				ItemData event = new ItemData(ItemType.EVENT);
+				event.setUID(month * 100 + day);
+				event.setTitle("meeting " + month + " " + day);
+				event.setStart(EpochTime.toMillis(2014, month, day, 9, 0));
+				event.setEnd(EpochTime.toMillis(2014, month, day, 10, 0));
+				event.setTags(new ArrayList<String>());
+				list.add(event);
+			}
+		}
+		for (int i = 1; i <= 5; i++) {
+			ItemData plan = makePlan(1000 + i, "read book " + i);
+			ArrayList<String> tags = new ArrayList<String>();
+			tags.add("Leisure");
+			plan.put(Keys.HASHTAGS, tags);
+			list.add(plan);
+		}
+		FileManager fm = new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.SEGMENTED);
+		fm.writeToFile(list);
+		SegmentStore segments = fm.getSegments();
+		assertEquals("a segment for each month and one undated", 4, 
+				segments.getSegmentsWritten());
+		
+		list = new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.SEGMENTED).getFromFile();
+		assertEquals("size", 65, list.size());
+		list = fm.getFromFile();
+		ItemData edited = list.get(25).copy();
+		edited.setTitle("edited");
+		list.set(25, edited);
+		fm.writeToFile(list);
+		assertEquals("one segment for one change", 1, segments.getSegmentsWritten());
+		
+		long from = EpochTime.getDay(EpochTime.toMillis(2014, 2, 10, 0, 0));
+		assertEquals("days", 3, segments.getItemsBetween(from, from + 2).size());
+		assertEquals("days read one segment", 1, segments.getSegmentsRead());
+		assertEquals("tag", 5, segments.getItemsWithTag("leisure").size());
+		assertTrue("tag skips segments", segments.getSegmentsRead() < 4);
+		assertEquals("search", 1, segments.searchItems("Meeting 3 7").size());
+		assertTrue("search skips segments", segments.getSegmentsRead() < 4);
+		assertEquals("max uid", 1005, segments.getMaxUID());
+		
+		// back to one file, which is then read instead of the segments
+		new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.TEXT).writeToFile(list);
+		assertTrue("segments deleted", !segments.hasSegments());
+		assertEquals("read back", 65, 
+				new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.TEXT).getFromFile().size());
+	}
+
+	@Test
+	public void testFMDamagedSegment() throws Exception {
+		// saves events of six months, then damages one segment.
+		// only that segment is put aside, and no save deletes the others.
+		deleteFiles(TEST_SEGMENT_FILENAME);
+		new SegmentStore(TEST_SEGMENT_FILENAME).deleteAll();
+		String damaged = TEST_SEGMENT_FILENAME + StorageStrings.SEGMENT_SUFFIX + "2014-03";
+		new File(damaged + StorageStrings.DAMAGED_SUFFIX).delete();
+		ArrayList<ItemData> list = new ArrayList<ItemData>();
+		for (int month = 1; month <= 6; month++) {
+			ItemData event = new ItemData(ItemType.EVENT);
+			event.setUID(month);
+			event.setTitle("meeting " + month);
+			event.setStart(EpochTime.toMillis(2014, month, 1, 9, 0));
+			event.setEnd(EpochTime.toMillis(2014, month, 1, 10, 0));
+			event.setTags(new ArrayList<String>());
+			list.add(event);
+		}
+		new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.SEGMENTED).writeToFile(list);
+		RandomAccessFile file = new RandomAccessFile(damaged, "rw");
+		file.setLength(file.length() / 2);
+		file.close();
+
+		// a store that has read nothing does not delete what it did not write
+		SegmentStore unread = new SegmentStore(TEST_SEGMENT_FILENAME);
+		ArrayList<ItemData> one = new ArrayList<ItemData>();
+		one.add(list.get(5));
+		unread.write(one);
+
+		FileManager fm = new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.SEGMENTED);
+		ArrayList<ItemData> loaded = fm.getFromFile();
+		assertEquals("the other segments are read", 5, loaded.size());
+		assertEquals("damaged segment", "2014-03", fm.getSegments().getDamagedSegments().get(0));
+		assertTrue("damaged segment put aside",
+				new File(damaged + StorageStrings.DAMAGED_SUFFIX).exists());
+
+		fm.writeToFile(loaded);
+		assertEquals("nothing changed", 0, fm.getSegments().getSegmentsWritten());
+		assertEquals("read back", 5,
+				new FileManager(TEST_SEGMENT_FILENAME, StorageFormat.SEGMENTED).getFromFile().size());
+		new File(damaged + StorageStrings.DAMAGED_SUFFIX).delete();
+	}
+
+	private ItemData makePlan(int uid, String title) {
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.put(Keys.UID, uid);
+		plan.put(Keys.TITLE, title);
+		plan.put(Keys.DONE, false);
+		plan.put(Keys.HASHTAGS, new ArrayList<String>());
+		return plan;
+	}
+	
+	private void deleteFiles(String filename) {
+		new File(filename).delete();
+		new File(filename + StorageStrings.TEMP_SUFFIX).delete();
+		new File(filename + StorageStrings.PREVIOUS_SUFFIX).delete();
+		new File(filename + StorageStrings.DAMAGED_SUFFIX).delete();
+		new File(filename + StorageStrings.WINDOW_SUFFIX).delete();
+		new File(filename + StorageStrings.PAGE_LOG_SUFFIX).delete();
+	}
 
 }
@@ -0,0 +1,178 @@
+//@author A0108358B
+package udo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+
+import org.junit.Test;
+
+import udo.constants.Constants.Keys;
+import udo.data.EpochTime;
+import udo.data.ItemData;
+import udo.data.LazyFieldSource;
+import udo.data.TagDictionary;
+import udo.enums.ItemType;
+
+public class ItemDataUnitTest {
+	
+	private static final int UID = 12345;
+
+	@Test
+	public void testItemDataPutGet() {
+		// puts values with the keys, then checks that the typed getters 
+		// and get() both give them back
+		ItemData item = new ItemData(ItemType.TASK);
+		Calendar due = Calendar.getInstance();
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("work");
+		item.put(Keys.UID, UID);
+		item.put(Keys.TITLE, "title");
+		item.put(Keys.DUE, due);
+		item.put(Keys.DONE, false);
+		item.put(Keys.HASHTAGS, tags);
+		
+		assertEquals("uid", UID, item.getUID());
+		assertEquals("uid with key", UID, item.get(Keys.UID));
+		assertEquals("title", "title", item.getTitle());
+		assertEquals("due", due.getTimeInMillis(), item.getDue());
+		assertEquals("due with key", 
+				due.getTimeInMillis(), 
+				((Calendar) item.get(Keys.DUE)).getTimeInMillis());
+		assertEquals("done with key", false, item.get(Keys.DONE));
+		assertEquals("tags", tags, item.getTags());
+		assertEquals("keys", 5, item.getKeys().size());
+		
+		assertFalse("start not set", item.contains(Keys.START));
+		assertEquals("start not set", null, item.get(Keys.START));
+		assertFalse("null is not put", item.put(Keys.START, null));
+	}
+	
+	@Test
+	public void testItemDataCalendarNotShared() {
+		// changes a calendar got from the item, 
+		// then checks the item only changes when it is put back
+		ItemData item = new ItemData(ItemType.EVENT);
+		Calendar start = Calendar.getInstance();
+		long startMillis = start.getTimeInMillis();
+		item.put(Keys.START, start);
+		
+		Calendar got = (Calendar) item.get(Keys.START);
+		got.add(Calendar.DAY_OF_MONTH, 1);
+		start.add(Calendar.DAY_OF_MONTH, 1);
+		assertEquals("item does not change", startMillis, item.getStart());
+		
+		item.put(Keys.START, got);
+		assertEquals("item changes when put back", 
+				got.getTimeInMillis(), 
+				item.getStart());
+	}
+	
+	@Test
+	public void testItemDataCopy() {
+		// copies an item, changes the copy 
+		// then checks that the item did not change
+		ItemData item = new ItemData(ItemType.PLAN);
+		item.put(Keys.UID, UID);
+		item.put(Keys.TITLE, "title");
+		item.put(Keys.DONE, false);
+		item.put(Keys.HASHTAGS, new ArrayList<String>());
+		
+		ItemData copy = item.copy();
+		assertTrue("copy has the same content", copy.contentEquals(item));
+		
+		copy.setDone(true);
+		copy.getTags().add("tag");
+		assertFalse("item is not done", item.isDone());
+		assertEquals("item has no tags", 0, item.getTags().size());
+		assertEquals("copy is still the same item", item, copy);
+	}
+
+	@Test
+	public void testEpochTime() {
+		// checks the epoch times against the ones a calendar gives
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(2015, Calendar.FEBRUARY, 28, 23, 59);
+		assertEquals("date and time",
+				cal.getTimeInMillis(),
+				EpochTime.toMillis(2015, 2, 28, 23, 59));
+		
+		Calendar nextDay = (Calendar) cal.clone();
+		nextDay.add(Calendar.MINUTE, 1);
+		assertEquals("next minute is the next day",
+				EpochTime.getDay(cal.getTimeInMillis()) + 1,
+				EpochTime.getDay(nextDay.getTimeInMillis()));
+		
+		Calendar other = Calendar.getInstance();
+		other.clear();
+		other.set(2014, Calendar.JULY, 4, 9, 30);
+		Calendar combined = (Calendar) cal.clone();
+		combined.set(Calendar.HOUR_OF_DAY, 9);
+		combined.set(Calendar.MINUTE, 30);
+		assertEquals("date of one and time of the other",
+				combined.getTimeInMillis(),
+				EpochTime.combine(cal.getTimeInMillis(), other.getTimeInMillis()));
+	}
+
+	@Test
+	public void testItemDataTagIds() {
+		// gives two items the same hashtag, then checks that they share 
+		// the tag id and the hashtag can be found by its id
+		ArrayList<String> tags = new ArrayList<String>();
+		tags.add("work");
+		tags.add("urgent");
+		ItemData first = new ItemData(ItemType.PLAN);
+		first.put(Keys.HASHTAGS, tags);
+		ItemData second = new ItemData(ItemType.PLAN);
+		second.put(Keys.HASHTAGS, new ArrayList<String>(tags.subList(0, 1)));
+		
+		assertEquals("same hashtag, same id", 
+				first.getTagIds()[0], 
+				second.getTagIds()[0]);
+		assertEquals("hashtags keep their order", tags, first.getTags());
+		
+		BitSet matching = TagDictionary.getInstance().getIdsContaining("gen");
+		assertTrue("first has urgent", first.hasAnyTag(matching));
+		assertFalse("second does not", second.hasAnyTag(matching));
+	}
+
+	@Test
+	public void testItemDataLazyFields() {
+		// reads the title and hashtags of an item from a source,
+		// then checks that setting the title stops using the source
+		final int[] reads = { 0 };
+		final int[] tagIds = { TagDictionary.getInstance().getId("lazy") };
+		LazyFieldSource source = new LazyFieldSource() {
+			@Override
+			public String getTitle(int offset) {
+				reads[0]++;
+				return "record " + offset;
+			}
+
+			@Override
+			public int[] getTagIds(int offset) {
+				return tagIds;
+			}
+		};
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.setUID(1);
+		plan.setLazyFields(source, 42);
+
+		assertTrue("lazy", plan.hasLazyFields());
+		assertEquals("title from the source", "record 42", plan.getTitle());
+		assertEquals("tags from the source", "lazy", plan.getTags().get(0));
+		assertTrue("described with its title", plan.toString().contains("record 42"));
+
+		plan.setTitle("own title");
+		int readsBefore = reads[0];
+		assertFalse("not lazy", plan.hasLazyFields());
+		assertEquals("own title", "own title", plan.getTitle());
+		assertEquals("tags kept", "lazy", plan.getTags().get(0));
+		assertEquals("source not read again", readsBefore, reads[0]);
+	}
+}
@@ -0,0 +1,178 @@
+//@author A0108358B
+package udo.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import udo.data.ItemData;
+import udo.engine.util.Cache;
+import udo.engine.util.Journal;
+import udo.enums.ItemType;
+import udo.exceptions.CacheAccessException;
+import udo.exceptions.InvalidUIDException;
+import udo.exceptions.ItemNotFoundException;
+
+public class JournalUnitTest {
+
+	private static final String TEST_JOURNAL_FILENAME = "data/test_journal.txt";
+	private static final String TEST_OLD_JOURNAL_FILENAME = "data/test_journal.old.txt";
+
+	@Before
+	public void removeFiles() {
+		new File(TEST_JOURNAL_FILENAME).delete();
+		new File(TEST_OLD_JOURNAL_FILENAME).delete();
+	}
+
+	@Test
+	public void testJournalReplay() {
+		// logs an add, an edit and a delete,
+		// then replays them into an empty cache.
+		Journal journal = makeJournal();
+		ItemData kept = makePlan(1, "kept");
+		ItemData deleted = makePlan(2, "deleted");
+		ItemData edited = kept.copy();
+		edited.setTitle("edited");
+		edited.setDone(true);
+
+		try {
+			journal.open();
+			journal.logPut(kept);
+			journal.logPut(deleted);
+			journal.logPut(edited);
+			journal.logDelete(2);
+			journal.close();
+
+			Cache cache = new Cache();
+			assertEquals("records replayed", 4, makeJournal().replay(cache));
+			assertEquals("size", 1, cache.size());
+			ItemData item = cache.getItem(1);
+			assertEquals("title", "edited", item.getTitle());
+			assertTrue("done", item.isDone());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		} catch (ItemNotFoundException e) {
+			fail("item not replayed");
+		} catch (InvalidUIDException e) {
+			fail("uid");
+		}
+	}
+
+	@Test
+	public void testJournalTornRecord() {
+		// a crash can cut the last record short.
+		// it is skipped and the next record still starts on its own line.
+		Journal journal = makeJournal();
+		try {
+			journal.open();
+			journal.logPut(makePlan(1, "first"));
+			journal.close();
+
+			FileWriter writer = new FileWriter(TEST_JOURNAL_FILENAME, true);
+			writer.write("+2|||PLAN|||cut sh");
+			writer.close();
+
+			journal.open();
+			journal.logPut(makePlan(3, "third"));
+			journal.close();
+
+			Cache cache = new Cache();
+			assertEquals("records replayed", 2, makeJournal().replay(cache));
+			assertEquals("size", 2, cache.size());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		}
+	}
+
+	@Test
+	public void testJournalShortRecord() {
+		// a record cut short can still end with ;
+		// it is skipped instead of read as an item with fields missing.
+		Journal journal = makeJournal();
+		try {
+			journal.open();
+			journal.logPut(makePlan(1, "first"));
+			journal.close();
+
+			FileWriter writer = new FileWriter(TEST_JOURNAL_FILENAME, true);
+			writer.write("+2|||PLAN;\n");
+			writer.write("+3|||EVENT|||cut|||;\n");
+			writer.close();
+
+			Cache cache = new Cache();
+			Journal replayed = makeJournal();
+			assertEquals("records replayed", 1, replayed.replay(cache));
+			assertEquals("records skipped", 2, replayed.getSkippedCount());
+			assertEquals("size", 1, cache.size());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		}
+	}
+
+	@Test
+	public void testJournalRotate() {
+		// records before the rotate go to the rotated journal
+		// and are gone once it is discarded.
+		Journal journal = makeJournal();
+		try {
+			journal.open();
+			journal.logPut(makePlan(1, "saved"));
+			journal.rotate();
+			assertEquals("count after rotate", 0, journal.getRecordCount());
+			journal.logPut(makePlan(2, "not saved"));
+			journal.close();
+
+			Cache cache = new Cache();
+			assertEquals("both journals", 2, makeJournal().replay(cache));
+
+			journal.discardRotated();
+			assertFalse("rotated journal deleted",
+					new File(TEST_OLD_JOURNAL_FILENAME).exists());
+			cache = new Cache();
+			assertEquals("journal only", 1, makeJournal().replay(cache));
+			assertEquals("item after rotate",
+					"not saved",
+					cache.getItem(2).getTitle());
+
+		} catch (IOException e) {
+			fail("io");
+		} catch (CacheAccessException e) {
+			fail("cache");
+		} catch (ItemNotFoundException e) {
+			fail("item not replayed");
+		} catch (InvalidUIDException e) {
+			fail("uid");
+		}
+	}
+
+	private Journal makeJournal() {
+		return new Journal(TEST_JOURNAL_FILENAME, TEST_OLD_JOURNAL_FILENAME, 1);
+	}
+
+	private ItemData makePlan(int uid, String title) {
+		ItemData plan = new ItemData(ItemType.PLAN);
+		plan.setUID(uid);
+		plan.setTitle(title);
+		plan.setDone(false);
+		plan.setTags(new ArrayList<String>());
+		return plan;
+	}
+}
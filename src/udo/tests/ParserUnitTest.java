@@ -9,6 +9,7 @@ import java.util.Calendar;
 import org.junit.Test;
 
 import udo.constants.Constants.Keys;
+import udo.constants.Constants.SearchVars;
 import udo.data.InputData;
 import udo.enums.Command;
 import udo.enums.EditField;
@@ -42,6 +43,22 @@ public class ParserUnitTest {
 		assertEquals(ParsingStatus.FAIL, status);
 	}
 	
+	@Test
+	public void testFindAction() {
+		String find = "find jo ba";
+		InputData data = p.getInputData(find);
+		ParsingStatus status = data.getStatus();
+		
+		assertEquals(ParsingStatus.SUCCESS, status);
+		assertEquals(Command.SEARCH, data.getCommand());
+		assertEquals(SearchVars.DEFAULT_LIMIT, data.get(Keys.SEARCH_LIMIT));
+		
+		// normal search has no limit
+		data = p.getInputData("search jo ba");
+		
+		assertEquals(null, data.get(Keys.SEARCH_LIMIT));
+	}
+	
 	@Test
 	public void testListPlan() {
 		String listPlan = "list plan";
@@ -120,6 +137,26 @@ public class ParserUnitTest {
 		assertEquals(ParsingStatus.FAIL, status);
 	}
 	
+	@Test
+	public void testListMultipleHashtags() {
+		String listTag = "list #work #urgent";
+		InputData data = p.getInputData(listTag);
+		ParsingStatus status = data.getStatus();
+		ListQuery type = (ListQuery) data.get(Keys.QUERY_TYPE);
+		
+		assertEquals(ParsingStatus.SUCCESS, status);
+		assertEquals(ListQuery.ALL_HASHTAGS, type);
+		assertEquals(2, ((ArrayList<?>) data.get(Keys.QUERY_VALUE)).size());
+		
+		listTag = "list #work or #urgent";
+		data = p.getInputData(listTag);
+		status = data.getStatus();
+		type = (ListQuery) data.get(Keys.QUERY_TYPE);
+		
+		assertEquals(ParsingStatus.SUCCESS, status);
+		assertEquals(ListQuery.ANY_HASHTAG, type);
+	}
+	
 	@Test
 	public void testListDate() {
 		String listDate = "list 20/1";
@@ -160,6 +197,38 @@ public class ParserUnitTest {
 		assertEquals(ParsingStatus.SUCCESS, status);
 	}
 	
+	@Test
+	public void testListDateRange() {
+		String listDate = "list 20/1 to 25/1";
+		InputData data = p.getInputData(listDate);
+		ParsingStatus status = data.getStatus();
+		ListQuery type = (ListQuery) data.get(Keys.QUERY_TYPE);
+		Calendar from = (Calendar) data.get(Keys.QUERY_VALUE);
+		Calendar to = (Calendar) data.get(Keys.QUERY_END_VALUE);
+		
+		assertEquals(ParsingStatus.SUCCESS, status);
+		assertEquals(Command.LIST, data.getCommand());
+		assertEquals(ListQuery.DATE_RANGE, type);
+		assertEquals(20, from.get(Calendar.DAY_OF_MONTH));
+		assertEquals(25, to.get(Calendar.DAY_OF_MONTH));
+		
+		// days can be used too
+		listDate = "list today to tomorrow";
+		data = p.getInputData(listDate);
+		status = data.getStatus();
+		type = (ListQuery) data.get(Keys.QUERY_TYPE);
+		
+		assertEquals(ParsingStatus.SUCCESS, status);
+		assertEquals(ListQuery.DATE_RANGE, type);
+		
+		// boundary case of missing second date
+		listDate = "list 20/1 to ";
+		data = p.getInputData(listDate);
+		status = data.getStatus();
+		
+		assertEquals(ParsingStatus.FAIL, status);
+	}
+	
 	@Test
 	public void testListAll() {
 		String listAll = "list ALL";
@@ -190,6 +190,18 @@ public class Feedback {
 					setToListView();
 					break;
 					
+				case ALL_HASHTAGS :
+					query = mLang.getPOPUP_QUERY_ALL_HASHTAGS() 
+							+ getTagsString((ArrayList<String>) output.get(Keys.QUERY_VALUE));
+					setToListView();
+					break;
+					
+				case ANY_HASHTAG :
+					query = mLang.getPOPUP_QUERY_ANY_HASHTAG() 
+							+ getTagsString((ArrayList<String>) output.get(Keys.QUERY_VALUE));
+					setToListView();
+					break;
+					
 				case DONE :
 					query = mLang.getPOPUP_QUERY_DONE();
 					setToListView();
@@ -202,6 +214,18 @@ public class Feedback {
 					setToDayVIew(date);
 					break;
 					
+				case DATE_RANGE :
+					Date fromDate = ((Calendar) output.get(Keys.QUERY_VALUE))
+							.getTime();
+					Date toDate = ((Calendar) output.get(Keys.QUERY_END_VALUE))
+							.getTime();
+					query = mLang.getPOPUP_QUERY_DATE_RANGE() 
+							+ UI.DD_MMMM_YYYY.format(fromDate) 
+							+ " " + mLang.getTO() + " "
+							+ UI.DD_MMMM_YYYY.format(toDate);
+					setToListView();
+					break;
+					
 				case EVENT :
 					query = mLang.getPOPUP_QUERY_EVENT();
 					setToListView();
@@ -225,6 +249,14 @@ public class Feedback {
 		}
 	}
 
+	private String getTagsString(ArrayList<String> tags) {
+		StringBuilder tagsString = new StringBuilder();
+		for (String tag : tags) {
+			tagsString.append(" #").append(tag);
+		}
+		return tagsString.toString().trim();
+	}
+
 	@SuppressWarnings("unchecked")
 	private void setToListView() {
 		mCenterView.init((ArrayList<ItemData>) mData);